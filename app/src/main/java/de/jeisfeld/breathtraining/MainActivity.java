@@ -33,6 +33,7 @@ import de.jeisfeld.breathtraining.exercise.service.ServiceReceiver;
 import de.jeisfeld.breathtraining.exercise.single.SingleExerciseViewModel;
 import de.jeisfeld.breathtraining.sound.MediaTrigger;
 import de.jeisfeld.breathtraining.sound.SoundPlayer;
+import de.jeisfeld.breathtraining.util.DialogUtil;
 import de.jeisfeld.breathtraining.util.PreferenceUtil;
 
 /**
@@ -84,7 +85,7 @@ public class MainActivity extends AppCompatActivity {
 
 		ExerciseData exerciseData = (ExerciseData) getIntent().getSerializableExtra(ServiceReceiver.EXTRA_EXERCISE_DATA);
 		if (exerciseData != null) {
-			ExerciseStep exerciseStep = (ExerciseStep) getIntent().getSerializableExtra(ServiceReceiver.EXTRA_EXERCISE_STEP);
+			ExerciseStep exerciseStep = ServiceReceiver.getExerciseStep(getIntent());
 			singleExerciseViewModel.updateFromExerciseData(exerciseData);
 			singleExerciseViewModel.updateExerciseStep(exerciseStep);
 			combinedExerciseViewModel.updateFromExerciseData(exerciseData, false);
@@ -105,6 +106,7 @@ public class MainActivity extends AppCompatActivity {
 		final MenuItem itemSingleExercise = menu.findItem(R.id.action_single_exercise);
 		final MenuItem itemCombinedExercise = menu.findItem(R.id.action_combined_exercise);
 		final MenuItem itemStoredExercises = menu.findItem(R.id.action_stored_exercises);
+		final MenuItem itemExportAudio = menu.findItem(R.id.action_export_audio);
 
 		itemSingleExercise.setOnMenuItemClickListener(item -> {
 			navController.navigate(R.id.nav_single_exercise);
@@ -121,22 +123,39 @@ public class MainActivity extends AppCompatActivity {
 			return true;
 		});
 
+		itemExportAudio.setOnMenuItemClickListener(item -> {
+			final boolean isSingleExercise = navController.getCurrentDestination() != null
+					&& navController.getCurrentDestination().getId() == R.id.nav_single_exercise;
+			DialogUtil.displayConfirmationMessage(this, dialog -> {
+				if (isSingleExercise) {
+					new ViewModelProvider(this).get(SingleExerciseViewModel.class).exportAudio(this);
+				}
+				else {
+					new ViewModelProvider(this).get(CombinedExerciseViewModel.class).exportAudio(this);
+				}
+			}, null, R.string.button_cancel, R.string.button_export_audio, R.string.message_confirm_export_audio);
+			return true;
+		});
+
 		navController.addOnDestinationChangedListener((controller, destination, arguments) -> {
 			int destinationId = destination.getId();
 			if (destinationId == R.id.nav_single_exercise) {
 				itemSingleExercise.setVisible(false);
 				itemCombinedExercise.setVisible(true);
 				itemStoredExercises.setVisible(true);
+				itemExportAudio.setVisible(true);
 			}
 			else if (destinationId == R.id.nav_combined_exercise) {
 				itemSingleExercise.setVisible(true);
 				itemCombinedExercise.setVisible(false);
 				itemStoredExercises.setVisible(true);
+				itemExportAudio.setVisible(true);
 			}
 			else {
 				itemSingleExercise.setVisible(false);
 				itemCombinedExercise.setVisible(false);
 				itemStoredExercises.setVisible(false);
+				itemExportAudio.setVisible(false);
 			}
 		});
 
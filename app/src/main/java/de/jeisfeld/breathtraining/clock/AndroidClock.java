@@ -0,0 +1,35 @@
+package de.jeisfeld.breathtraining.clock;
+
+import android.os.SystemClock;
+
+/**
+ * The real time clock of the device. It is based on uptime, as this is monotonic and consistent with the scheduling of handlers.
+ */
+public class AndroidClock implements Clock {
+	/**
+	 * The clock instance.
+	 */
+	private static AndroidClock mInstance = null;
+
+	/**
+	 * Get the clock instance.
+	 *
+	 * @return The clock instance.
+	 */
+	public static synchronized AndroidClock getInstance() {
+		if (mInstance == null) {
+			mInstance = new AndroidClock();
+		}
+		return mInstance;
+	}
+
+	@Override
+	public final long now() {
+		return SystemClock.uptimeMillis();
+	}
+
+	@Override
+	public final void sleep(final long duration) throws InterruptedException {
+		Thread.sleep(duration);
+	}
+}
@@ -0,0 +1,21 @@
+package de.jeisfeld.breathtraining.clock;
+
+/**
+ * A monotonic clock.
+ */
+public interface Clock {
+	/**
+	 * Get the current time of the clock.
+	 *
+	 * @return The current time in ms.
+	 */
+	long now();
+
+	/**
+	 * Sleep for a certain time of the clock.
+	 *
+	 * @param duration The duration in ms.
+	 * @throws InterruptedException if interrupted while sleeping.
+	 */
+	void sleep(long duration) throws InterruptedException;
+}
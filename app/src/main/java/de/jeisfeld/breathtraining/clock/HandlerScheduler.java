@@ -0,0 +1,51 @@
+package de.jeisfeld.breathtraining.clock;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+/**
+ * A scheduler running tasks in real time on a dedicated handler thread.
+ */
+public class HandlerScheduler extends AndroidClock implements Scheduler {
+	/**
+	 * The handler thread.
+	 */
+	private final HandlerThread mHandlerThread;
+	/**
+	 * The handler.
+	 */
+	private final Handler mHandler;
+
+	/**
+	 * Constructor. Starts the handler thread.
+	 *
+	 * @param name The name of the thread.
+	 * @param priority The priority of the thread, as defined in android.os.Process.
+	 */
+	public HandlerScheduler(final String name, final int priority) {
+		mHandlerThread = new HandlerThread(name, priority);
+		mHandlerThread.start();
+		mHandler = new Handler(mHandlerThread.getLooper());
+	}
+
+	@Override
+	public final void post(final Runnable task) {
+		mHandler.post(task);
+	}
+
+	@Override
+	public final void postAt(final Runnable task, final long time) {
+		mHandler.postAtTime(task, time);
+	}
+
+	@Override
+	public final void remove(final Runnable task) {
+		mHandler.removeCallbacks(task);
+	}
+
+	@Override
+	public final void quit() {
+		mHandler.removeCallbacksAndMessages(null);
+		mHandlerThread.quitSafely();
+	}
+}
@@ -0,0 +1,35 @@
+package de.jeisfeld.breathtraining.clock;
+
+/**
+ * A scheduler running tasks sequentially on a single thread, based on a clock.
+ */
+public interface Scheduler extends Clock {
+	/**
+	 * Schedule a task for running as soon as possible.
+	 *
+	 * @param task The task.
+	 */
+	default void post(final Runnable task) {
+		postAt(task, now());
+	}
+
+	/**
+	 * Schedule a task for running at a certain time. Tasks with the same time run in the order of scheduling.
+	 *
+	 * @param task The task.
+	 * @param time The time of the clock when the task should run.
+	 */
+	void postAt(Runnable task, long time);
+
+	/**
+	 * Remove all pending schedules of a task.
+	 *
+	 * @param task The task.
+	 */
+	void remove(Runnable task);
+
+	/**
+	 * Quit the scheduler. Pending tasks are discarded.
+	 */
+	void quit();
+}
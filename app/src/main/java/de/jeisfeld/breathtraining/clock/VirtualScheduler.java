@@ -0,0 +1,178 @@
+package de.jeisfeld.breathtraining.clock;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A scheduler running tasks in virtual time on a dedicated thread. Virtual time passes faster than real time by a speed-up factor. With
+ * infinite speed-up, virtual time jumps directly to the next task, so that the tasks run as fast as possible and deterministically. Tasks
+ * scheduled from other threads for a time which has already passed in virtual time run as soon as possible.
+ */
+public class VirtualScheduler implements Scheduler {
+	/**
+	 * The speed-up factor of virtual time compared to real time.
+	 */
+	private final double mSpeedUp;
+	/**
+	 * The scheduled tasks, ordered by time and sequence.
+	 */
+	private final PriorityQueue<ScheduledTask> mTasks = new PriorityQueue<>();
+	/**
+	 * The thread running the tasks.
+	 */
+	private final Thread mThread;
+	/**
+	 * The virtual time at the last synchronization with real time.
+	 */
+	private long mVirtualTime;
+	/**
+	 * The real time (in ns) at the last synchronization with virtual time.
+	 */
+	private long mRealTimeBase = System.nanoTime();
+	/**
+	 * The sequence number of the last scheduled task.
+	 */
+	private long mSequence = 0;
+	/**
+	 * Flag indicating if the scheduler has been quit.
+	 */
+	private boolean mIsQuit = false;
+
+	/**
+	 * Constructor. Starts the scheduler thread.
+	 *
+	 * @param name The name of the thread.
+	 * @param startTime The virtual start time.
+	 * @param speedUp The speed-up factor of virtual time compared to real time. May be Double.POSITIVE_INFINITY.
+	 */
+	public VirtualScheduler(final String name, final long startTime, final double speedUp) {
+		if (!(speedUp > 0)) {
+			throw new IllegalArgumentException("Speed-up must be positive: " + speedUp);
+		}
+		mVirtualTime = startTime;
+		mSpeedUp = speedUp;
+		mThread = new Thread(this::runTasks, name);
+		mThread.start();
+	}
+
+	@Override
+	public final synchronized long now() {
+		if (Double.isInfinite(mSpeedUp)) {
+			return mVirtualTime;
+		}
+		return mVirtualTime + (long) ((System.nanoTime() - mRealTimeBase) * mSpeedUp / TimeUnit.MILLISECONDS.toNanos(1));
+	}
+
+	@Override
+	public final void sleep(final long duration) throws InterruptedException {
+		if (Thread.currentThread() == mThread) {
+			// Sleeping on the scheduler thread just lets virtual time pass. Tasks due in the meantime run late.
+			synchronized (this) {
+				mVirtualTime = now() + duration;
+				mRealTimeBase = System.nanoTime();
+			}
+		}
+		else {
+			CountDownLatch latch = new CountDownLatch(1);
+			postAt(latch::countDown, now() + duration);
+			latch.await();
+		}
+	}
+
+	@Override
+	public final synchronized void postAt(final Runnable task, final long time) {
+		if (!mIsQuit) {
+			mTasks.add(new ScheduledTask(task, time, ++mSequence));
+			notifyAll();
+		}
+	}
+
+	@Override
+	public final synchronized void remove(final Runnable task) {
+		Iterator<ScheduledTask> iterator = mTasks.iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().mTask == task) {
+				iterator.remove();
+			}
+		}
+	}
+
+	@Override
+	public final synchronized void quit() {
+		mIsQuit = true;
+		mTasks.clear();
+		notifyAll();
+	}
+
+	/**
+	 * Run the scheduled tasks until the scheduler is quit.
+	 */
+	private void runTasks() {
+		while (true) {
+			ScheduledTask task;
+			synchronized (this) {
+				try {
+					while (!mIsQuit && (mTasks.isEmpty() || !Double.isInfinite(mSpeedUp) && mTasks.peek().mTime > now())) {
+						if (mTasks.isEmpty()) {
+							wait();
+						}
+						else {
+							wait(Math.max(1, (long) ((mTasks.peek().mTime - now()) / mSpeedUp)));
+						}
+					}
+				}
+				catch (InterruptedException e) {
+					return;
+				}
+				if (mIsQuit) {
+					return;
+				}
+				task = mTasks.poll();
+				mVirtualTime = Math.max(now(), task.mTime);
+				mRealTimeBase = System.nanoTime();
+			}
+			task.mTask.run();
+		}
+	}
+
+	/**
+	 * A task scheduled for a certain time.
+	 */
+	private static final class ScheduledTask implements Comparable<ScheduledTask> {
+		/**
+		 * The task.
+		 */
+		private final Runnable mTask;
+		/**
+		 * The scheduled time.
+		 */
+		private final long mTime;
+		/**
+		 * The sequence number, ensuring FIFO order for tasks with the same time.
+		 */
+		private final long mSequence;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param task The task.
+		 * @param time The scheduled time.
+		 * @param sequence The sequence number.
+		 */
+		private ScheduledTask(final Runnable task, final long time, final long sequence) {
+			mTask = task;
+			mTime = time;
+			mSequence = sequence;
+		}
+
+		@Override
+		public int compareTo(final ScheduledTask other) {
+			if (mTime != other.mTime) {
+				return Long.compare(mTime, other.mTime);
+			}
+			return Long.compare(mSequence, other.mSequence);
+		}
+	}
+}
@@ -0,0 +1,4 @@
+/**
+ * Clocks and schedulers, allowing to run exercises in real or in virtual time.
+ */
+package de.jeisfeld.breathtraining.clock;
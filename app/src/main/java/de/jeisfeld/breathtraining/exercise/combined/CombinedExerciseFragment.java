@@ -2,12 +2,15 @@ package de.jeisfeld.breathtraining.exercise.combined;
 
 import android.os.Bundle;
 import android.text.InputType;
+import android.text.format.DateUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AdapterView;
 import android.widget.AdapterView.OnItemSelectedListener;
 import android.widget.ArrayAdapter;
+import android.widget.SeekBar;
+import android.widget.SeekBar.OnSeekBarChangeListener;
 import android.widget.Spinner;
 
 import androidx.annotation.NonNull;
@@ -39,6 +42,10 @@ public class CombinedExerciseFragment extends Fragment {
 	 * The fragment binding.
 	 */
 	private FragmentCombinedExerciseBinding mBinding;
+	/**
+	 * Flag indicating if the position seekbar is dragged by the user.
+	 */
+	private boolean mIsDraggingPosition = false;
 
 	@Override
 	public final View onCreateView(@NonNull final LayoutInflater inflater, final ViewGroup container, final Bundle savedInstanceState) {
@@ -50,6 +57,7 @@ public class CombinedExerciseFragment extends Fragment {
 		prepareTextViewExerciseName();
 		prepareSpinnerSoundType();
 		prepareButtons(exerciseId);
+		prepareSeekbarPosition();
 		prepareButtonSave();
 		populateRecyclerView(recyclerView, exerciseId);
 		return mBinding.getRoot();
@@ -104,6 +112,7 @@ public class CombinedExerciseFragment extends Fragment {
 				mBinding.buttonResume.setVisibility(View.INVISIBLE);
 				mBinding.buttonBreathe.setVisibility(View.INVISIBLE);
 				mBinding.buttonAdd.setVisibility(View.VISIBLE);
+				mBinding.seekBarPosition.setVisibility(View.GONE);
 				break;
 			case PLAYING:
 				mBinding.buttonStart.setVisibility(View.INVISIBLE);
@@ -112,6 +121,7 @@ public class CombinedExerciseFragment extends Fragment {
 				mBinding.buttonResume.setVisibility(View.INVISIBLE);
 				mBinding.buttonBreathe.setVisibility(View.VISIBLE);
 				mBinding.buttonAdd.setVisibility(View.INVISIBLE);
+				mBinding.seekBarPosition.setVisibility(View.VISIBLE);
 				break;
 			case PAUSED:
 				mBinding.buttonStart.setVisibility(View.INVISIBLE);
@@ -120,6 +130,7 @@ public class CombinedExerciseFragment extends Fragment {
 				mBinding.buttonResume.setVisibility(View.VISIBLE);
 				mBinding.buttonBreathe.setVisibility(View.INVISIBLE);
 				mBinding.buttonAdd.setVisibility(View.VISIBLE);
+				mBinding.seekBarPosition.setVisibility(View.VISIBLE);
 				break;
 			case OTHER:
 				mBinding.buttonStart.setVisibility(View.GONE);
@@ -128,6 +139,7 @@ public class CombinedExerciseFragment extends Fragment {
 				mBinding.buttonResume.setVisibility(View.GONE);
 				mBinding.buttonBreathe.setVisibility(View.GONE);
 				mBinding.buttonAdd.setVisibility(View.GONE);
+				mBinding.seekBarPosition.setVisibility(View.GONE);
 				break;
 			default:
 				break;
@@ -150,6 +162,36 @@ public class CombinedExerciseFragment extends Fragment {
 		mBinding.buttonAdd.setOnClickListener(v -> EditSingleExerciseFragment.navigate(v, true, 0, exerciseId));
 	}
 
+	/**
+	 * Prepare the seekbar displaying the position within the running exercise. Releasing it seeks to the selected time.
+	 */
+	private void prepareSeekbarPosition() {
+		mCombinedExerciseViewModel.getTotalDuration().observe(getViewLifecycleOwner(), totalDuration ->
+				mBinding.seekBarPosition.setMax((int) Math.max(1, totalDuration / DateUtils.SECOND_IN_MILLIS)));
+		mCombinedExerciseViewModel.getPosition().observe(getViewLifecycleOwner(), position -> {
+			if (!mIsDraggingPosition) {
+				mBinding.seekBarPosition.setProgress((int) (position / DateUtils.SECOND_IN_MILLIS));
+			}
+		});
+		mBinding.seekBarPosition.setOnSeekBarChangeListener(new OnSeekBarChangeListener() {
+			@Override
+			public void onProgressChanged(final SeekBar seekBar, final int progress, final boolean fromUser) {
+				// do nothing
+			}
+
+			@Override
+			public void onStartTrackingTouch(final SeekBar seekBar) {
+				mIsDraggingPosition = true;
+			}
+
+			@Override
+			public void onStopTrackingTouch(final SeekBar seekBar) {
+				mIsDraggingPosition = false;
+				mCombinedExerciseViewModel.seek(getContext(), seekBar.getProgress() * DateUtils.SECOND_IN_MILLIS);
+			}
+		});
+	}
+
 	/**
 	 * Prepare the spinner for sound type.
 	 */
@@ -20,6 +20,7 @@ import de.jeisfeld.breathtraining.exercise.data.StepType;
 import de.jeisfeld.breathtraining.exercise.service.ExerciseService;
 import de.jeisfeld.breathtraining.exercise.service.ExerciseService.ServiceCommand;
 import de.jeisfeld.breathtraining.repository.StoredExercisesRegistry;
+import de.jeisfeld.breathtraining.sound.SessionRenderer;
 import de.jeisfeld.breathtraining.sound.SoundType;
 import de.jeisfeld.breathtraining.util.PreferenceUtil;
 
@@ -48,6 +49,16 @@ public class CombinedExerciseViewModel extends ViewModel {
 	 */
 	private final MutableLiveData<ExerciseStep> mExerciseStep = new MutableLiveData<>(new ExerciseStep(null, 0, new RepetitionData()));
 
+	/**
+	 * The start offset of the current step (in ms from exercise start).
+	 */
+	private final MutableLiveData<Long> mPosition = new MutableLiveData<>(0L);
+
+	/**
+	 * The total duration of the running exercise (in ms).
+	 */
+	private final MutableLiveData<Long> mTotalDuration = new MutableLiveData<>(0L);
+
 	/**
 	 * Get the exercise type.
 	 *
@@ -129,6 +140,35 @@ public class CombinedExerciseViewModel extends ViewModel {
 		mExerciseStep.setValue(exerciseStep);
 	}
 
+	/**
+	 * Get the start offset of the current step.
+	 *
+	 * @return The start offset of the current step (in ms from exercise start).
+	 */
+	protected LiveData<Long> getPosition() {
+		return mPosition;
+	}
+
+	/**
+	 * Get the total duration of the running exercise.
+	 *
+	 * @return The total duration (in ms).
+	 */
+	protected LiveData<Long> getTotalDuration() {
+		return mTotalDuration;
+	}
+
+	/**
+	 * Update the position within the running exercise.
+	 *
+	 * @param position      The start offset of the current step (in ms from exercise start).
+	 * @param totalDuration The total duration of the running exercise (in ms).
+	 */
+	public void updatePosition(final long position, final long totalDuration) {
+		mTotalDuration.setValue(totalDuration);
+		mPosition.setValue(position);
+	}
+
 	/**
 	 * Method giving information if selected values should be cached.
 	 *
@@ -149,6 +189,15 @@ public class CombinedExerciseViewModel extends ViewModel {
 		ExerciseService.triggerExerciseService(context, serviceCommand, getExerciseData());
 	}
 
+	/**
+	 * Export the exercise as audio file in the background.
+	 *
+	 * @param context The context.
+	 */
+	public void exportAudio(final Context context) {
+		SessionRenderer.triggerExport(context, getExerciseData());
+	}
+
 	/**
 	 * Stop playing.
 	 *
@@ -178,6 +227,16 @@ public class CombinedExerciseViewModel extends ViewModel {
 		ExerciseService.triggerExerciseService(context, ServiceCommand.SKIP, getExerciseData());
 	}
 
+	/**
+	 * Seek to a time offset in the running exercise.
+	 *
+	 * @param context The context.
+	 * @param offset  The time offset (in ms from exercise start).
+	 */
+	protected void seek(final Context context, final long offset) {
+		ExerciseService.triggerSeek(context, getExerciseData(), offset);
+	}
+
 	/**
 	 * Delete the exercise name if not matching the stored exercise.
 	 */
@@ -1,8 +1,11 @@
 package de.jeisfeld.breathtraining.exercise.data;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
 
 import de.jeisfeld.breathtraining.R;
 import de.jeisfeld.breathtraining.repository.StoredExercisesRegistry;
@@ -21,6 +24,14 @@ public class CombinedExerciseData extends ExerciseData {
 	 * The exercise data of the steps of this exercise.
 	 */
 	private final List<SingleExerciseData> mSingleExerciseData;
+	/**
+	 * The number of repetitions before each single exercise. Contains one additional entry holding the total number of repetitions.
+	 */
+	private transient int[] mRepetitionSums = null;
+	/**
+	 * The number of single exercises for which the repetition sums are up to date.
+	 */
+	private transient int mIndexedCount = 0;
 
 	/**
 	 * Constructor.
@@ -33,8 +44,35 @@ public class CombinedExerciseData extends ExerciseData {
 	 */
 	public CombinedExerciseData(final String name, final List<Integer> singleExerciseIds,
 								final SoundType soundType, final PlayStatus playStatus, final int currentRepetitionNumber) {
+		this(name, soundType, playStatus, currentRepetitionNumber, getSingleExerciseDataFromIds(singleExerciseIds));
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name                    The name of the exercise.
+	 * @param soundType               The sound type.
+	 * @param playStatus              The playing status.
+	 * @param currentRepetitionNumber The current repetition number.
+	 * @param singleExerciseData      The single exercise data.
+	 */
+	private CombinedExerciseData(final String name, final SoundType soundType, final PlayStatus playStatus, final int currentRepetitionNumber,
+								 final List<SingleExerciseData> singleExerciseData) {
 		super(name, soundType, playStatus, currentRepetitionNumber);
-		mSingleExerciseData = getSingleExerciseDataFromIds(singleExerciseIds);
+		mSingleExerciseData = singleExerciseData;
+	}
+
+	/**
+	 * Create combined exercise data directly from single exercise data, without access to stored exercises.
+	 *
+	 * @param name               The name of the exercise.
+	 * @param singleExerciseData The single exercise data.
+	 * @param soundType          The sound type.
+	 * @return The combined exercise data.
+	 */
+	public static CombinedExerciseData fromSingleExerciseData(final String name, final List<SingleExerciseData> singleExerciseData,
+															  final SoundType soundType) {
+		return new CombinedExerciseData(name, soundType, PlayStatus.STOPPED, 0, new ArrayList<>(singleExerciseData));
 	}
 
 	/**
@@ -57,35 +95,96 @@ public class CombinedExerciseData extends ExerciseData {
 	}
 
 	@Override
-	protected final ExerciseStep[] getStepsForRepetition(final int repetition) {
-		int partialRepetition = repetition;
-		int partCount = 0;
-		for (SingleExerciseData singleExerciseData : mSingleExerciseData) {
-			partCount++;
-			if (partialRepetition <= singleExerciseData.getRepetitions()) {
-				ExerciseStep[] exerciseSteps = singleExerciseData.getStepsForRepetition(partialRepetition);
-				for (int i = 0; i < exerciseSteps.length; i++) {
-					ExerciseStep exerciseStep = exerciseSteps[i];
-					exerciseSteps[i] = new ExerciseStep(exerciseStep.getStepType(), exerciseStep.getDuration(), exerciseStep.getSoundDuration(),
-							new RepetitionData(repetition, getRepetitions(), exerciseStep.getRepetition().getCurrentRepetition(),
-									exerciseStep.getRepetition().getTotalRepetitions(), partCount));
-				}
-				return exerciseSteps;
-			}
-			else {
-				partialRepetition -= singleExerciseData.getRepetitions();
+	protected final void addStepsForRepetition(final int repetition, final StepBuffer steps) {
+		int[] repetitionSums = getRepetitionSums();
+		int partIndex = findPartIndex(repetitionSums, repetition);
+		if (partIndex < 0) {
+			return;
+		}
+		SingleExerciseData singleExerciseData = mSingleExerciseData.get(partIndex);
+		int partialRepetition = repetition - repetitionSums[partIndex];
+		// Generate the steps of the part directly with the repetition data of the combined exercise.
+		singleExerciseData.addStepsForRepetition(partialRepetition, RepetitionData.of(repetition, repetitionSums[mSingleExerciseData.size()],
+				partialRepetition, singleExerciseData.getRepetitions(), partIndex + 1), createRandom(repetition), steps);
+	}
+
+	@Override
+	protected final long countSteps(final int fromRepetition, final int toRepetition) {
+		int[] repetitionSums = getRepetitionSums();
+		int partIndex = findPartIndex(repetitionSums, Math.max(1, fromRepetition));
+		if (partIndex < 0) {
+			return 0;
+		}
+		long stepCount = 0;
+		for (int i = partIndex; i < mSingleExerciseData.size() && repetitionSums[i] < toRepetition; i++) {
+			SingleExerciseData singleExerciseData = mSingleExerciseData.get(i);
+			long partStepCount = singleExerciseData.countSteps(Math.max(1, fromRepetition - repetitionSums[i]),
+					Math.min(singleExerciseData.getRepetitions() + 1, toRepetition - repetitionSums[i]));
+			if (partStepCount < 0) {
+				return -1;
 			}
+			stepCount += partStepCount;
 		}
-		return null;
+		return stepCount;
 	}
 
 	@Override
-	public final int getRepetitions() {
-		int repetitions = 0;
-		for (SingleExerciseData singleExerciseData : mSingleExerciseData) {
-			repetitions += singleExerciseData.getRepetitions();
+	public final synchronized int getRepetitions() {
+		return getRepetitionSums()[mIndexedCount];
+	}
+
+	/**
+	 * Get the number of repetitions before each single exercise, updating the sums where they are outdated.
+	 *
+	 * @return The number of repetitions before each single exercise, followed by the total number of repetitions.
+	 */
+	private synchronized int[] getRepetitionSums() {
+		int size = mSingleExerciseData.size();
+		if (mRepetitionSums == null || mRepetitionSums.length <= size) {
+			int capacity = Math.max(size + 1, mRepetitionSums == null ? 0 : 2 * mRepetitionSums.length);
+			mRepetitionSums = mRepetitionSums == null ? new int[capacity] : Arrays.copyOf(mRepetitionSums, capacity);
+		}
+		for (int i = mIndexedCount; i < size; i++) {
+			mRepetitionSums[i + 1] = mRepetitionSums[i] + mSingleExerciseData.get(i).getRepetitions();
+		}
+		mIndexedCount = size;
+		return mRepetitionSums;
+	}
+
+	/**
+	 * Mark the repetition sums as outdated from a certain single exercise on.
+	 *
+	 * @param index The index of the first changed single exercise.
+	 */
+	private synchronized void invalidateSums(final int index) {
+		mIndexedCount = Math.min(mIndexedCount, index);
+	}
+
+	/**
+	 * Find the single exercise containing a repetition.
+	 *
+	 * @param repetitionSums The number of repetitions before each single exercise.
+	 * @param repetition     The repetition number (starting with 1).
+	 * @return The index of the single exercise, or -1 if the repetition is out of range.
+	 */
+	private int findPartIndex(final int[] repetitionSums, final int repetition) {
+		int size = mSingleExerciseData.size();
+		if (repetition < 1 || repetition > repetitionSums[size]) {
+			return -1;
+		}
+		// Find the last single exercise starting before the repetition - this skips single exercises without repetitions.
+		int low = 0;
+		int high = size - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (repetitionSums[mid] < repetition) {
+				low = mid;
+			}
+			else {
+				high = mid - 1;
+			}
 		}
-		return repetitions;
+		return low;
 	}
 
 	/**
@@ -102,12 +201,12 @@ public class CombinedExerciseData extends ExerciseData {
 	}
 
 	/**
-	 * Get the single exercise data.
+	 * Get the single exercise data. Changes to the returned list are applied to this exercise.
 	 *
 	 * @return The single exercise data.
 	 */
 	public List<SingleExerciseData> getSingleExerciseData() {
-		return mSingleExerciseData;
+		return new SingleExerciseDataList();
 	}
 
 	/**
@@ -116,15 +215,13 @@ public class CombinedExerciseData extends ExerciseData {
 	 * @param singleExerciseId The id of the child to be removed.
 	 */
 	public void removeSingleExerciseOfId(final int singleExerciseId) {
-		SingleExerciseData foundSingleExerciseData = null;
-		for (SingleExerciseData singleExerciseData : mSingleExerciseData) {
-			if (singleExerciseData.getId() == singleExerciseId) {
-				foundSingleExerciseData = singleExerciseData;
+		for (int i = mSingleExerciseData.size() - 1; i >= 0; i--) {
+			if (mSingleExerciseData.get(i).getId() == singleExerciseId) {
+				invalidateSums(i);
+				mSingleExerciseData.remove(i);
+				return;
 			}
 		}
-		if (foundSingleExerciseData != null) {
-			mSingleExerciseData.remove(foundSingleExerciseData);
-		}
 	}
 
 	@Override
@@ -159,4 +256,37 @@ public class CombinedExerciseData extends ExerciseData {
 	public final int hashCode() {
 		return Objects.hash(super.hashCode(), mSingleExerciseData);
 	}
+
+	/**
+	 * A view of the single exercise data, keeping the sums up to date on changes.
+	 */
+	private final class SingleExerciseDataList extends AbstractList<SingleExerciseData> implements RandomAccess {
+		@Override
+		public SingleExerciseData get(final int index) {
+			return mSingleExerciseData.get(index);
+		}
+
+		@Override
+		public int size() {
+			return mSingleExerciseData.size();
+		}
+
+		@Override
+		public SingleExerciseData set(final int index, final SingleExerciseData element) {
+			invalidateSums(index);
+			return mSingleExerciseData.set(index, element);
+		}
+
+		@Override
+		public void add(final int index, final SingleExerciseData element) {
+			invalidateSums(index);
+			mSingleExerciseData.add(index, element);
+		}
+
+		@Override
+		public SingleExerciseData remove(final int index) {
+			invalidateSums(index);
+			return mSingleExerciseData.remove(index);
+		}
+	}
 }
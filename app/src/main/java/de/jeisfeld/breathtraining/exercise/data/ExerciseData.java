@@ -3,6 +3,9 @@ package de.jeisfeld.breathtraining.exercise.data;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import de.jeisfeld.breathtraining.R;
 import de.jeisfeld.breathtraining.repository.StoredExercisesRegistry;
@@ -17,6 +20,10 @@ public abstract class ExerciseData implements Serializable {
 	 * The default serial version id.
 	 */
 	private static final long serialVersionUID = 1L;
+	/**
+	 * The increment between the seeds of consecutive repetitions.
+	 */
+	private static final long SEED_INCREMENT = 0x9E3779B97F4A7C15L;
 
 	/**
 	 * Key for the breath start duration within the intent.
@@ -97,19 +104,15 @@ public abstract class ExerciseData implements Serializable {
 	/**
 	 * The current repetition number.
 	 */
-	private int mCurrentRepetitionNumber;
-	/**
-	 * The current step number within the repetition.
-	 */
-	private int mCurrentStepNumber = 0;
-	/**
-	 * The steps of the current repetition.
-	 */
-	private ExerciseStep[] mCurrentSteps = null;
+	private final int mCurrentRepetitionNumber;
 	/**
 	 * The playing status.
 	 */
 	private PlayStatus mPlayStatus;
+	/**
+	 * The seed of the random variations. It is passed with the exercise data, so that a run can be regenerated identically.
+	 */
+	private long mSeed = new SplittableRandom().nextLong();
 
 	/**
 	 * Constructor.
@@ -135,52 +138,83 @@ public abstract class ExerciseData implements Serializable {
 	public abstract ExerciseType getType();
 
 	/**
-	 * Get the exercise steps for a certain repetition.
+	 * Add the exercise steps for a certain repetition to a step buffer. The steps are appended to the steps already in the buffer, so that the
+	 * caller may reuse the same buffer for all repetitions.
 	 *
 	 * @param repetition The repetition number (starting with 1).
-	 * @return The steps for this repetition.
+	 * @param steps      The buffer to which the steps are added.
 	 */
-	protected abstract ExerciseStep[] getStepsForRepetition(int repetition);
+	protected abstract void addStepsForRepetition(int repetition, StepBuffer steps);
 
 	/**
-	 * Get the next exercise step.
+	 * Count the steps of a range of repetitions without generating them.
 	 *
-	 * @return The next exercise step.
-	 */
-	public final ExerciseStep getNextStep() {
-		if (mCurrentSteps == null || mCurrentStepNumber >= mCurrentSteps.length - 1) {
-			mCurrentRepetitionNumber++;
-			if (mCurrentRepetitionNumber > getRepetitions()) {
-				// made all repetitions
-				return null;
-			}
-			mCurrentStepNumber = 0;
-			mCurrentSteps = getStepsForRepetition(mCurrentRepetitionNumber);
-			while ((mCurrentSteps == null || mCurrentSteps.length == 0) && mCurrentRepetitionNumber <= getRepetitions()) {
-				// go to next repetitions in case of empty repetitions.
-				mCurrentRepetitionNumber++;
-				mCurrentSteps = getStepsForRepetition(mCurrentRepetitionNumber);
-			}
-			if (mCurrentSteps == null || mCurrentSteps.length == 0) {
-				return null;
-			}
-		}
-		else if (mCurrentRepetitionNumber > getRepetitions()) {
-			// may happen if current repetition or number of repetitions has been changed
-			return null;
-		}
-		else {
-			mCurrentStepNumber++;
-		}
-		return mCurrentSteps[mCurrentStepNumber];
+	 * @param fromRepetition The first repetition (starting with 1).
+	 * @param toRepetition   The repetition after the last one.
+	 * @return The number of steps, or -1 if it is only known after generating the steps (in case of variable holds).
+	 */
+	protected abstract long countSteps(int fromRepetition, int toRepetition);
+
+	/**
+	 * Get the seed of the random variations.
+	 *
+	 * @return The seed.
+	 */
+	public long getSeed() {
+		return mSeed;
 	}
 
 	/**
-	 * Go back to the start of the repetition.
+	 * Set the seed of the random variations, e.g. to continue the run of other exercise data.
+	 *
+	 * @param seed The seed.
 	 */
-	public void goBackToRepetitionStart() {
-		mCurrentRepetitionNumber--;
-		mCurrentSteps = null;
+	public void setSeed(final long seed) {
+		mSeed = seed;
+	}
+
+	/**
+	 * Create the random source for the variations of a repetition. It depends only on the seed and the repetition, so that repetitions
+	 * can be generated in any order and in parallel.
+	 *
+	 * @param repetition The repetition number (starting with 1).
+	 * @return The random source.
+	 */
+	protected final SplittableRandom createRandom(final int repetition) {
+		// Mix the seed (as done by SplittableRandom), so that the sequences of different repetitions do not overlap.
+		long seed = mSeed + repetition * SEED_INCREMENT;
+		seed = (seed ^ seed >>> 30) * 0xBF58476D1CE4E5B9L; // MAGIC_NUMBER
+		seed = (seed ^ seed >>> 27) * 0x94D049BB133111EBL; // MAGIC_NUMBER
+		return new SplittableRandom(seed ^ seed >>> 31); // MAGIC_NUMBER
+	}
+
+	/**
+	 * Get a spliterator over all steps. The spliterator does not change this exercise data, so that any number of them can be used at the
+	 * same time.
+	 *
+	 * @return The spliterator.
+	 */
+	public final StepSpliterator stepSpliterator() {
+		return new StepSpliterator(this, 1, getRepetitions() + 1);
+	}
+
+	/**
+	 * Get a stream of all steps.
+	 *
+	 * @param parallel Flag indicating if the stream should be parallel.
+	 * @return The stream.
+	 */
+	public final Stream<ExerciseStep> steps(final boolean parallel) {
+		return StreamSupport.stream(stepSpliterator(), parallel);
+	}
+
+	/**
+	 * Get the current repetition number.
+	 *
+	 * @return The current repetition number.
+	 */
+	public int getCurrentRepetitionNumber() {
+		return mCurrentRepetitionNumber;
 	}
 
 	/**
@@ -351,18 +385,6 @@ public abstract class ExerciseData implements Serializable {
 		return isNew;
 	}
 
-	/**
-	 * Retrieve the status from other ExerciseData and upate the playStatus.
-	 *
-	 * @param origin The other ExerciseData.
-	 * @param playStatus The new playStatus.
-	 */
-	public void retrieveStatus(final ExerciseData origin, final PlayStatus playStatus) {
-		mCurrentStepNumber = origin.mCurrentStepNumber;
-		mCurrentSteps = getStepsForRepetition(mCurrentRepetitionNumber);
-		mPlayStatus = playStatus;
-	}
-
 	// OVERRIDABLE
 	@Override
 	public boolean equals(final Object o) {
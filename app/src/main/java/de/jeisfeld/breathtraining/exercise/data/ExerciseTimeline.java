@@ -0,0 +1,278 @@
+package de.jeisfeld.breathtraining.exercise.data;
+
+/**
+ * The compiled timeline of an exercise. All steps of all repetitions are flattened into an array of packed steps, so that they can be
+ * accessed during playback without further step generation and without step objects.
+ */
+public final class ExerciseTimeline {
+	/**
+	 * The steps, encoded via PackedStep.
+	 */
+	private final PackedStepArray mPackedSteps;
+	/**
+	 * The start offsets of the steps (in ms from exercise start). Contains one additional entry holding the total duration.
+	 */
+	private final long[] mStartOffsets;
+	/**
+	 * The part numbers, by repetition number.
+	 */
+	private final int[] mPartNumbers;
+	/**
+	 * The repetition numbers within the part, by repetition number.
+	 */
+	private final int[] mPartRepetitions;
+	/**
+	 * The total number of repetitions of the part, by repetition number.
+	 */
+	private final int[] mTotalPartRepetitions;
+	/**
+	 * The total number of repetitions.
+	 */
+	private final int mTotalRepetitions;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param packedSteps          The steps.
+	 * @param partNumbers          The part numbers, by repetition number.
+	 * @param partRepetitions      The repetition numbers within the part, by repetition number.
+	 * @param totalPartRepetitions The total number of repetitions of the part, by repetition number.
+	 * @param totalRepetitions     The total number of repetitions.
+	 */
+	private ExerciseTimeline(final PackedStepArray packedSteps, final int[] partNumbers, final int[] partRepetitions,
+							 final int[] totalPartRepetitions, final int totalRepetitions) {
+		packedSteps.trimToSize();
+		mPackedSteps = packedSteps;
+		mPartNumbers = partNumbers;
+		mPartRepetitions = partRepetitions;
+		mTotalPartRepetitions = totalPartRepetitions;
+		mTotalRepetitions = totalRepetitions;
+
+		int stepCount = packedSteps.size();
+		mStartOffsets = new long[stepCount + 1];
+		long offset = 0;
+		for (int i = 0; i < stepCount; i++) {
+			mStartOffsets[i] = offset;
+			offset += PackedStep.getDuration(packedSteps.get(i));
+		}
+		mStartOffsets[stepCount] = offset;
+	}
+
+	/**
+	 * Compile the timeline of an exercise.
+	 *
+	 * @param exerciseData The exercise data.
+	 * @return The timeline.
+	 * @throws IllegalArgumentException if the number of repetitions or a step duration exceeds the limits of PackedStep.
+	 */
+	public static ExerciseTimeline compile(final ExerciseData exerciseData) {
+		int totalRepetitions = exerciseData.getRepetitions();
+		if (totalRepetitions > PackedStep.MAX_REPETITION) {
+			throw new IllegalArgumentException("Too many repetitions: " + totalRepetitions + " (maximum " + PackedStep.MAX_REPETITION + ")");
+		}
+		StepSpliterator steps = exerciseData.stepSpliterator();
+		// The size is exact if there are no variable holds, and a lower bound otherwise.
+		PackedStepArray packedSteps = new PackedStepArray((int) Math.min(Integer.MAX_VALUE, steps.estimateSize()));
+		int[] partNumbers = new int[totalRepetitions + 1];
+		int[] partRepetitions = new int[totalRepetitions + 1];
+		int[] totalPartRepetitions = new int[totalRepetitions + 1];
+		steps.forEachRemaining(step -> {
+			RepetitionData repetitionData = step.getRepetition();
+			int repetition = repetitionData.getCurrentRepetition();
+			packedSteps.add(step.getStepType(), step.getDuration(), step.getSoundDuration(), repetition);
+			partNumbers[repetition] = repetitionData.getCurrentPartNumber();
+			partRepetitions[repetition] = repetitionData.getCurrentPartRepetition();
+			totalPartRepetitions[repetition] = repetitionData.getTotalPartRepetitions();
+		});
+		return new ExerciseTimeline(packedSteps, partNumbers, partRepetitions, totalPartRepetitions, totalRepetitions);
+	}
+
+	/**
+	 * Get the number of steps.
+	 *
+	 * @return The number of steps.
+	 */
+	public int getStepCount() {
+		return mPackedSteps.size();
+	}
+
+	/**
+	 * Get the total number of repetitions.
+	 *
+	 * @return The total number of repetitions.
+	 */
+	public int getTotalRepetitions() {
+		return mTotalRepetitions;
+	}
+
+	/**
+	 * Get the total duration of the exercise.
+	 *
+	 * @return The total duration (in ms).
+	 */
+	public long getTotalDuration() {
+		return mStartOffsets[mPackedSteps.size()];
+	}
+
+	/**
+	 * Get the encoded form of a step, e.g. for transferring it without creating a step object.
+	 *
+	 * @param index The step index.
+	 * @return The step, encoded via PackedStep.
+	 */
+	public long getPackedStep(final int index) {
+		return mPackedSteps.get(index);
+	}
+
+	/**
+	 * Get the step type of a step.
+	 *
+	 * @param index The step index.
+	 * @return The step type.
+	 */
+	public StepType getStepType(final int index) {
+		return PackedStep.getStepType(mPackedSteps.get(index));
+	}
+
+	/**
+	 * Get the start offset of a step.
+	 *
+	 * @param index The step index.
+	 * @return The start offset (in ms from exercise start).
+	 */
+	public long getStartOffset(final int index) {
+		return mStartOffsets[index];
+	}
+
+	/**
+	 * Get the duration of a step.
+	 *
+	 * @param index The step index.
+	 * @return The duration.
+	 */
+	public long getDuration(final int index) {
+		return PackedStep.getDuration(mPackedSteps.get(index));
+	}
+
+	/**
+	 * Get the sound duration of a step.
+	 *
+	 * @param index The step index.
+	 * @return The sound duration.
+	 */
+	public long getSoundDuration(final int index) {
+		return PackedStep.getSoundDuration(mPackedSteps.get(index));
+	}
+
+	/**
+	 * Get the repetition number of a step.
+	 *
+	 * @param index The step index.
+	 * @return The repetition number (starting with 1).
+	 */
+	public int getRepetition(final int index) {
+		return PackedStep.getRepetition(mPackedSteps.get(index));
+	}
+
+	/**
+	 * Get the part number of a step.
+	 *
+	 * @param index The step index.
+	 * @return The part number (starting with 1).
+	 */
+	public int getPartNumber(final int index) {
+		return mPartNumbers[getRepetition(index)];
+	}
+
+	/**
+	 * Get the repetition number of a step within its part.
+	 *
+	 * @param index The step index.
+	 * @return The repetition number within the part (starting with 1).
+	 */
+	public int getPartRepetition(final int index) {
+		return mPartRepetitions[getRepetition(index)];
+	}
+
+	/**
+	 * Get the total number of repetitions of the part of a step.
+	 *
+	 * @param index The step index.
+	 * @return The total number of repetitions of the part.
+	 */
+	public int getTotalPartRepetitions(final int index) {
+		return mTotalPartRepetitions[getRepetition(index)];
+	}
+
+	/**
+	 * Get the index of the first step of a repetition.
+	 *
+	 * @param repetition The repetition number (starting with 1).
+	 * @return The index of the first step of this repetition, or the step count if there is no such step.
+	 */
+	public int getFirstStepOfRepetition(final int repetition) {
+		int low = 0;
+		int high = mPackedSteps.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (getRepetition(mid) < repetition) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Get the index of a step given by its position within the exercise.
+	 *
+	 * @param partNumber     The part number (starting with 1).
+	 * @param partRepetition The repetition number within the part (starting with 1).
+	 * @param step           The number of the step within the repetition (starting with 0).
+	 * @return The step index, or the step count if there is no such step.
+	 */
+	public int getStepIndex(final int partNumber, final int partRepetition, final int step) {
+		// Steps are ordered by part number and part repetition, so the first step of the repetition can be found by binary search.
+		int stepCount = mPackedSteps.size();
+		int low = 0;
+		int high = stepCount;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (getPartNumber(mid) < partNumber || getPartNumber(mid) == partNumber && getPartRepetition(mid) < partRepetition) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		int index = low + step;
+		if (low >= stepCount || getPartNumber(low) != partNumber || getPartRepetition(low) != partRepetition || step < 0
+				|| index >= stepCount || getRepetition(index) != getRepetition(low)) {
+			return stepCount;
+		}
+		return index;
+	}
+
+	/**
+	 * Get the index of the step running at a certain offset.
+	 *
+	 * @param offset The offset (in ms from exercise start).
+	 * @return The index of the step running at this offset, or the step count if the offset is after the end.
+	 */
+	public int getStepIndexAt(final long offset) {
+		int low = 0;
+		int high = mPackedSteps.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (mStartOffsets[mid + 1] <= offset) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
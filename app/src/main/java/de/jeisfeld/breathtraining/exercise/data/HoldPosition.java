@@ -1,9 +1,7 @@
 package de.jeisfeld.breathtraining.exercise.data;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
  * Enumeration for the hold positions.
@@ -26,113 +24,137 @@ public enum HoldPosition {
 	 */
 	VARIABLE;
 
-	/**
-	 * A random stream of doubles.
-	 */
-	private static final transient Iterator<Double> DOUBLE_ITERATOR = new Random().doubles().iterator();
-
 	/**
 	 * Apply the hold variation to a duration.
 	 *
 	 * @param duration      The duration.
 	 * @param holdVariation The hold variation to be applied.
+	 * @param random        The random source.
 	 * @return The duration with hold variation.
 	 */
-	private static long applyHoldVariation(final long duration, final double holdVariation) {
-		return (long) (duration * (1 + (DOUBLE_ITERATOR.next() * 2 - 1) * holdVariation));
+	private static long applyHoldVariation(final long duration, final double holdVariation, final SplittableRandom random) {
+		return (long) (duration * (1 + (random.nextDouble() * 2 - 1) * holdVariation));
 	}
 
 	/**
-	 * Split a breath into parts, including hold.
+	 * Get the number of steps into which a breath is split, including hold.
 	 *
-	 * @param originalStep  The original breath.
+	 * @return The number of steps, or -1 if it varies.
+	 */
+	public int getStepCount() {
+		switch (this) {
+		case ONLY_END:
+			return 2;
+		case ONE_INTERMITTENT:
+			return 4; // MAGIC_NUMBER
+		case TWO_INTERMITTENT:
+			return 6; // MAGIC_NUMBER
+		case VARIABLE:
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * Split a breath into parts, including hold, and add them to a step buffer.
+	 *
+	 * @param stepType      The step type of the breath.
+	 * @param duration      The duration of the breath.
+	 * @param repetition    The repetition data.
 	 * @param holdDuration  The hold duration.
 	 * @param holdVariation The hold variation.
-	 * @return The split step.
+	 * @param random        The random source for the hold variation.
+	 * @param steps         The buffer to which the steps are added.
 	 */
-	public List<ExerciseStep> applyHold(final ExerciseStep originalStep, final long holdDuration, final double holdVariation) {
-		List<ExerciseStep> result = new ArrayList<>();
+	public void applyHold(final StepType stepType, final long duration, final RepetitionData repetition, final long holdDuration,
+						  final double holdVariation, final SplittableRandom random, final StepBuffer steps) {
 		long stepDuration;
 		long breakDuration;
-		RepetitionData repetition = originalStep.getRepetition();
-		StepType originalType = originalStep.getStepType();
-		StepType continueType = originalType.getContinueType();
+		StepType continueType = stepType.getContinueType();
 
 		switch (this) {
 		case ONLY_END:
-			result.add(originalStep);
-			result.add(new ExerciseStep(StepType.HOLD, applyHoldVariation(holdDuration, holdVariation), repetition));
-			return result;
+			steps.add(stepType, duration, repetition);
+			steps.add(StepType.HOLD, applyHoldVariation(holdDuration, holdVariation, random), repetition);
+			return;
 		case ONE_INTERMITTENT:
-			stepDuration = originalStep.getDuration() / 2;
+			stepDuration = duration / 2;
 			breakDuration = holdDuration / 2;
-			result.add(new ExerciseStep(originalType, stepDuration, originalStep.getSoundDuration(), repetition));
-			result.add(new ExerciseStep(StepType.HOLD, applyHoldVariation(breakDuration, holdVariation), repetition));
-			result.add(new ExerciseStep(continueType, stepDuration, originalStep.getSoundDuration(),
-					repetition));
-			result.add(new ExerciseStep(StepType.HOLD, applyHoldVariation(breakDuration, holdVariation), repetition));
-			return result;
+			steps.add(stepType, stepDuration, duration, repetition);
+			steps.add(StepType.HOLD, applyHoldVariation(breakDuration, holdVariation, random), repetition);
+			steps.add(continueType, stepDuration, duration, repetition);
+			steps.add(StepType.HOLD, applyHoldVariation(breakDuration, holdVariation, random), repetition);
+			return;
 		case TWO_INTERMITTENT:
-			stepDuration = originalStep.getDuration() / 3; // MAGIC_NUMBER
+			stepDuration = duration / 3; // MAGIC_NUMBER
 			breakDuration = holdDuration / 3; // MAGIC_NUMBER
-			result.add(new ExerciseStep(originalType, stepDuration, originalStep.getSoundDuration(), repetition));
-			result.add(new ExerciseStep(StepType.HOLD, applyHoldVariation(breakDuration, holdVariation), repetition));
-			result.add(new ExerciseStep(continueType, stepDuration, originalStep.getSoundDuration(),
-					repetition));
-			result.add(new ExerciseStep(StepType.HOLD, applyHoldVariation(breakDuration, holdVariation), repetition));
-			result.add(new ExerciseStep(continueType, stepDuration, originalStep.getSoundDuration(),
-					repetition));
-			result.add(new ExerciseStep(StepType.HOLD, applyHoldVariation(breakDuration, holdVariation), repetition));
-			return result;
+			steps.add(stepType, stepDuration, duration, repetition);
+			steps.add(StepType.HOLD, applyHoldVariation(breakDuration, holdVariation, random), repetition);
+			steps.add(continueType, stepDuration, duration, repetition);
+			steps.add(StepType.HOLD, applyHoldVariation(breakDuration, holdVariation, random), repetition);
+			steps.add(continueType, stepDuration, duration, repetition);
+			steps.add(StepType.HOLD, applyHoldVariation(breakDuration, holdVariation, random), repetition);
+			return;
 		case VARIABLE:
-			long totalHoldDuration = applyHoldVariation(holdDuration, holdVariation);
-			if (originalStep.getDuration() <= 2000 || totalHoldDuration <= 2000) { // MAGIC_NUMBER
+			long totalHoldDuration = applyHoldVariation(holdDuration, holdVariation, random);
+			if (duration <= 2000 || totalHoldDuration <= 2000) { // MAGIC_NUMBER
 				// at least 1s between holds
-				result.add(originalStep);
-				return result;
+				steps.add(stepType, duration, repetition);
+				return;
 			}
 
 			// determine number of intermediate holds - for both hold and breath, number of parts should be smaller than average duration in s.
-			int maxIntermediateHoldCount1 = (int) Math.sqrt(originalStep.getDuration() / 1000.0 - 2); // MAGIC_NUMBER
+			int maxIntermediateHoldCount1 = (int) Math.sqrt(duration / 1000.0 - 2); // MAGIC_NUMBER
 			int maxIntermediateHoldCount2 = (int) Math.sqrt(totalHoldDuration / 1000.0 - 2); // MAGIC_NUMBER
-			int intermediateHoldCount = (int) (DOUBLE_ITERATOR.next() * (Math.min(maxIntermediateHoldCount1, maxIntermediateHoldCount2) + 1));
+			int intermediateHoldCount = (int) (random.nextDouble() * (Math.min(maxIntermediateHoldCount1, maxIntermediateHoldCount2) + 1));
 
-			List<Long> breathDurations = splitInParts(originalStep.getDuration(), intermediateHoldCount);
-			List<Long> holdDurations = splitInParts(totalHoldDuration, intermediateHoldCount);
+			// The split positions of breath and hold are stored one after the other.
+			int positionCount = intermediateHoldCount + 2;
+			double[] splitPositions = steps.getScratch(2 * positionCount);
+			createSplitPositions(splitPositions, 0, intermediateHoldCount, random);
+			createSplitPositions(splitPositions, positionCount, intermediateHoldCount, random);
 
 			for (int i = 0; i <= intermediateHoldCount; i++) {
-				result.add(
-						new ExerciseStep(i == 0 ? originalType : continueType, breathDurations.get(i), originalStep.getSoundDuration(), repetition));
-				result.add(new ExerciseStep(StepType.HOLD, holdDurations.get(i), repetition));
+				steps.add(i == 0 ? stepType : continueType, getPartDuration(splitPositions, i, duration, intermediateHoldCount), duration,
+						repetition);
+				steps.add(StepType.HOLD, getPartDuration(splitPositions, positionCount + i, totalHoldDuration, intermediateHoldCount), repetition);
 			}
-			return result;
+			return;
 		default:
-			result.add(originalStep);
-			return result;
+			steps.add(stepType, duration, repetition);
 		}
 	}
 
 	/**
-	 * Split a number of milliseconds into parts of length at least 1 second.
+	 * Create the sorted positions at which a duration is split into parts, including the start position 0 and the end position 1.
 	 *
-	 * @param duration The full duration in milliseconds.
-	 * @param numberOfParts The number of parts.
-	 * @return The split.
+	 * @param splitPositions The array into which the positions are written.
+	 * @param offset The offset within the array.
+	 * @param numberOfParts The number of intermediate split positions.
+	 * @param random The random source.
 	 */
-	private static List<Long> splitInParts(final long duration, final int numberOfParts) {
-		List<Double> intermediateSplitPositions = new ArrayList<>();
-		intermediateSplitPositions.add(1.0);
-		intermediateSplitPositions.add(0.0);
+	private static void createSplitPositions(final double[] splitPositions, final int offset, final int numberOfParts,
+											 final SplittableRandom random) {
+		splitPositions[offset] = 1.0;
+		splitPositions[offset + 1] = 0.0;
 		for (int i = 0; i < numberOfParts; i++) {
-			intermediateSplitPositions.add(DOUBLE_ITERATOR.next());
-		}
-		intermediateSplitPositions.sort(Double::compare);
-		List<Long> splitDurations = new ArrayList<>();
-		for (int i = 0; i <= numberOfParts; i++) {
-			splitDurations.add(Math.round(1000 + (intermediateSplitPositions.get(i + 1) - intermediateSplitPositions.get(i)) // MAGIC_NUMBER
-					* (duration - numberOfParts * 1000 - 1000))); // MAGIC_NUMBER
+			splitPositions[offset + 2 + i] = random.nextDouble();
 		}
-		return splitDurations;
+		Arrays.sort(splitPositions, offset, offset + numberOfParts + 2);
+	}
+
+	/**
+	 * Get the length of a part when splitting a number of milliseconds into parts of length at least 1 second.
+	 *
+	 * @param splitPositions The sorted split positions.
+	 * @param index The index of the start position of the part.
+	 * @param duration The full duration in milliseconds.
+	 * @param numberOfParts The number of intermediate split positions.
+	 * @return The length of the part.
+	 */
+	private static long getPartDuration(final double[] splitPositions, final int index, final long duration, final int numberOfParts) {
+		return Math.round(1000 + (splitPositions[index + 1] - splitPositions[index]) // MAGIC_NUMBER
+				* (duration - numberOfParts * 1000 - 1000)); // MAGIC_NUMBER
 	}
 
 }
@@ -0,0 +1,131 @@
+package de.jeisfeld.breathtraining.exercise.data;
+
+/**
+ * Encoding of an exercise step into a single long value, so that steps can be stored and transferred without objects.
+ *
+ * <p>Layout (from the lowest bit): 3 bits step type ordinal, 22 bits duration, 22 bits sound duration, 17 bits repetition number.
+ * Durations are limited to MAX_DURATION (about 70 minutes) and repetition numbers to MAX_REPETITION - larger values are rejected.
+ * Negative values are encoded as 0.
+ */
+public final class PackedStep {
+	/**
+	 * The number of bits of the step type.
+	 */
+	private static final int TYPE_BITS = 3;
+	/**
+	 * The number of bits of a duration.
+	 */
+	private static final int DURATION_BITS = 22;
+	/**
+	 * The number of bits of the repetition number.
+	 */
+	private static final int REPETITION_BITS = 17;
+	/**
+	 * The position of the duration.
+	 */
+	private static final int DURATION_SHIFT = TYPE_BITS;
+	/**
+	 * The position of the sound duration.
+	 */
+	private static final int SOUND_DURATION_SHIFT = DURATION_SHIFT + DURATION_BITS;
+	/**
+	 * The position of the repetition number.
+	 */
+	private static final int REPETITION_SHIFT = SOUND_DURATION_SHIFT + DURATION_BITS;
+	/**
+	 * The mask of the step type.
+	 */
+	private static final long TYPE_MASK = (1L << TYPE_BITS) - 1;
+	/**
+	 * The maximum duration that can be encoded (in ms).
+	 */
+	public static final long MAX_DURATION = (1L << DURATION_BITS) - 1;
+	/**
+	 * The maximum repetition number that can be encoded.
+	 */
+	public static final int MAX_REPETITION = (1 << REPETITION_BITS) - 1;
+	/**
+	 * The step types, cached to avoid copying the values array on each access.
+	 */
+	private static final StepType[] STEP_TYPES = StepType.values();
+
+	/**
+	 * Hide default constructor.
+	 */
+	private PackedStep() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Encode a step.
+	 *
+	 * @param stepType      The step type.
+	 * @param duration      The duration.
+	 * @param soundDuration The sound duration.
+	 * @param repetition    The repetition number.
+	 * @return The encoded step.
+	 * @throws IllegalArgumentException if a value exceeds its maximum.
+	 */
+	public static long encode(final StepType stepType, final long duration, final long soundDuration, final int repetition) {
+		return stepType.ordinal()
+				| check("Duration", duration, MAX_DURATION) << DURATION_SHIFT
+				| check("Sound duration", soundDuration, MAX_DURATION) << SOUND_DURATION_SHIFT
+				| check("Repetition", repetition, MAX_REPETITION) << REPETITION_SHIFT;
+	}
+
+	/**
+	 * Get the step type of an encoded step.
+	 *
+	 * @param packedStep The encoded step.
+	 * @return The step type.
+	 */
+	public static StepType getStepType(final long packedStep) {
+		return STEP_TYPES[(int) (packedStep & TYPE_MASK)];
+	}
+
+	/**
+	 * Get the duration of an encoded step.
+	 *
+	 * @param packedStep The encoded step.
+	 * @return The duration.
+	 */
+	public static long getDuration(final long packedStep) {
+		return packedStep >>> DURATION_SHIFT & MAX_DURATION;
+	}
+
+	/**
+	 * Get the sound duration of an encoded step.
+	 *
+	 * @param packedStep The encoded step.
+	 * @return The sound duration.
+	 */
+	public static long getSoundDuration(final long packedStep) {
+		return packedStep >>> SOUND_DURATION_SHIFT & MAX_DURATION;
+	}
+
+	/**
+	 * Get the repetition number of an encoded step.
+	 *
+	 * @param packedStep The encoded step.
+	 * @return The repetition number.
+	 */
+	public static int getRepetition(final long packedStep) {
+		return (int) (packedStep >>> REPETITION_SHIFT);
+	}
+
+	/**
+	 * Check that a value does not exceed its maximum, and map negative values to 0.
+	 *
+	 * @param name    The name of the value, for the error message.
+	 * @param value   The value.
+	 * @param maximum The maximum.
+	 * @return The value, or 0 if it is negative.
+	 * @throws IllegalArgumentException if the value exceeds the maximum.
+	 */
+	private static long check(final String name, final long value, final long maximum) {
+		if (value > maximum) {
+			throw new IllegalArgumentException(name + " " + value + " exceeds maximum " + maximum);
+		}
+		return Math.max(0, value);
+	}
+}
@@ -0,0 +1,103 @@
+package de.jeisfeld.breathtraining.exercise.data;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of steps encoded via PackedStep. The steps are held in a single long array, so that they can be stored and scanned
+ * without boxing.
+ */
+public final class PackedStepArray {
+	/**
+	 * The initial capacity.
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * The encoded steps.
+	 */
+	private long[] mSteps;
+	/**
+	 * The number of steps.
+	 */
+	private int mSize;
+
+	/**
+	 * Constructor for an empty array.
+	 */
+	public PackedStepArray() {
+		mSteps = new long[INITIAL_CAPACITY];
+		mSize = 0;
+	}
+
+	/**
+	 * Constructor for an empty array with a given capacity.
+	 *
+	 * @param capacity The initial capacity, e.g. the expected number of steps.
+	 */
+	public PackedStepArray(final int capacity) {
+		mSteps = new long[Math.max(INITIAL_CAPACITY, capacity)];
+		mSize = 0;
+	}
+
+	/**
+	 * Get the number of steps.
+	 *
+	 * @return The number of steps.
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * Add an encoded step.
+	 *
+	 * @param packedStep The encoded step.
+	 */
+	public void add(final long packedStep) {
+		if (mSize == mSteps.length) {
+			mSteps = Arrays.copyOf(mSteps, Math.max(INITIAL_CAPACITY, mSize * 2));
+		}
+		mSteps[mSize++] = packedStep;
+	}
+
+	/**
+	 * Add a step.
+	 *
+	 * @param stepType      The step type.
+	 * @param duration      The duration.
+	 * @param soundDuration The sound duration.
+	 * @param repetition    The repetition number.
+	 */
+	public void add(final StepType stepType, final long duration, final long soundDuration, final int repetition) {
+		add(PackedStep.encode(stepType, duration, soundDuration, repetition));
+	}
+
+	/**
+	 * Get an encoded step.
+	 *
+	 * @param index The step index.
+	 * @return The encoded step.
+	 */
+	public long get(final int index) {
+		if (index >= mSize) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		return mSteps[index];
+	}
+
+	/**
+	 * Remove all steps, keeping the capacity.
+	 */
+	public void clear() {
+		mSize = 0;
+	}
+
+	/**
+	 * Reduce the capacity to the number of steps.
+	 */
+	public void trimToSize() {
+		if (mSteps.length > mSize) {
+			mSteps = Arrays.copyOf(mSteps, mSize);
+		}
+	}
+}
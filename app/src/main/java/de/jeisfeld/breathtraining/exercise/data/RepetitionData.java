@@ -12,6 +12,14 @@ public class RepetitionData implements Serializable {
 	 * The default serial versio UID.
 	 */
 	private static final long serialVersionUID = 1L;
+	/**
+	 * The number of cached repetition data instances. Must be a power of 2.
+	 */
+	private static final int CACHE_SIZE = 256;
+	/**
+	 * The cached repetition data, indexed by the lower bits of the current repetition number.
+	 */
+	private static final RepetitionData[] CACHE = new RepetitionData[CACHE_SIZE];
 	/**
 	 * Total number of repetitions.
 	 */
@@ -77,6 +85,42 @@ public class RepetitionData implements Serializable {
 		mCurrentPartNumber = currentPartNumber;
 	}
 
+	/**
+	 * Get shared repetition data. As repetition data is immutable, all steps of a repetition can share the same instance, so that step
+	 * generation does not need to allocate it again for each step or each run.
+	 *
+	 * @param currentRepetition     The current repetition number
+	 * @param totalRepetitions      The total number of repetitions
+	 * @param currentPartRepetition The repetition number of the current part
+	 * @param totalPartRepetitions  The total number of repetitions of the current part
+	 * @param currentPartNumber     The name of the current part
+	 * @return The repetition data.
+	 */
+	public static RepetitionData of(final int currentRepetition, final int totalRepetitions, final int currentPartRepetition,
+									final int totalPartRepetitions, final int currentPartNumber) {
+		int cacheIndex = currentRepetition & (CACHE_SIZE - 1);
+		RepetitionData repetitionData = CACHE[cacheIndex];
+		if (repetitionData != null && repetitionData.mCurrentRepetition == currentRepetition
+				&& repetitionData.mTotalRepetitions == totalRepetitions && repetitionData.mCurrentPartRepetition == currentPartRepetition
+				&& repetitionData.mTotalPartRepetitions == totalPartRepetitions && repetitionData.mCurrentPartNumber == currentPartNumber) {
+			return repetitionData;
+		}
+		repetitionData = new RepetitionData(currentRepetition, totalRepetitions, currentPartRepetition, totalPartRepetitions, currentPartNumber);
+		CACHE[cacheIndex] = repetitionData;
+		return repetitionData;
+	}
+
+	/**
+	 * Get shared repetition data for an exercise without parts.
+	 *
+	 * @param currentRepetition The current repetition number
+	 * @param totalRepetitions The total number of repetitions
+	 * @return The repetition data.
+	 */
+	public static RepetitionData of(final int currentRepetition, final int totalRepetitions) {
+		return of(currentRepetition, totalRepetitions, currentRepetition, totalRepetitions, 1);
+	}
+
 	/**
 	 * Get the current repetition.
 	 *
@@ -95,6 +139,33 @@ public class RepetitionData implements Serializable {
 		return mTotalRepetitions;
 	}
 
+	/**
+	 * Get the current repetition number within the current part.
+	 *
+	 * @return The current repetition number within the current part.
+	 */
+	public int getCurrentPartRepetition() {
+		return mCurrentPartRepetition;
+	}
+
+	/**
+	 * Get the total repetitions of the current part.
+	 *
+	 * @return The total repetitions of the current part.
+	 */
+	public int getTotalPartRepetitions() {
+		return mTotalPartRepetitions;
+	}
+
+	/**
+	 * Get the number of the current part.
+	 *
+	 * @return The number of the current part.
+	 */
+	public int getCurrentPartNumber() {
+		return mCurrentPartNumber;
+	}
+
 	/**
 	 * Get repedition data with updated repetition number.
 	 *
@@ -102,7 +173,7 @@ public class RepetitionData implements Serializable {
 	 * @return The updated repetition data
 	 */
 	public RepetitionData updateRepetition(final int currentRepetition) {
-		return new RepetitionData(currentRepetition, mTotalRepetitions, mCurrentPartRepetition, mTotalPartRepetitions, mCurrentPartNumber);
+		return of(currentRepetition, mTotalRepetitions, mCurrentPartRepetition, mTotalPartRepetitions, mCurrentPartNumber);
 	}
 
 	@NonNull
@@ -1,6 +1,7 @@
 package de.jeisfeld.breathtraining.exercise.data;
 
 import java.util.Objects;
+import java.util.SplittableRandom;
 
 import de.jeisfeld.breathtraining.R;
 import de.jeisfeld.breathtraining.sound.SoundType;
@@ -40,14 +41,20 @@ public abstract class SingleExerciseData extends ExerciseData {
 		mBreathStartDuration = breathStartDuration;
 	}
 
+	@Override
+	protected final void addStepsForRepetition(final int repetition, final StepBuffer steps) {
+		addStepsForRepetition(repetition, RepetitionData.of(repetition, mRepetitions), createRandom(repetition), steps);
+	}
+
 	/**
-	 * Get the exercise steps for a certain repetition.
+	 * Add the exercise steps for a certain repetition to a step buffer.
 	 *
-	 * @param repetition The repetition number (starting with 1).
-	 * @return The steps for this repetition.
+	 * @param repetition     The repetition number (starting with 1).
+	 * @param repetitionData The repetition data to be used for the steps.
+	 * @param random         The random source for the variations of this repetition.
+	 * @param steps          The buffer to which the steps are added.
 	 */
-	@Override
-	protected abstract ExerciseStep[] getStepsForRepetition(int repetition);
+	protected abstract void addStepsForRepetition(int repetition, RepetitionData repetitionData, SplittableRandom random, StepBuffer steps);
 
 	/**
 	 * Get the number of repetitions.
@@ -1,8 +1,7 @@
 package de.jeisfeld.breathtraining.exercise.data;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Objects;
+import java.util.SplittableRandom;
 
 import de.jeisfeld.breathtraining.R;
 import de.jeisfeld.breathtraining.sound.SoundType;
@@ -236,34 +235,41 @@ public class StandardExerciseData extends SingleExerciseData {
 	}
 
 	@Override
-	protected final ExerciseStep[] getStepsForRepetition(final int repetition) {
+	protected final void addStepsForRepetition(final int repetition, final RepetitionData repetitionData, final SplittableRandom random,
+											   final StepBuffer steps) {
 		if (repetition > getRepetitions()) {
-			return null;
+			return;
 		}
 		long currentBreathDuration = calculateDuration(getBreathStartDuration(), mBreathEndDuration, repetition);
-		List<ExerciseStep> exerciseSteps = new ArrayList<>();
 
-		ExerciseStep inhaleStep = new ExerciseStep(StepType.INHALE, (long) (currentBreathDuration * getInOutRelation()),
-				new RepetitionData(repetition, getRepetitions()));
+		long inhaleDuration = (long) (currentBreathDuration * getInOutRelation());
 		if (mHoldBreathIn) {
 			long holdInDuration = calculateDuration(mHoldInStartDuration, mHoldInEndDuration, repetition);
-			exerciseSteps.addAll(mHoldInPosition.applyHold(inhaleStep, holdInDuration, mHoldVariation));
+			mHoldInPosition.applyHold(StepType.INHALE, inhaleDuration, repetitionData, holdInDuration, mHoldVariation, random, steps);
 		}
 		else {
-			exerciseSteps.add(inhaleStep);
+			steps.add(StepType.INHALE, inhaleDuration, repetitionData);
 		}
 
-		ExerciseStep exhaleStep = new ExerciseStep(StepType.EXHALE, (long) (currentBreathDuration * (1 - getInOutRelation())),
-				new RepetitionData(repetition, getRepetitions()));
+		long exhaleDuration = (long) (currentBreathDuration * (1 - getInOutRelation()));
 		if (mHoldBreathOut) {
 			long holdOutDuration = calculateDuration(mHoldOutStartDuration, mHoldOutEndDuration, repetition);
-			exerciseSteps.addAll(mHoldOutPosition.applyHold(exhaleStep, holdOutDuration, mHoldVariation));
+			mHoldOutPosition.applyHold(StepType.EXHALE, exhaleDuration, repetitionData, holdOutDuration, mHoldVariation, random, steps);
 		}
 		else {
-			exerciseSteps.add(exhaleStep);
+			steps.add(StepType.EXHALE, exhaleDuration, repetitionData);
 		}
+	}
 
-		return exerciseSteps.toArray(new ExerciseStep[0]);
+	@Override
+	protected final long countSteps(final int fromRepetition, final int toRepetition) {
+		int inhaleStepCount = mHoldBreathIn ? mHoldInPosition.getStepCount() : 1;
+		int exhaleStepCount = mHoldBreathOut ? mHoldOutPosition.getStepCount() : 1;
+		if (inhaleStepCount < 0 || exhaleStepCount < 0) {
+			return -1;
+		}
+		int repetitionCount = Math.max(0, Math.min(toRepetition, getRepetitions() + 1) - Math.max(fromRepetition, 1));
+		return (long) repetitionCount * (inhaleStepCount + exhaleStepCount);
 	}
 
 	@Override
@@ -0,0 +1,153 @@
+package de.jeisfeld.breathtraining.exercise.data;
+
+import java.util.Arrays;
+
+/**
+ * A reusable buffer into which exercise steps are generated. The steps are held in parallel arrays, which grow as required and are kept on
+ * clear(), so that a buffer reused for step generation does not allocate in the steady state.
+ */
+public final class StepBuffer {
+	/**
+	 * The initial capacity.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The step types.
+	 */
+	private StepType[] mStepTypes = new StepType[INITIAL_CAPACITY];
+	/**
+	 * The step durations.
+	 */
+	private long[] mDurations = new long[INITIAL_CAPACITY];
+	/**
+	 * The sound durations.
+	 */
+	private long[] mSoundDurations = new long[INITIAL_CAPACITY];
+	/**
+	 * The repetition data of the steps.
+	 */
+	private RepetitionData[] mRepetitions = new RepetitionData[INITIAL_CAPACITY];
+	/**
+	 * The number of steps.
+	 */
+	private int mSize = 0;
+	/**
+	 * Temporary storage used while generating steps.
+	 */
+	private double[] mScratch = null;
+
+	/**
+	 * Get the number of steps.
+	 *
+	 * @return The number of steps.
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * Remove all steps, keeping the capacity.
+	 */
+	public void clear() {
+		Arrays.fill(mRepetitions, 0, mSize, null);
+		mSize = 0;
+	}
+
+	/**
+	 * Add a step.
+	 *
+	 * @param stepType      The step type.
+	 * @param duration      The duration.
+	 * @param soundDuration The sound duration.
+	 * @param repetition    The repetition data.
+	 */
+	public void add(final StepType stepType, final long duration, final long soundDuration, final RepetitionData repetition) {
+		if (mSize == mStepTypes.length) {
+			int capacity = mSize * 2;
+			mStepTypes = Arrays.copyOf(mStepTypes, capacity);
+			mDurations = Arrays.copyOf(mDurations, capacity);
+			mSoundDurations = Arrays.copyOf(mSoundDurations, capacity);
+			mRepetitions = Arrays.copyOf(mRepetitions, capacity);
+		}
+		mStepTypes[mSize] = stepType;
+		mDurations[mSize] = duration;
+		mSoundDurations[mSize] = soundDuration;
+		mRepetitions[mSize] = repetition;
+		mSize++;
+	}
+
+	/**
+	 * Add a step whose sound lasts the whole step.
+	 *
+	 * @param stepType   The step type.
+	 * @param duration   The duration.
+	 * @param repetition The repetition data.
+	 */
+	public void add(final StepType stepType, final long duration, final RepetitionData repetition) {
+		add(stepType, duration, duration, repetition);
+	}
+
+	/**
+	 * Get the step type of a step.
+	 *
+	 * @param index The step index.
+	 * @return The step type.
+	 */
+	public StepType getStepType(final int index) {
+		return mStepTypes[index];
+	}
+
+	/**
+	 * Get the duration of a step.
+	 *
+	 * @param index The step index.
+	 * @return The duration.
+	 */
+	public long getDuration(final int index) {
+		return mDurations[index];
+	}
+
+	/**
+	 * Get the sound duration of a step.
+	 *
+	 * @param index The step index.
+	 * @return The sound duration.
+	 */
+	public long getSoundDuration(final int index) {
+		return mSoundDurations[index];
+	}
+
+	/**
+	 * Get the repetition data of a step.
+	 *
+	 * @param index The step index.
+	 * @return The repetition data.
+	 */
+	public RepetitionData getRepetition(final int index) {
+		return mRepetitions[index];
+	}
+
+	/**
+	 * Create the exercise step object for a step.
+	 *
+	 * @param index The step index.
+	 * @return The exercise step.
+	 */
+	public ExerciseStep getStep(final int index) {
+		return new ExerciseStep(mStepTypes[index], mDurations[index], mSoundDurations[index], mRepetitions[index]);
+	}
+
+	/**
+	 * Get temporary storage for step generation. The content is not retained between calls.
+	 *
+	 * @param size The minimum size.
+	 * @return The temporary storage.
+	 */
+	double[] getScratch(final int size) {
+		if (mScratch == null || mScratch.length < size) {
+			mScratch = new double[Math.max(size, INITIAL_CAPACITY)];
+		}
+		return mScratch;
+	}
+}
@@ -0,0 +1,147 @@
+package de.jeisfeld.breathtraining.exercise.data;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A lazy spliterator over the steps of an exercise. The steps are generated repetition by repetition when they are reached, and the
+ * spliterator keeps its own position, so that any number of them may walk the same exercise data at the same time. Splitting is done by
+ * ranges of repetitions. If the exercise has no variable holds, the number of steps is known in advance, so that the spliterator is sized
+ * and skip() can pass over whole repetitions without generating them.
+ */
+public final class StepSpliterator implements Spliterator<ExerciseStep> {
+	/**
+	 * The minimum number of steps of a repetition, used for estimating the size if it is not known.
+	 */
+	private static final int MIN_STEPS_PER_REPETITION = 2;
+
+	/**
+	 * The exercise data.
+	 */
+	private final ExerciseData mExerciseData;
+	/**
+	 * Flag indicating if the number of steps is known in advance.
+	 */
+	private final boolean mIsSized;
+	/**
+	 * The generated steps of the current repetition.
+	 */
+	private StepBuffer mSteps = new StepBuffer();
+	/**
+	 * The position of the next step within the current repetition.
+	 */
+	private int mPosition = 0;
+	/**
+	 * The next repetition to be generated.
+	 */
+	private int mNextRepetition;
+	/**
+	 * The repetition after the last one covered by this spliterator.
+	 */
+	private int mEndRepetition;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param exerciseData   The exercise data.
+	 * @param fromRepetition The first repetition (starting with 1).
+	 * @param toRepetition   The repetition after the last one.
+	 */
+	StepSpliterator(final ExerciseData exerciseData, final int fromRepetition, final int toRepetition) {
+		mExerciseData = exerciseData;
+		mNextRepetition = fromRepetition;
+		mEndRepetition = toRepetition;
+		mIsSized = exerciseData.countSteps(fromRepetition, toRepetition) >= 0;
+	}
+
+	@Override
+	public boolean tryAdvance(final Consumer<? super ExerciseStep> action) {
+		if (!fill()) {
+			return false;
+		}
+		action.accept(mSteps.getStep(mPosition++));
+		return true;
+	}
+
+	/**
+	 * Skip steps.
+	 *
+	 * @param count The number of steps to be skipped.
+	 * @return The number of steps skipped. This is less than count only if the end is reached.
+	 */
+	public long skip(final long count) {
+		long skipped = 0;
+		while (skipped < count) {
+			if (mPosition < mSteps.size()) {
+				int stepsInBuffer = (int) Math.min(count - skipped, mSteps.size() - mPosition);
+				mPosition += stepsInBuffer;
+				skipped += stepsInBuffer;
+			}
+			else if (mNextRepetition >= mEndRepetition) {
+				break;
+			}
+			else {
+				long repetitionSteps = mIsSized ? mExerciseData.countSteps(mNextRepetition, mNextRepetition + 1) : -1;
+				if (repetitionSteps >= 0 && repetitionSteps <= count - skipped) {
+					// Skip the whole repetition without generating it.
+					mNextRepetition++;
+					skipped += repetitionSteps;
+				}
+				else {
+					fill();
+				}
+			}
+		}
+		return skipped;
+	}
+
+	@Override
+	public Spliterator<ExerciseStep> trySplit() {
+		int middleRepetition = (mNextRepetition + mEndRepetition) >>> 1;
+		if (middleRepetition <= mNextRepetition) {
+			return null;
+		}
+		// The prefix takes over the steps already generated.
+		StepSpliterator prefix = new StepSpliterator(mExerciseData, mNextRepetition, middleRepetition);
+		StepBuffer steps = prefix.mSteps;
+		prefix.mSteps = mSteps;
+		prefix.mPosition = mPosition;
+		mSteps = steps;
+		mPosition = 0;
+		mNextRepetition = middleRepetition;
+		return prefix;
+	}
+
+	@Override
+	public long estimateSize() {
+		long stepsInBuffer = mSteps.size() - mPosition;
+		if (mIsSized) {
+			return stepsInBuffer + mExerciseData.countSteps(mNextRepetition, mEndRepetition);
+		}
+		else {
+			return stepsInBuffer + (long) Math.max(0, mEndRepetition - mNextRepetition) * MIN_STEPS_PER_REPETITION;
+		}
+	}
+
+	@Override
+	public int characteristics() {
+		return mIsSized ? ORDERED | NONNULL | SIZED | SUBSIZED : ORDERED | NONNULL;
+	}
+
+	/**
+	 * Generate the next repetitions until there are steps available.
+	 *
+	 * @return true if there is a next step.
+	 */
+	private boolean fill() {
+		while (mPosition >= mSteps.size()) {
+			if (mNextRepetition >= mEndRepetition) {
+				return false;
+			}
+			mSteps.clear();
+			mPosition = 0;
+			mExerciseData.addStepsForRepetition(mNextRepetition++, mSteps);
+		}
+		return true;
+	}
+}
@@ -0,0 +1,799 @@
+package de.jeisfeld.breathtraining.exercise.service;
+
+import android.util.Log;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.jeisfeld.breathtraining.clock.Scheduler;
+import de.jeisfeld.breathtraining.exercise.data.ExerciseData;
+import de.jeisfeld.breathtraining.exercise.data.ExerciseTimeline;
+import de.jeisfeld.breathtraining.exercise.data.PlayStatus;
+import de.jeisfeld.breathtraining.exercise.data.StepType;
+import de.jeisfeld.breathtraining.sound.SoundType;
+
+/**
+ * The playback engine for exercises. It runs on a single long-lived thread which owns all playback state. Commands are passed to this
+ * thread via a lock-free mailbox, and steps are scheduled as tasks at their deadline. All timing is based on the clock of the scheduler.
+ * The engine does not depend on the Android runtime (only on constants), so that it can also run on a plain JVM.
+ */
+final class ExerciseEngine {
+	/**
+	 * Command for starting an exercise.
+	 */
+	private static final int CMD_START = 1;
+	/**
+	 * Command for stopping the exercise.
+	 */
+	private static final int CMD_STOP = 2;
+	/**
+	 * Command for pausing the exercise.
+	 */
+	private static final int CMD_PAUSE = 3;
+	/**
+	 * Command for resuming the exercise.
+	 */
+	private static final int CMD_RESUME = 4;
+	/**
+	 * Command for skipping to the next step.
+	 */
+	private static final int CMD_SKIP = 5;
+	/**
+	 * Command for seeking to a step.
+	 */
+	private static final int CMD_SEEK = 6;
+
+	/**
+	 * The scheduler running the engine thread.
+	 */
+	private final Scheduler mScheduler;
+	/**
+	 * The task for processing the mailbox.
+	 */
+	private final Runnable mCommandTask = this::processCommands;
+	/**
+	 * The task for executing the next step.
+	 */
+	private final Runnable mStepTask = this::executeStep;
+	/**
+	 * The task for starting the sound of the next step ahead of the step, compensating the audio output latency.
+	 */
+	private final Runnable mCueTask = this::playNextCue;
+	/**
+	 * The task for ending the exercise after relax.
+	 */
+	private final Runnable mEndTask = this::endExercise;
+	/**
+	 * The callback for the effects of the engine.
+	 */
+	private final EngineCallback mCallback;
+	/**
+	 * The mailbox of commands to the engine thread. Multiple producers, single consumer (the engine thread).
+	 */
+	private final ConcurrentLinkedQueue<EngineCommand> mMailbox = new ConcurrentLinkedQueue<>();
+	/**
+	 * The sequence number of the last command posted to the mailbox.
+	 */
+	private final AtomicLong mCommandSequence = new AtomicLong();
+
+	/**
+	 * The exercise data. Null if no exercise is running.
+	 */
+	private volatile ExerciseData mExerciseData = null;
+	/**
+	 * The compiled timeline of the exercise.
+	 */
+	private volatile ExerciseTimeline mTimeline;
+	/**
+	 * The index of the next step within the timeline.
+	 */
+	private int mNextStepIndex;
+	/**
+	 * The index of the current step in the timeline. Equal to the step count while relaxing, and -1 before the first step.
+	 */
+	private volatile int mCurrentStepIndex = -1;
+	/**
+	 * The deadline (in ms of the scheduler clock) for the start of the next step. Steps are scheduled against this absolute deadline, so
+	 * that the overhead of each step is absorbed instead of accumulated.
+	 */
+	private long mNextStepTime;
+	/**
+	 * The time (in ms) by which sounds are started ahead of their step, so that they become audible at the step start.
+	 */
+	private long mAudioLead = 0;
+	/**
+	 * The index of the step whose sound has already been started ahead of the step. -1 if there is none.
+	 */
+	private int mCuedStepIndex = -1;
+	/**
+	 * The delay of the onset of the last step against its deadline. As steps are scheduled against absolute deadlines, this is the drift
+	 * accumulated since the schedule has last been reset.
+	 */
+	private long mDrift = 0;
+	/**
+	 * Flag indicating if exercise is pausing.
+	 */
+	private boolean mIsPausing = false;
+	/**
+	 * The remaining duration of the current step at the time of pausing. Negative if playback should continue with the start of the next
+	 * step on resume.
+	 */
+	private long mPausedRemainingTime = -1;
+	/**
+	 * Flag indicating if the final relax step is running.
+	 */
+	private boolean mIsRelaxing = false;
+	/**
+	 * The start id of the last processed service command.
+	 */
+	private int mLastStartId = 0;
+	/**
+	 * The sequence number of the last processed command.
+	 */
+	private long mLastSequenceNumber = 0;
+	/**
+	 * The maximum command-to-effect latency.
+	 */
+	private long mMaxCommandLatency = 0;
+	/**
+	 * The onset telemetry of the current session.
+	 */
+	private final OnsetTelemetry mTelemetry = new OnsetTelemetry();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param scheduler The scheduler running the engine thread. It defines the clock of the engine, so that exercises may also run in
+	 *                  virtual time.
+	 * @param callback  The callback for the effects of the engine.
+	 */
+	ExerciseEngine(final Scheduler scheduler, final EngineCallback callback) {
+		mScheduler = scheduler;
+		mCallback = callback;
+	}
+
+	/**
+	 * Start an exercise. A running exercise is replaced.
+	 *
+	 * @param exerciseData The exercise data.
+	 * @param startId      The start id of the service command.
+	 */
+	void start(final ExerciseData exerciseData, final int startId) {
+		postCommand(CMD_START, exerciseData, startId);
+	}
+
+	/**
+	 * Stop the exercise.
+	 *
+	 * @param startId The start id of the service command.
+	 */
+	void stop(final int startId) {
+		postCommand(CMD_STOP, null, startId);
+	}
+
+	/**
+	 * Seek to a step. The timeline is searched in O(log n) and playback continues at the start of the step, without restarting the engine.
+	 *
+	 * @param offset   The target time offset. Used if no position is given.
+	 * @param position The target position (part number, part repetition, step), or null.
+	 */
+	private void seek(final long offset, final int[] position) {
+		if (mExerciseData == null) {
+			return;
+		}
+		int stepIndex = position == null ? mTimeline.getStepIndexAt(offset) : mTimeline.getStepIndex(position[0], position[1], position[2]);
+		if (stepIndex >= mTimeline.getStepCount()) {
+			return;
+		}
+		removeStepTasks();
+		mScheduler.remove(mEndTask);
+		mIsRelaxing = false;
+		mCuedStepIndex = -1;
+		mNextStepIndex = stepIndex;
+		if (mIsPausing) {
+			mCurrentStepIndex = stepIndex;
+			mPausedRemainingTime = -1;
+			mCallback.onStepStarted(PlayStatus.PAUSED, mTimeline, stepIndex, mExerciseData);
+		}
+		else {
+			mNextStepTime = mScheduler.now();
+			executeStep();
+		}
+	}
+
+	/**
+	 * Pause the exercise.
+	 *
+	 * @param exerciseData The new exercise data.
+	 * @param startId      The start id of the service command.
+	 */
+	void pause(final ExerciseData exerciseData, final int startId) {
+		postCommand(CMD_PAUSE, exerciseData, startId);
+	}
+
+	/**
+	 * Resume the exercise.
+	 *
+	 * @param exerciseData The new exercise data.
+	 * @param startId      The start id of the service command.
+	 */
+	void resume(final ExerciseData exerciseData, final int startId) {
+		postCommand(CMD_RESUME, exerciseData, startId);
+	}
+
+	/**
+	 * Skip to the next breath.
+	 *
+	 * @param startId The start id of the service command.
+	 */
+	void skip(final int startId) {
+		postCommand(CMD_SKIP, null, startId);
+	}
+
+	/**
+	 * Seek to the step running at a certain time offset. Playback continues at the start of this step.
+	 *
+	 * @param offset  The time offset (in ms from exercise start).
+	 * @param startId The start id of the service command.
+	 */
+	void seekToOffset(final long offset, final int startId) {
+		postCommand(CMD_SEEK, null, startId, offset, null);
+	}
+
+	/**
+	 * Seek to a step given by its position within the exercise.
+	 *
+	 * @param partNumber     The part number (starting with 1).
+	 * @param partRepetition The repetition number within the part (starting with 1).
+	 * @param step           The number of the step within the repetition (starting with 0).
+	 * @param startId        The start id of the service command.
+	 */
+	void seekToStep(final int partNumber, final int partRepetition, final int step, final int startId) {
+		postCommand(CMD_SEEK, null, startId, 0, new int[] {partNumber, partRepetition, step});
+	}
+
+	/**
+	 * Post a command to the mailbox and wake up the engine thread.
+	 *
+	 * @param type         The command type.
+	 * @param exerciseData The exercise data, if relevant for the command.
+	 * @param startId      The start id of the service command.
+	 */
+	private void postCommand(final int type, final ExerciseData exerciseData, final int startId) {
+		postCommand(type, exerciseData, startId, 0, null);
+	}
+
+	/**
+	 * Post a command to the mailbox and wake up the engine thread.
+	 *
+	 * @param type         The command type.
+	 * @param exerciseData The exercise data, if relevant for the command.
+	 * @param startId      The start id of the service command.
+	 * @param seekOffset   The target time offset of a seek command.
+	 * @param seekPosition The target position (part number, part repetition, step) of a seek command. Null for seek by offset.
+	 */
+	private void postCommand(final int type, final ExerciseData exerciseData, final int startId, final long seekOffset,
+							 final int[] seekPosition) {
+		mMailbox.offer(new EngineCommand(type, exerciseData, startId, mCommandSequence.incrementAndGet(), mScheduler.now(), seekOffset,
+				seekPosition));
+		mScheduler.post(mCommandTask);
+	}
+
+	/**
+	 * Check if there are commands which are not yet processed. This may be used to abort delayed effects of a step, such as a sound start
+	 * waiting for its preparation, once the step has been superseded. May be called from any thread.
+	 *
+	 * @return true if there are pending commands.
+	 */
+	boolean hasPendingCommands() {
+		return !mMailbox.isEmpty();
+	}
+
+	/**
+	 * Report the time when the sound of a step has actually been started, for the onset telemetry. May be called from any thread.
+	 *
+	 * @param cueId     The id of the sound, as passed to playSound.
+	 * @param scheduled The time of the scheduler clock when the sound should have been started. This differs from the start time passed to
+	 *                  playSound if the sound has been delayed to its step.
+	 * @param time      The time of the scheduler clock when the sound has been started.
+	 */
+	void reportAudioStart(final int cueId, final long scheduled, final long time) {
+		if (cueId >= 0) {
+			mScheduler.post(() -> mTelemetry.recordAudioStart(cueId, scheduled, time));
+		}
+	}
+
+	/**
+	 * Quit the engine thread. Pending steps are discarded.
+	 */
+	void quit() {
+		mMailbox.clear();
+		mScheduler.quit();
+	}
+
+	/**
+	 * Get the data of the running exercise.
+	 *
+	 * @return The exercise data, or null if no exercise is running.
+	 */
+	ExerciseData getExerciseData() {
+		return mExerciseData;
+	}
+
+	/**
+	 * Get the compiled timeline of the running exercise.
+	 *
+	 * @return The timeline, or null if no exercise is running.
+	 */
+	ExerciseTimeline getTimeline() {
+		return mTimeline;
+	}
+
+	/**
+	 * Get the index of the current step within the timeline.
+	 *
+	 * @return The step index. Equal to the step count while relaxing, and -1 if no step has been started.
+	 */
+	int getCurrentStepIndex() {
+		return mCurrentStepIndex;
+	}
+
+	/**
+	 * Get the position of the current step within the exercise.
+	 *
+	 * @return The start offset of the current step (in ms from exercise start), or 0 if no exercise is running.
+	 */
+	long getCurrentOffset() {
+		ExerciseTimeline timeline = mTimeline;
+		return timeline == null ? 0 : timeline.getStartOffset(Math.max(0, Math.min(mCurrentStepIndex, timeline.getStepCount())));
+	}
+
+	/**
+	 * Get the total duration of the running exercise.
+	 *
+	 * @return The total duration (in ms), or 0 if no exercise is running.
+	 */
+	long getTotalDuration() {
+		ExerciseTimeline timeline = mTimeline;
+		return timeline == null ? 0 : timeline.getTotalDuration();
+	}
+
+	/**
+	 * Process all commands in the mailbox.
+	 */
+	private void processCommands() {
+		EngineCommand command = mMailbox.poll();
+		while (command != null) {
+			mLastStartId = command.mStartId;
+			switch (command.mType) {
+			case CMD_START:
+				startExercise(command.mExerciseData);
+				break;
+			case CMD_STOP:
+				endExercise();
+				break;
+			case CMD_PAUSE:
+				pauseExercise(command.mExerciseData);
+				break;
+			case CMD_RESUME:
+				resumeExercise(command.mExerciseData);
+				break;
+			case CMD_SKIP:
+				skipStep();
+				break;
+			case CMD_SEEK:
+				seek(command.mSeekOffset, command.mSeekPosition);
+				break;
+			default:
+				break;
+			}
+			command.mLatency = mScheduler.now() - command.mEnqueueTime;
+			mMaxCommandLatency = Math.max(mMaxCommandLatency, command.mLatency);
+			if (command.mSequenceNumber != mLastSequenceNumber + 1) {
+				mCallback.log(Log.WARN, "Command sequence gap: expected " + (mLastSequenceNumber + 1) + ", got " + command.mSequenceNumber);
+			}
+			mLastSequenceNumber = command.mSequenceNumber;
+			mCallback.log(Log.DEBUG, "Command " + command.mSequenceNumber + " (type " + command.mType + ") took effect after "
+					+ command.mLatency + "ms, max latency: " + mMaxCommandLatency + "ms");
+			command = mMailbox.poll();
+		}
+	}
+
+	/**
+	 * Start an exercise.
+	 *
+	 * @param exerciseData The exercise data.
+	 */
+	private void startExercise(final ExerciseData exerciseData) {
+		removeStepTasks();
+		mScheduler.remove(mEndTask);
+		mExerciseData = exerciseData;
+		if (!compileTimeline(exerciseData)) {
+			return;
+		}
+		mNextStepIndex = mTimeline.getFirstStepOfRepetition(exerciseData.getCurrentRepetitionNumber() + 1);
+		mIsPausing = false;
+		mIsRelaxing = false;
+		mCuedStepIndex = -1;
+		mDrift = 0;
+		mTelemetry.reset();
+		mCallback.onExerciseStarted(exerciseData, mTimeline);
+		mNextStepTime = mScheduler.now();
+		executeStep();
+	}
+
+	/**
+	 * Compile the timeline of the exercise. If the exercise exceeds the limits of the timeline, it is ended instead.
+	 *
+	 * @param exerciseData The exercise data.
+	 * @return true if the timeline has been compiled.
+	 */
+	private boolean compileTimeline(final ExerciseData exerciseData) {
+		try {
+			mTimeline = ExerciseTimeline.compile(exerciseData);
+			return true;
+		}
+		catch (IllegalArgumentException e) {
+			mCallback.log(Log.ERROR, "Cannot play exercise: " + e.getMessage());
+			endExercise();
+			return false;
+		}
+	}
+
+	/**
+	 * Execute the next step and schedule the following one.
+	 */
+	private void executeStep() {
+		if (mExerciseData == null || mIsPausing) {
+			return;
+		}
+		if (mNextStepIndex >= mTimeline.getStepCount()) {
+			relax();
+			return;
+		}
+		final int stepIndex = mNextStepIndex++;
+		mCurrentStepIndex = stepIndex;
+		final long stepDeadline = mNextStepTime;
+		mNextStepTime = stepDeadline + mTimeline.getDuration(stepIndex);
+		final long onset = mScheduler.now();
+		mDrift = onset - stepDeadline;
+		if (stepIndex != mCuedStepIndex) {
+			// Otherwise the sound has already been started ahead of the step.
+			mCallback.playSound(mExerciseData.getSoundType(), mTimeline.getStepType(stepIndex), mTimeline.getSoundDuration(stepIndex),
+					stepDeadline, stepDeadline, mTelemetry.prepareAudioStart(stepDeadline));
+		}
+		mCuedStepIndex = -1;
+		mCallback.onStepStarted(PlayStatus.PLAYING, mTimeline, stepIndex, mExerciseData);
+		mTelemetry.record(stepDeadline, onset, mScheduler.now());
+		scheduleNextStep();
+		prepareNextStep();
+	}
+
+	/**
+	 * Schedule the next step at its deadline, and the start of its sound ahead of it by the audio lead.
+	 */
+	private void scheduleNextStep() {
+		mScheduler.postAt(mStepTask, mNextStepTime);
+		// Updated per step, so that a change of the output route is taken into account.
+		mAudioLead = Math.max(0, mCallback.getAudioLatency());
+		if (mAudioLead > 0 && mNextStepIndex < mTimeline.getStepCount() && mCuedStepIndex != mNextStepIndex) {
+			mScheduler.postAt(mCueTask, Math.max(mScheduler.now(), mNextStepTime - mAudioLead));
+		}
+	}
+
+	/**
+	 * Remove the scheduled tasks of the next step.
+	 */
+	private void removeStepTasks() {
+		mScheduler.remove(mStepTask);
+		mScheduler.remove(mCueTask);
+	}
+
+	/**
+	 * Start the sound of the next step ahead of the step.
+	 */
+	private void playNextCue() {
+		if (mExerciseData == null || mIsPausing || mNextStepIndex >= mTimeline.getStepCount()) {
+			return;
+		}
+		mCallback.playSound(mExerciseData.getSoundType(), mTimeline.getStepType(mNextStepIndex), mTimeline.getSoundDuration(mNextStepIndex),
+				mNextStepTime - mAudioLead, mNextStepTime, mTelemetry.prepareAudioStart(mNextStepTime - mAudioLead));
+		mCuedStepIndex = mNextStepIndex;
+	}
+
+	/**
+	 * Prepare the sound of the next step, so that only its start remains at the step boundary.
+	 */
+	private void prepareNextStep() {
+		if (mNextStepIndex < mTimeline.getStepCount()) {
+			mCallback.prepareSound(mExerciseData.getSoundType(), mTimeline.getStepType(mNextStepIndex), mTimeline.getSoundDuration(mNextStepIndex));
+		}
+		else {
+			mCallback.prepareSound(mExerciseData.getSoundType(), StepType.RELAX, 0);
+		}
+	}
+
+	/**
+	 * Execute the final relax step.
+	 */
+	private void relax() {
+		mDrift = mScheduler.now() - mNextStepTime;
+		logSessionSummary("finished");
+		mIsRelaxing = true;
+		mCurrentStepIndex = mTimeline.getStepCount();
+		mCallback.playSound(mExerciseData.getSoundType(), StepType.RELAX, 0, mScheduler.now(), mScheduler.now(), -1);
+		mCallback.onStepStarted(PlayStatus.PLAYING, mTimeline, mCurrentStepIndex, mExerciseData);
+		mScheduler.postAt(mEndTask, mScheduler.now() + mExerciseData.getSoundType().getRelaxDuration());
+	}
+
+	/**
+	 * Skip to the next breath, omitting holds.
+	 */
+	private void skipStep() {
+		if (mExerciseData == null || mIsPausing) {
+			return;
+		}
+		if (mIsRelaxing) {
+			endExercise();
+			return;
+		}
+		removeStepTasks();
+		mCuedStepIndex = -1;
+		while (mNextStepIndex < mTimeline.getStepCount() && mTimeline.getStepType(mNextStepIndex).isHold()) {
+			mNextStepIndex++;
+		}
+		// Step was cut short, so the schedule continues from now.
+		mNextStepTime = mScheduler.now();
+		executeStep();
+	}
+
+	/**
+	 * Pause the exercise.
+	 *
+	 * @param exerciseData The new exercise data.
+	 */
+	private void pauseExercise(final ExerciseData exerciseData) {
+		if (mExerciseData == null) {
+			return;
+		}
+		if (mIsRelaxing) {
+			endExercise();
+			return;
+		}
+		if (!mIsPausing) {
+			removeStepTasks();
+			mIsPausing = true;
+			// Keep the exact position within the step, so that resume can continue from there.
+			mPausedRemainingTime = Math.max(0, mNextStepTime - mScheduler.now());
+			mCallback.pauseSound();
+		}
+		exerciseData.updatePlayStatus(PlayStatus.PAUSED);
+		// Keep the seed of the run, so that the current timeline stays valid for the new exercise data.
+		exerciseData.setSeed(mExerciseData.getSeed());
+		mExerciseData = exerciseData;
+		mCallback.onStepStarted(PlayStatus.PAUSED, mTimeline, mCurrentStepIndex, exerciseData);
+	}
+
+	/**
+	 * Resume the exercise. If the exercise has not been changed while pausing, it continues at the exact point where it has been paused.
+	 * Otherwise it continues from the start of the current repetition.
+	 *
+	 * @param exerciseData The new exercise data.
+	 */
+	private void resumeExercise(final ExerciseData exerciseData) {
+		if (mExerciseData == null || mIsRelaxing) {
+			return;
+		}
+		removeStepTasks();
+		exerciseData.updatePlayStatus(PlayStatus.PLAYING);
+		boolean isUnchanged = mIsPausing && exerciseData.equals(mExerciseData);
+		exerciseData.setSeed(mExerciseData.getSeed());
+		mExerciseData = exerciseData;
+		mIsPausing = false;
+		if (isUnchanged) {
+			if (mPausedRemainingTime >= 0) {
+				// Continue the paused step with its remaining duration.
+				mCallback.resumeSound();
+				mCallback.onStepStarted(PlayStatus.PLAYING, mTimeline, mCurrentStepIndex, exerciseData);
+				mNextStepTime = mScheduler.now() + mPausedRemainingTime;
+				mPausedRemainingTime = -1;
+				scheduleNextStep();
+			}
+			else {
+				// Seeked while pausing - start with the selected step.
+				mNextStepTime = mScheduler.now();
+				executeStep();
+			}
+			return;
+		}
+
+		if (!compileTimeline(exerciseData)) {
+			return;
+		}
+		mNextStepIndex = mTimeline.getFirstStepOfRepetition(Math.max(1, exerciseData.getCurrentRepetitionNumber()));
+		mPausedRemainingTime = -1;
+		mCuedStepIndex = -1;
+		mCallback.onStepStarted(PlayStatus.PLAYING, mTimeline, mCurrentStepIndex, exerciseData);
+		mNextStepTime = mScheduler.now();
+		executeStep();
+	}
+
+	/**
+	 * Log the drift and the onset telemetry of the session.
+	 *
+	 * @param reason The reason of the session end.
+	 */
+	private void logSessionSummary(final String reason) {
+		mCallback.log(Log.INFO, "Exercise " + reason + ". End drift: " + mDrift + "ms. " + String.join(", ", mTelemetry.getSummary()));
+	}
+
+	/**
+	 * End the exercise.
+	 */
+	private void endExercise() {
+		removeStepTasks();
+		mScheduler.remove(mEndTask);
+		ExerciseData exerciseData = mExerciseData;
+		if (exerciseData != null && !mIsRelaxing) {
+			// Otherwise the summary has already been logged at the start of relax.
+			logSessionSummary("stopped");
+		}
+		mExerciseData = null;
+		mTimeline = null;
+		mCurrentStepIndex = -1;
+		mIsPausing = false;
+		mIsRelaxing = false;
+		if (exerciseData != null && mTelemetry.getCount() > 0) {
+			mCallback.onSessionTelemetry(mTelemetry);
+			mTelemetry.reset();
+		}
+		mCallback.onExerciseEnded(exerciseData, mLastStartId);
+	}
+
+	/**
+	 * A command to the engine.
+	 */
+	private static final class EngineCommand {
+		/**
+		 * The command type.
+		 */
+		private final int mType;
+		/**
+		 * The exercise data, if relevant for the command.
+		 */
+		private final ExerciseData mExerciseData;
+		/**
+		 * The start id of the service command.
+		 */
+		private final int mStartId;
+		/**
+		 * The sequence number of the command.
+		 */
+		private final long mSequenceNumber;
+		/**
+		 * The time when the command was posted.
+		 */
+		private final long mEnqueueTime;
+		/**
+		 * The target time offset of a seek command.
+		 */
+		private final long mSeekOffset;
+		/**
+		 * The target position (part number, part repetition, step) of a seek command.
+		 */
+		private final int[] mSeekPosition;
+		/**
+		 * The measured time from posting the command until it took effect.
+		 */
+		private long mLatency = -1;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param type           The command type.
+		 * @param exerciseData   The exercise data, if relevant for the command.
+		 * @param startId        The start id of the service command.
+		 * @param sequenceNumber The sequence number of the command.
+		 * @param enqueueTime    The time when the command was posted.
+		 * @param seekOffset     The target time offset of a seek command.
+		 * @param seekPosition   The target position of a seek command.
+		 */
+		private EngineCommand(final int type, final ExerciseData exerciseData, final int startId, final long sequenceNumber,
+				final long enqueueTime, final long seekOffset, final int[] seekPosition) {
+			mType = type;
+			mExerciseData = exerciseData;
+			mStartId = startId;
+			mSequenceNumber = sequenceNumber;
+			mEnqueueTime = enqueueTime;
+			mSeekOffset = seekOffset;
+			mSeekPosition = seekPosition;
+		}
+	}
+
+	/**
+	 * Callback for the effects of the engine. All methods are called on the engine thread.
+	 */
+	interface EngineCallback {
+		/**
+		 * Callback on start of an exercise.
+		 *
+		 * @param exerciseData The exercise data.
+		 * @param timeline     The compiled timeline of the exercise.
+		 */
+		void onExerciseStarted(ExerciseData exerciseData, ExerciseTimeline timeline);
+
+		/**
+		 * Play the sound of a step. This should only hand over the request to the audio output, without blocking the engine thread.
+		 *
+		 * @param soundType     The sound type.
+		 * @param stepType      The step type.
+		 * @param soundDuration The sound duration.
+		 * @param startTime     The time of the scheduler clock at which the sound should start. If it is already over, the sound should
+		 *                      start immediately.
+		 * @param stepTime      The time of the scheduler clock of the step. The start time is ahead of it by the audio latency. A sound whose
+		 *                      player does not have this latency should start at the step time instead.
+		 * @param cueId         The id of the sound, by which its actual start is reported via reportAudioStart. -1 if not needed.
+		 */
+		void playSound(SoundType soundType, StepType stepType, long soundDuration, long startTime, long stepTime, int cueId);
+
+		/**
+		 * Prepare the sound of the next step while the current step is running.
+		 *
+		 * @param soundType     The sound type.
+		 * @param stepType      The step type of the next step.
+		 * @param soundDuration The sound duration of the next step.
+		 */
+		void prepareSound(SoundType soundType, StepType stepType, long soundDuration);
+
+		/**
+		 * Get the audio output latency. Sounds are started ahead of their step by this time. This is called for each step, so it must
+		 * return a cached value without blocking.
+		 *
+		 * @return The audio output latency in ms.
+		 */
+		long getAudioLatency();
+
+		/**
+		 * Pause the sound.
+		 */
+		void pauseSound();
+
+		/**
+		 * Resume the sound at the position where it has been paused.
+		 */
+		void resumeSound();
+
+		/**
+		 * Callback on start of a step or change of the play status.
+		 *
+		 * @param playStatus   The play status.
+		 * @param timeline     The timeline of the exercise.
+		 * @param stepIndex    The index of the current step in the timeline. Equal to the step count for the final relax step.
+		 * @param exerciseData The exercise data.
+		 */
+		void onStepStarted(PlayStatus playStatus, ExerciseTimeline timeline, int stepIndex, ExerciseData exerciseData);
+
+		/**
+		 * Callback providing the onset telemetry at the end of a session.
+		 *
+		 * @param telemetry The onset telemetry.
+		 */
+		void onSessionTelemetry(OnsetTelemetry telemetry);
+
+		/**
+		 * Callback on end of the exercise.
+		 *
+		 * @param exerciseData The exercise data, or null if no exercise was running.
+		 * @param startId      The start id of the last processed service command.
+		 */
+		void onExerciseEnded(ExerciseData exerciseData, int startId);
+
+		/**
+		 * Log a diagnostic message of the engine.
+		 *
+		 * @param priority The log priority, as defined in android.util.Log.
+		 * @param message  The message.
+		 */
+		void log(int priority, String message);
+	}
+}
@@ -12,28 +12,37 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.media.AudioDeviceCallback;
+import android.media.AudioDeviceInfo;
+import android.media.AudioManager;
 import android.os.Build;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
+import android.os.Process;
+import android.util.Log;
 import android.view.View;
 import android.widget.RemoteViews;
 
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
-import java.util.List;
 
 import androidx.core.app.NotificationCompat;
 import androidx.core.content.ContextCompat;
+import de.jeisfeld.breathtraining.Application;
 import de.jeisfeld.breathtraining.MainActivity;
 import de.jeisfeld.breathtraining.R;
+import de.jeisfeld.breathtraining.clock.HandlerScheduler;
+import de.jeisfeld.breathtraining.clock.Scheduler;
 import de.jeisfeld.breathtraining.exercise.data.ExerciseData;
-import de.jeisfeld.breathtraining.exercise.data.ExerciseStep;
+import de.jeisfeld.breathtraining.exercise.data.ExerciseTimeline;
+import de.jeisfeld.breathtraining.exercise.data.ExerciseTimeline;
 import de.jeisfeld.breathtraining.exercise.data.PlayStatus;
-import de.jeisfeld.breathtraining.exercise.data.RepetitionData;
 import de.jeisfeld.breathtraining.exercise.data.StepType;
-import de.jeisfeld.breathtraining.sound.MediaTrigger;
-import de.jeisfeld.breathtraining.sound.SoundPlayer;
+import de.jeisfeld.breathtraining.sound.CuePlayer;
+import de.jeisfeld.breathtraining.sound.OutputLatency;
+import de.jeisfeld.breathtraining.sound.SoundType;
 import de.jeisfeld.breathtraining.util.PreferenceUtil;
 
 /**
@@ -64,19 +73,75 @@ public class ExerciseService extends Service {
 	 * Intent key for the service command.
 	 */
 	private static final String EXTRA_SERVICE_COMMAND = "de.jeisfeld.breathtraining.SERVICE_COMMAND";
+	/**
+	 * Intent key for the time offset of a seek.
+	 */
+	private static final String EXTRA_SEEK_OFFSET = "de.jeisfeld.breathtraining.SEEK_OFFSET";
+	/**
+	 * Intent key for the part number of a seek.
+	 */
+	private static final String EXTRA_SEEK_PART_NUMBER = "de.jeisfeld.breathtraining.SEEK_PART_NUMBER";
+	/**
+	 * Intent key for the part repetition of a seek.
+	 */
+	private static final String EXTRA_SEEK_PART_REPETITION = "de.jeisfeld.breathtraining.SEEK_PART_REPETITION";
+	/**
+	 * Intent key for the step of a seek.
+	 */
+	private static final String EXTRA_SEEK_STEP = "de.jeisfeld.breathtraining.SEEK_STEP";
 	/**
 	 * The id of the notification channel.
 	 */
 	public static final String CHANNEL_ID = "BreathTrainingChannel";
 
-	/**
-	 * The running threads.
-	 */
-	private static final List<ExerciseAnimationThread> RUNNING_THREADS = new ArrayList<>();
 	/**
 	 * The service query receiver.
 	 */
 	private ServiceQueryReceiver mServiceQueryReceiver = null;
+	/**
+	 * The playback engine.
+	 */
+	private ExerciseEngine mExerciseEngine = null;
+	/**
+	 * The wakelock held while an exercise is running.
+	 */
+	private WakeLock mWakeLock = null;
+	/**
+	 * The scheduler of the audio thread. All audio I/O and decoder setup is done there, so that it cannot delay the engine thread.
+	 */
+	private Scheduler mAudioScheduler = null;
+	/**
+	 * The player for the sound cues of the running exercise. Only accessed from the audio thread.
+	 */
+	private CuePlayer mCuePlayer = null;
+	/**
+	 * The calibrated output latency of the current output route in ms. Updated on the audio thread whenever the output devices change, so
+	 * that the engine thread only reads a plain value.
+	 */
+	private volatile long mAudioLatency = 0;
+	/**
+	 * The callback updating the output latency on change of the output devices. Called on the audio thread.
+	 */
+	private final AudioDeviceCallback mAudioDeviceCallback = new AudioDeviceCallback() {
+		@Override
+		public void onAudioDevicesAdded(final AudioDeviceInfo[] addedDevices) {
+			updateAudioLatency();
+		}
+
+		@Override
+		public void onAudioDevicesRemoved(final AudioDeviceInfo[] removedDevices) {
+			updateAudioLatency();
+		}
+	};
+	/**
+	 * The start of a cue which has been delayed to the start of its step, as the output latency of its player is not compensated. null if
+	 * there is none. Only accessed from the audio thread.
+	 */
+	private Runnable mDelayedCue = null;
+	/**
+	 * The time of the step of the delayed cue. While pausing, this is the remaining time until the step. Only accessed from the audio thread.
+	 */
+	private long mDelayedCueTime = 0;
 
 	/**
 	 * Trigger the exercise service.
@@ -89,6 +154,37 @@ public class ExerciseService extends Service {
 		ContextCompat.startForegroundService(context, getTriggerIntent(context, serviceCommand, exerciseData));
 	}
 
+	/**
+	 * Trigger the exercise service to seek to a certain step of the running exercise.
+	 *
+	 * @param context The context.
+	 * @param exerciseData The exercise data.
+	 * @param partNumber The part number (starting with 1).
+	 * @param partRepetition The repetition number within the part (starting with 1).
+	 * @param step The number of the step within the repetition (starting with 0).
+	 */
+	public static void triggerSeek(final Context context, final ExerciseData exerciseData, final int partNumber, final int partRepetition,
+			final int step) {
+		Intent serviceIntent = getTriggerIntent(context, ServiceCommand.SEEK, exerciseData);
+		serviceIntent.putExtra(EXTRA_SEEK_PART_NUMBER, partNumber);
+		serviceIntent.putExtra(EXTRA_SEEK_PART_REPETITION, partRepetition);
+		serviceIntent.putExtra(EXTRA_SEEK_STEP, step);
+		ContextCompat.startForegroundService(context, serviceIntent);
+	}
+
+	/**
+	 * Trigger the exercise service to seek to the step running at a certain time offset of the running exercise.
+	 *
+	 * @param context The context.
+	 * @param exerciseData The exercise data.
+	 * @param offset The time offset (in ms from exercise start).
+	 */
+	public static void triggerSeek(final Context context, final ExerciseData exerciseData, final long offset) {
+		Intent serviceIntent = getTriggerIntent(context, ServiceCommand.SEEK, exerciseData);
+		serviceIntent.putExtra(EXTRA_SEEK_OFFSET, offset);
+		ContextCompat.startForegroundService(context, serviceIntent);
+	}
+
 	/**
 	 * Check if ExerciseService is running.
 	 *
@@ -125,7 +221,12 @@ public class ExerciseService extends Service {
 		super.onCreate();
 		mServiceQueryReceiver = new ServiceQueryReceiver(this);
 		ContextCompat.registerReceiver(this, mServiceQueryReceiver, new IntentFilter(ServiceQueryReceiver.RECEIVER_ACTION), ContextCompat.RECEIVER_NOT_EXPORTED);
-		createNotificationChannel();
+		createNotificationChannel(this);
+		mAudioScheduler = new HandlerScheduler("ExerciseAudio", Process.THREAD_PRIORITY_URGENT_AUDIO);
+		// The registration reports the currently connected devices, so that the latency is initialized as well.
+		mAudioScheduler.post(() -> ((AudioManager) getSystemService(AUDIO_SERVICE))
+				.registerAudioDeviceCallback(mAudioDeviceCallback, new Handler(Looper.myLooper())));
+		mExerciseEngine = new ExerciseEngine(new HandlerScheduler("ExerciseEngine", Process.THREAD_PRIORITY_AUDIO), new ServiceEngineCallback());
 	}
 
 	@Override
@@ -139,56 +240,44 @@ public class ExerciseService extends Service {
 
 		switch (serviceCommand) {
 		case START:
-			ExerciseAnimationThread newThread = new ExerciseAnimationThread(exerciseData);
-			synchronized (RUNNING_THREADS) {
-				RUNNING_THREADS.notifyAll();
-				if (!RUNNING_THREADS.isEmpty()) {
-					RUNNING_THREADS.get(RUNNING_THREADS.size() - 1).stopExercise();
-				}
-				RUNNING_THREADS.add(newThread);
-			}
-			newThread.start();
+			mExerciseEngine.start(exerciseData, startId);
 			break;
 		case STOP:
-			synchronized (RUNNING_THREADS) {
-				RUNNING_THREADS.notifyAll();
-				if (!RUNNING_THREADS.isEmpty()) {
-					RUNNING_THREADS.get(RUNNING_THREADS.size() - 1).stopExercise();
-				}
-			}
+			mExerciseEngine.stop(startId);
 			break;
 		case PAUSE:
-			synchronized (RUNNING_THREADS) {
-				if (!RUNNING_THREADS.isEmpty()) {
-					RUNNING_THREADS.get(RUNNING_THREADS.size() - 1).pause(exerciseData);
-					RUNNING_THREADS.get(RUNNING_THREADS.size() - 1).updateExerciseData(exerciseData, PlayStatus.PAUSED, false);
-				}
-			}
+			mExerciseEngine.pause(exerciseData, startId);
 			break;
 		case RESUME:
-			synchronized (RUNNING_THREADS) {
-				if (!RUNNING_THREADS.isEmpty()) {
-					RUNNING_THREADS.get(RUNNING_THREADS.size() - 1).resume(exerciseData);
-				}
-				RUNNING_THREADS.notifyAll();
-			}
+			mExerciseEngine.resume(exerciseData, startId);
 			break;
 		case SKIP:
-			synchronized (RUNNING_THREADS) {
-				if (!RUNNING_THREADS.isEmpty()) {
-					RUNNING_THREADS.get(RUNNING_THREADS.size() - 1).skipStep();
-				}
+			mExerciseEngine.skip(startId);
+			break;
+		case SEEK:
+			if (intent.hasExtra(EXTRA_SEEK_OFFSET)) {
+				mExerciseEngine.seekToOffset(intent.getLongExtra(EXTRA_SEEK_OFFSET, 0), startId);
+				break;
 			}
+			mExerciseEngine.seekToStep(intent.getIntExtra(EXTRA_SEEK_PART_NUMBER, 1), intent.getIntExtra(EXTRA_SEEK_PART_REPETITION, 1),
+					intent.getIntExtra(EXTRA_SEEK_STEP, 0), startId);
 			break;
 		default:
 		}
-		startNotification(exerciseData, null, serviceCommand, serviceCommand == ServiceCommand.PAUSE);
+		startNotification(exerciseData, null, -1, serviceCommand, serviceCommand == ServiceCommand.PAUSE);
 		return START_STICKY;
 	}
 
 	@Override
 	public final void onDestroy() {
 		super.onDestroy();
+		mExerciseEngine.quit();
+		mAudioScheduler.post(() -> {
+			((AudioManager) getSystemService(AUDIO_SERVICE)).unregisterAudioDeviceCallback(mAudioDeviceCallback);
+			releaseCuePlayer();
+			mAudioScheduler.quit();
+		});
+		releaseWakelock();
 		unregisterReceiver(mServiceQueryReceiver);
 	}
 
@@ -198,33 +287,38 @@ public class ExerciseService extends Service {
 	}
 
 	/**
-	 * Get a wakelock and acquire it.
-	 *
-	 * @param thread The thread aquiring the wakelock.
-	 * @return The wakelock.
+	 * Acquire the wakelock, if configured and not yet held.
 	 */
 	@SuppressLint("WakelockTimeout")
-	private WakeLock acquireWakelock(final Thread thread) {
-		if (PreferenceUtil.getSharedPreferenceBoolean(R.string.key_pref_use_wakelock, true)) {
+	private synchronized void acquireWakelock() {
+		if (mWakeLock == null && PreferenceUtil.getSharedPreferenceBoolean(R.string.key_pref_use_wakelock, true)) {
 			PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
 			assert powerManager != null;
-			WakeLock wakelock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "de.jeisfeld.breathtraining:" + thread.hashCode());
-			wakelock.acquire();
-			return wakelock;
+			mWakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "de.jeisfeld.breathtraining:" + hashCode());
+			mWakeLock.acquire();
 		}
-		else {
-			return null;
+	}
+
+	/**
+	 * Release the wakelock, if held.
+	 */
+	private synchronized void releaseWakelock() {
+		if (mWakeLock != null && mWakeLock.isHeld()) {
+			mWakeLock.release();
 		}
+		mWakeLock = null;
 	}
 
 	/**
-	 * Create the channel for service animation notifications.
+	 * Create the channel for the notifications of the app.
+	 *
+	 * @param context The context.
 	 */
-	private void createNotificationChannel() {
+	public static void createNotificationChannel(final Context context) {
 		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
 			NotificationChannel animationChannel = new NotificationChannel(
-					CHANNEL_ID, getString(R.string.notification_channel), NotificationManager.IMPORTANCE_LOW);
-			NotificationManager manager = getSystemService(NotificationManager.class);
+					CHANNEL_ID, context.getString(R.string.notification_channel), NotificationManager.IMPORTANCE_LOW);
+			NotificationManager manager = context.getSystemService(NotificationManager.class);
 			assert manager != null;
 			manager.createNotificationChannel(animationChannel);
 		}
@@ -234,20 +328,22 @@ public class ExerciseService extends Service {
 	 * Start the notification.
 	 *
 	 * @param exerciseData   The exercise data.
-	 * @param exerciseStep   The current exercise step.
+	 * @param timeline       The timeline of the exercise.
+	 * @param stepIndex      The index of the current step in the timeline, or -1 if there is no current step.
 	 * @param serviceCommand The service command.
 	 * @param isPausing      Flag indicating if the exercise is pausing.
 	 */
-	private void startNotification(final ExerciseData exerciseData, final ExerciseStep exerciseStep,
+	private void startNotification(final ExerciseData exerciseData, final ExerciseTimeline timeline, final int stepIndex,
 								   final ServiceCommand serviceCommand, final boolean isPausing) {
 		Intent notificationIntent = new Intent(this, MainActivity.class);
 		notificationIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_SINGLE_TOP);
 		notificationIntent.putExtra(ServiceReceiver.EXTRA_EXERCISE_DATA, exerciseData);
-		notificationIntent.putExtra(ServiceReceiver.EXTRA_EXERCISE_STEP, exerciseStep);
+		ServiceReceiver.putExerciseStep(notificationIntent, timeline, stepIndex);
 
 		int contentTextResource = R.string.notification_text_exercise_running;
-		if (exerciseStep != null) {
-			contentTextResource = exerciseStep.getStepType().getDisplayResource();
+		StepType stepType = getStepType(timeline, stepIndex);
+		if (stepType != null) {
+			contentTextResource = stepType.getDisplayResource();
 		}
 		else if (serviceCommand != null && serviceCommand.getDisplayResource() != 0) {
 			contentTextResource = serviceCommand.getDisplayResource();
@@ -302,22 +398,24 @@ public class ExerciseService extends Service {
 	/**
 	 * Update the service after the exercise has ended.
 	 *
-	 * @param wakeLock The wakelock.
-	 * @param animationData The instance of animationData which is ended.
-	 * @param thread The thread which is ended.
-	 */
-	private void updateOnEndExercise(final WakeLock wakeLock, final ExerciseData animationData, final Thread thread) {
-		if (wakeLock != null && wakeLock.isHeld()) {
-			wakeLock.release();
-		}
-		synchronized (RUNNING_THREADS) {
-			// noinspection SuspiciousMethodCalls
-			RUNNING_THREADS.remove(thread);
-			if (RUNNING_THREADS.isEmpty()) {
-				SoundPlayer.releaseInstance(MediaTrigger.SERVICE);
-				stopService(new Intent(this, ExerciseService.class));
-				sendBroadcasts(PlayStatus.STOPPED, null, null);
-			}
+	 * @param startId The start id of the last service command processed by the engine.
+	 */
+	private void updateOnEndExercise(final int startId) {
+		releaseWakelock();
+		mAudioScheduler.post(this::releaseCuePlayer);
+		sendBroadcasts(PlayStatus.STOPPED, null, -1, null);
+		// Do not stop if further commands have been received in the meantime.
+		stopSelf(startId);
+	}
+
+	/**
+	 * Release the cue player. Must be called on the audio thread.
+	 */
+	private void releaseCuePlayer() {
+		cancelDelayedCue();
+		if (mCuePlayer != null) {
+			mCuePlayer.release();
+			mCuePlayer = null;
 		}
 	}
 
@@ -344,7 +442,11 @@ public class ExerciseService extends Service {
 		/**
 		 * Skip to next step.
 		 */
-		SKIP(R.string.text_skipping);
+		SKIP(R.string.text_skipping),
+		/**
+		 * Seek to a step.
+		 */
+		SEEK(R.string.text_seeking);
 
 		/**
 		 * The text resource for displaying the service command.
@@ -370,187 +472,171 @@ public class ExerciseService extends Service {
 		}
 	}
 
-	/**
-	 * Get the sound delay for an exercise step. (Allow pre- delays in case of significant step durations.)
-	 *
-	 * @param step The step.
-	 * @return The sound delay.
-	 */
-	private static long getDelay(final ExerciseStep step) {
-		if (step.getDuration() < 500) { // MAGIC_NUMBER
-			return 0;
-		}
-		else if (step.getDuration() < 1000) { // MAGIC_NUMBER
-			return (step.getDuration() - 500) / 5; // MAGIC_NUMBER
-		}
-		else {
-			return 100; // MAGIC_NUMBER
-		}
-	}
-
 	/**
 	 * Send broadcasts for change of service status.
 	 *
 	 * @param playStatus   The play status.
-	 * @param exerciseStep The exercise step.
+	 * @param timeline     The timeline of the exercise.
+	 * @param stepIndex    The index of the current step in the timeline, or -1 if there is no current step.
 	 * @param exerciseData The exercise data.
 	 */
-	public void sendBroadcasts(final PlayStatus playStatus, final ExerciseStep exerciseStep, final ExerciseData exerciseData) {
-		sendBroadcast(ServiceReceiver.createIntent(playStatus, exerciseStep, exerciseData));
+	public void sendBroadcasts(final PlayStatus playStatus, final ExerciseTimeline timeline, final int stepIndex,
+							   final ExerciseData exerciseData) {
+		sendBroadcast(ServiceReceiver.createIntent(playStatus, timeline, stepIndex, exerciseData, mExerciseEngine.getCurrentOffset(),
+				mExerciseEngine.getTotalDuration()));
 
 		Intent intent = new Intent("de.jeisfeld.breathtraining.BREATH_EXERCISE");
 		intent.putExtra("de.jeisfeld.breathTraining.playStatus", playStatus.name());
-		if (exerciseStep != null) {
-			intent.putExtra("de.jeisfeld.breathTraining.stepType", exerciseStep.getStepType().name());
-			intent.putExtra("de.jeisfeld.breathTraining.duration", exerciseStep.getDuration());
+		StepType stepType = getStepType(timeline, stepIndex);
+		if (stepType != null) {
+			intent.putExtra("de.jeisfeld.breathTraining.stepType", stepType.name());
+			intent.putExtra("de.jeisfeld.breathTraining.duration", stepIndex < timeline.getStepCount() ? timeline.getDuration(stepIndex) : 0);
 		}
 		sendBroadcast(intent);
 	}
 
 	/**
-	 * An animation thread for the exercise.
+	 * Get the step type of a step of the timeline.
+	 *
+	 * @param timeline  The timeline of the exercise.
+	 * @param stepIndex The index of the step in the timeline.
+	 * @return The step type, RELAX if the index is beyond the last step, or null if there is no step.
 	 */
-	private final class ExerciseAnimationThread extends Thread {
-		/**
-		 * the exercise data.
-		 */
-		private ExerciseData mExerciseData;
-		/**
-		 * Flag indicating if the thread is stopping.
-		 */
-		private boolean mIsStopping = false;
-		/**
-		 * Flag indicating if exercise is skipping to next breath.
-		 */
-		private boolean mIsSkipping = false;
-		/**
-		 * Flag indicating if exercise is pausing.
-		 */
-		private boolean mIsPausing = false;
-		/**
-		 * The current exercise step.
-		 */
-		private ExerciseStep mExerciseStep = null;
+	private static StepType getStepType(final ExerciseTimeline timeline, final int stepIndex) {
+		if (timeline == null || stepIndex < 0) {
+			return null;
+		}
+		return stepIndex < timeline.getStepCount() ? timeline.getStepType(stepIndex) : StepType.RELAX;
+	}
 
-		/**
-		 * Constructor.
-		 *
-		 * @param exerciseData The exercise data.
-		 */
-		private ExerciseAnimationThread(final ExerciseData exerciseData) {
-			mExerciseData = exerciseData;
+	/**
+	 * Update the output latency of the current output route. Must be called on the audio thread, as determining the route may block for
+	 * some ms.
+	 */
+	private void updateAudioLatency() {
+		mAudioLatency = OutputLatency.getCurrentLatency(this);
+	}
+
+	/**
+	 * Start the cue of a step. Must be called on the audio thread. The output latency is calibrated for decoded and synthesized sounds
+	 * only, so a cue played by another player is not started ahead of its step, but delayed to the step itself.
+	 *
+	 * @param soundType     The sound type.
+	 * @param stepType      The step type.
+	 * @param soundDuration The sound duration.
+	 * @param startTime     The time at which the cue is started if its output latency is compensated.
+	 * @param stepTime      The time of the step.
+	 * @param cueId         The id of the cue for reporting its start to the engine.
+	 */
+	private void startCue(final SoundType soundType, final StepType stepType, final long soundDuration, final long startTime,
+			final long stepTime, final int cueId) {
+		cancelDelayedCue();
+		if (mCuePlayer == null) {
+			return;
 		}
+		if (startTime < stepTime && !mCuePlayer.isLatencyCompensated(soundType, stepType, soundDuration)) {
+			mDelayedCueTime = stepTime;
+			mDelayedCue = () -> startCue(soundType, stepType, soundDuration, mDelayedCueTime, mDelayedCueTime, cueId);
+			mAudioScheduler.postAt(mDelayedCue, mDelayedCueTime);
+			return;
+		}
+		mCuePlayer.play(soundType, stepType, soundDuration, mExerciseEngine::hasPendingCommands,
+				() -> mExerciseEngine.reportAudioStart(cueId, startTime, mAudioScheduler.now()));
+	}
 
-		/**
-		 * Update the exercise data.
-		 *
-		 * @param exerciseData The new exercise data.
-		 * @param playStatus The new playStatus.
-		 * @param goToRepetitionStart Flag indicating if the repetition should be started from the beginning.
-		 */
-		private void updateExerciseData(final ExerciseData exerciseData, final PlayStatus playStatus, final boolean goToRepetitionStart) {
-			exerciseData.retrieveStatus(mExerciseData, playStatus);
-			if (goToRepetitionStart) {
-				exerciseData.goBackToRepetitionStart();
-			}
-			mExerciseData = exerciseData;
+	/**
+	 * Cancel the delayed cue, if any. Must be called on the audio thread.
+	 */
+	private void cancelDelayedCue() {
+		if (mDelayedCue != null) {
+			mAudioScheduler.remove(mDelayedCue);
+			mDelayedCue = null;
+		}
+	}
+
+	/**
+	 * The callback handling the effects of the playback engine.
+	 */
+	private final class ServiceEngineCallback implements ExerciseEngine.EngineCallback {
+		@Override
+		public void onExerciseStarted(final ExerciseData exerciseData, final ExerciseTimeline timeline) {
+			acquireWakelock();
+			mAudioScheduler.post(() -> {
+				if (mCuePlayer == null) {
+					// Created on the audio thread, so that its callbacks run there.
+					mCuePlayer = new CuePlayer(ExerciseService.this);
+				}
+				mCuePlayer.preload(exerciseData.getSoundType(), timeline);
+			});
 		}
 
-		/**
-		 * Stop the exercise.
-		 */
-		private void stopExercise() {
-			mIsStopping = true;
-			mIsPausing = false;
-			mIsSkipping = false;
-			interrupt();
+		@Override
+		public void playSound(final SoundType soundType, final StepType stepType, final long soundDuration, final long startTime,
+				final long stepTime, final int cueId) {
+			mAudioScheduler.postAt(() -> startCue(soundType, stepType, soundDuration, startTime, stepTime, cueId), startTime);
 		}
 
-		/**
-		 * Skip a step.
-		 */
-		private void skipStep() {
-			mIsSkipping = true;
-			interrupt();
+		@Override
+		public void prepareSound(final SoundType soundType, final StepType stepType, final long soundDuration) {
+			mAudioScheduler.post(() -> {
+				if (mCuePlayer != null) {
+					mCuePlayer.prepareNext(soundType, stepType, soundDuration);
+				}
+			});
 		}
 
-		/**
-		 * Pause the thread.
-		 *
-		 * @param exerciseData The new exercise data.
-		 */
-		private void pause(final ExerciseData exerciseData) {
-			mIsPausing = true;
-			mIsSkipping = true;
-			interrupt();
-			updateExerciseData(exerciseData, PlayStatus.PAUSED, false);
-			sendBroadcasts(PlayStatus.PAUSED, mExerciseStep, exerciseData);
+		@Override
+		public long getAudioLatency() {
+			return mAudioLatency;
 		}
 
-		/**
-		 * Resume the thread.
-		 *
-		 * @param exerciseData The new exercise data.
-		 */
-		private void resume(final ExerciseData exerciseData) {
-			interrupt();
-			updateExerciseData(exerciseData, PlayStatus.PLAYING, true);
-			mIsPausing = false;
-			sendBroadcasts(PlayStatus.PLAYING, mExerciseStep, exerciseData);
+		@Override
+		public void pauseSound() {
+			mAudioScheduler.post(() -> {
+				if (mDelayedCue != null) {
+					// Keep the delayed cue with its remaining time, like the engine keeps the remaining time of the step.
+					mAudioScheduler.remove(mDelayedCue);
+					mDelayedCueTime -= mAudioScheduler.now();
+				}
+				if (mCuePlayer != null) {
+					mCuePlayer.pauseForResume();
+				}
+			});
 		}
 
 		@Override
-		public void run() {
-			final WakeLock wakeLock = acquireWakelock(this);
-			mExerciseStep = mExerciseData.getNextStep();
-
-			while (mExerciseStep != null) {
-				if (!(mIsSkipping && mExerciseStep.getStepType().isHold())) {
-					// Execute the step, except in case of hold while skipping
-					mIsSkipping = false;
-					try {
-						SoundPlayer.getInstance().play(ExerciseService.this, MediaTrigger.SERVICE, mExerciseData.getSoundType(),
-								mExerciseStep.getStepType(), getDelay(mExerciseStep), mExerciseStep.getSoundDuration());
-						sendBroadcasts(PlayStatus.PLAYING, mExerciseStep, mExerciseData);
-						startNotification(mExerciseData, mExerciseStep, null, mIsPausing);
-						// noinspection BusyWait
-						Thread.sleep(mExerciseStep.getDuration() - getDelay(mExerciseStep));
-					}
-					catch (InterruptedException e) {
-						if (mIsStopping) {
-							updateOnEndExercise(wakeLock, mExerciseData, this);
-							return;
-						}
-					}
-					synchronized (RUNNING_THREADS) {
-						if (mIsPausing) {
-							SoundPlayer.getInstance().pause();
-							try {
-								RUNNING_THREADS.wait();
-							}
-							catch (InterruptedException e) {
-								if (mIsStopping) {
-									updateOnEndExercise(wakeLock, mExerciseData, this);
-									return;
-								}
-							}
-						}
-					}
+		public void resumeSound() {
+			mAudioScheduler.post(() -> {
+				if (mCuePlayer != null) {
+					mCuePlayer.resume();
 				}
-				mExerciseStep = mExerciseData.getNextStep();
-			}
+				if (mDelayedCue != null) {
+					mDelayedCueTime += mAudioScheduler.now();
+					mAudioScheduler.postAt(mDelayedCue, mDelayedCueTime);
+				}
+			});
+		}
 
-			try {
-				SoundPlayer.getInstance().play(ExerciseService.this, MediaTrigger.SERVICE, mExerciseData.getSoundType(), StepType.RELAX);
-				mExerciseStep = new ExerciseStep(StepType.RELAX, 0, new RepetitionData());
-				sendBroadcasts(PlayStatus.PLAYING, mExerciseStep, mExerciseData);
-				startNotification(mExerciseData, mExerciseStep, null, mIsPausing);
-				Thread.sleep(mExerciseData.getSoundType().getRelaxDuration());
-			}
-			catch (InterruptedException e) {
-				// Ignore
-			}
-			updateOnEndExercise(wakeLock, mExerciseData, this);
+		@Override
+		public void onStepStarted(final PlayStatus playStatus, final ExerciseTimeline timeline, final int stepIndex,
+								  final ExerciseData exerciseData) {
+			sendBroadcasts(playStatus, timeline, stepIndex, exerciseData);
+			startNotification(exerciseData, timeline, stepIndex, null, playStatus == PlayStatus.PAUSED);
+		}
+
+		@Override
+		public void onSessionTelemetry(final OnsetTelemetry telemetry) {
+			telemetry.store(ExerciseService.this);
+		}
+
+		@Override
+		public void onExerciseEnded(final ExerciseData exerciseData, final int startId) {
+			updateOnEndExercise(startId);
+		}
+
+		@Override
+		public void log(final int priority, final String message) {
+			Log.println(priority, Application.TAG, message);
 		}
 	}
 
@@ -589,13 +675,13 @@ public class ExerciseService extends Service {
 				return;
 			}
 			ExerciseService exerciseService = mExerciseService.get();
-			if (exerciseService != null) {
-				synchronized (RUNNING_THREADS) {
-					if (!RUNNING_THREADS.isEmpty()) {
-						ExerciseData exerciseData = RUNNING_THREADS.get(RUNNING_THREADS.size() - 1).mExerciseData;
-						ExerciseStep exerciseStep = RUNNING_THREADS.get(RUNNING_THREADS.size() - 1).mExerciseStep;
-						exerciseService.sendBroadcast(ServiceReceiver.createIntent(exerciseData.getPlayStatus(), exerciseStep, exerciseData));
-					}
+			if (exerciseService != null && exerciseService.mExerciseEngine != null) {
+				ExerciseData exerciseData = exerciseService.mExerciseEngine.getExerciseData();
+				ExerciseTimeline timeline = exerciseService.mExerciseEngine.getTimeline();
+				int stepIndex = exerciseService.mExerciseEngine.getCurrentStepIndex();
+				if (exerciseData != null) {
+					exerciseService.sendBroadcast(ServiceReceiver.createIntent(exerciseData.getPlayStatus(), timeline, stepIndex, exerciseData,
+							exerciseService.mExerciseEngine.getCurrentOffset(), exerciseService.mExerciseEngine.getTotalDuration()));
 				}
 			}
 		}
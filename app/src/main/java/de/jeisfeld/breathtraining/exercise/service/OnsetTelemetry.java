@@ -0,0 +1,239 @@
+package de.jeisfeld.breathtraining.exercise.service;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+
+import de.jeisfeld.breathtraining.Application;
+
+/**
+ * Telemetry of the step onsets of an exercise session. For each step, the scheduled onset, the actual onset, the time of the audio start and
+ * the time of the broadcast dispatch are stored in fixed-size ring buffers, so that recording does not allocate. The audio start is the time
+ * when the sound has actually been started on the audio thread, which is reported back asynchronously. As sounds are intentionally started
+ * ahead of their step to compensate the output latency, the audio start is measured against its own scheduled time.
+ */
+public final class OnsetTelemetry {
+	/**
+	 * The number of steps kept in the ring buffers. Must be a power of 2.
+	 */
+	private static final int CAPACITY = 1024;
+	/**
+	 * The name of the file where the telemetry of the last session is stored.
+	 */
+	private static final String TELEMETRY_FILENAME = "onset_telemetry.csv";
+	/**
+	 * The prefix of summary lines in the telemetry file.
+	 */
+	private static final String SUMMARY_PREFIX = "# ";
+	/**
+	 * The percentiles shown in the summary.
+	 */
+	private static final double[] PERCENTILES = {0.5, 0.95, 0.99}; // MAGIC_NUMBER
+	/**
+	 * The value of a timestamp which is not known, e.g. the audio start of a step without sound.
+	 */
+	private static final long UNKNOWN = Long.MIN_VALUE;
+
+	/**
+	 * The scheduled onsets.
+	 */
+	private final long[] mScheduled = new long[CAPACITY];
+	/**
+	 * The actual onsets.
+	 */
+	private final long[] mOnset = new long[CAPACITY];
+	/**
+	 * The scheduled audio starts, i.e. the onsets advanced by the audio lead.
+	 */
+	private final long[] mAudioScheduled = new long[CAPACITY];
+	/**
+	 * The times when the sounds have been started on the audio thread.
+	 */
+	private final long[] mAudioStart = new long[CAPACITY];
+	/**
+	 * The times when the broadcast was dispatched.
+	 */
+	private final long[] mBroadcast = new long[CAPACITY];
+	/**
+	 * The number of recorded steps since the last reset.
+	 */
+	private int mCount = 0;
+
+	/**
+	 * Reset the telemetry for a new session.
+	 */
+	void reset() {
+		mCount = 0;
+	}
+
+	/**
+	 * Record the timing of a step. Its audio start is recorded separately.
+	 *
+	 * @param scheduled The scheduled onset.
+	 * @param onset     The actual onset.
+	 * @param broadcast The time when the broadcast was dispatched.
+	 */
+	void record(final long scheduled, final long onset, final long broadcast) {
+		int index = mCount & (CAPACITY - 1);
+		mScheduled[index] = scheduled;
+		mOnset[index] = onset;
+		mBroadcast[index] = broadcast;
+		mCount++;
+	}
+
+	/**
+	 * Get the number of the next step to be recorded, for reporting its audio start. Its audio start is unknown until it is reported.
+	 *
+	 * @param audioScheduled The time when the sound of the step should start.
+	 * @return The number of the next step.
+	 */
+	int prepareAudioStart(final long audioScheduled) {
+		int index = mCount & (CAPACITY - 1);
+		mAudioScheduled[index] = audioScheduled;
+		mAudioStart[index] = UNKNOWN;
+		return mCount;
+	}
+
+	/**
+	 * Record the audio start of a step. Reports of steps which are no longer stored are ignored.
+	 *
+	 * @param step           The number of the step, as returned by prepareAudioStart().
+	 * @param audioScheduled The time when the sound should have been started. This may differ from the time passed to prepareAudioStart(),
+	 *                       if the sound has been delayed to its step.
+	 * @param audioStart     The time when the sound has been started on the audio thread.
+	 */
+	void recordAudioStart(final int step, final long audioScheduled, final long audioStart) {
+		if (step >= 0 && step <= mCount && step > mCount - CAPACITY) {
+			mAudioScheduled[step & (CAPACITY - 1)] = audioScheduled;
+			mAudioStart[step & (CAPACITY - 1)] = audioStart;
+		}
+	}
+
+	/**
+	 * Get the number of recorded steps since the last reset.
+	 *
+	 * @return The number of recorded steps.
+	 */
+	int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * Get a summary of the jitter statistics.
+	 *
+	 * @return The summary lines.
+	 */
+	String[] getSummary() {
+		int size = Math.min(mCount, CAPACITY);
+		long[] jitters = new long[size];
+		return new String[] {
+				String.format(Locale.ENGLISH, "Steps: %d (statistics of last %d)", mCount, size),
+				getJitterSummary("Onset", mOnset, mScheduled, jitters),
+				getJitterSummary("Audio", mAudioStart, mAudioScheduled, jitters),
+				getJitterSummary("Broadcast", mBroadcast, mScheduled, jitters)
+		};
+	}
+
+	/**
+	 * Get the summary line of the jitter of one kind of timestamps against their scheduled times. Unknown timestamps are skipped.
+	 *
+	 * @param name       The name of the timestamps.
+	 * @param timestamps The timestamps.
+	 * @param scheduled  The scheduled times.
+	 * @param jitters    A buffer for the jitter values, sized to the number of stored steps.
+	 * @return The summary line.
+	 */
+	private static String getJitterSummary(final String name, final long[] timestamps, final long[] scheduled, final long[] jitters) {
+		int count = 0;
+		for (int i = 0; i < jitters.length; i++) {
+			if (timestamps[i] != UNKNOWN) {
+				jitters[count++] = timestamps[i] - scheduled[i];
+			}
+		}
+		if (count == 0) {
+			return name + ": -";
+		}
+		Arrays.sort(jitters, 0, count);
+		StringBuilder summary = new StringBuilder(name).append(':');
+		for (double percentile : PERCENTILES) {
+			summary.append(String.format(Locale.ENGLISH, " p%d=%dms", Math.round(percentile * 100), // MAGIC_NUMBER
+					jitters[(int) Math.ceil(percentile * count) - 1]));
+		}
+		summary.append(String.format(Locale.ENGLISH, " max=%dms", jitters[count - 1]));
+		return summary.toString();
+	}
+
+	/**
+	 * Store the telemetry of the session, overwriting the telemetry of the previous session.
+	 *
+	 * @param context The context.
+	 */
+	void store(final Context context) {
+		int size = Math.min(mCount, CAPACITY);
+		try (PrintWriter writer = new PrintWriter(new FileWriter(getTelemetryFile(context)))) {
+			for (String line : getSummary()) {
+				writer.println(SUMMARY_PREFIX + line);
+			}
+			writer.println("step,scheduled,onset,audio_scheduled,audio_start,broadcast");
+			for (int i = 0; i < size; i++) {
+				// Output in chronological order, starting with the oldest entry still stored.
+				int step = mCount - size + i;
+				int index = step & (CAPACITY - 1);
+				String audioScheduled = mAudioStart[index] == UNKNOWN ? "" : Long.toString(mAudioScheduled[index]);
+				String audioStart = mAudioStart[index] == UNKNOWN ? "" : Long.toString(mAudioStart[index]);
+				writer.println(step + "," + mScheduled[index] + "," + mOnset[index] + "," + audioScheduled + "," + audioStart + ","
+						+ mBroadcast[index]);
+			}
+		}
+		catch (IOException e) {
+			Log.e(Application.TAG, "Failed to store onset telemetry", e);
+		}
+	}
+
+	/**
+	 * Get the file containing the telemetry of the last session.
+	 *
+	 * @param context The context.
+	 * @return The telemetry file.
+	 */
+	public static File getTelemetryFile(final Context context) {
+		return new File(context.getFilesDir(), TELEMETRY_FILENAME);
+	}
+
+	/**
+	 * Read the summary of the telemetry of the last session.
+	 *
+	 * @param context The context.
+	 * @return The summary, or null if there is no stored telemetry.
+	 */
+	public static String readSummary(final Context context) {
+		File telemetryFile = getTelemetryFile(context);
+		if (!telemetryFile.exists()) {
+			return null;
+		}
+		StringBuilder summary = new StringBuilder();
+		try (BufferedReader reader = new BufferedReader(new FileReader(telemetryFile))) {
+			String line = reader.readLine();
+			while (line != null && line.startsWith(SUMMARY_PREFIX)) {
+				if (summary.length() > 0) {
+					summary.append('\n');
+				}
+				summary.append(line.substring(SUMMARY_PREFIX.length()));
+				line = reader.readLine();
+			}
+		}
+		catch (IOException e) {
+			Log.e(Application.TAG, "Failed to read onset telemetry", e);
+			return null;
+		}
+		return summary.toString();
+	}
+}
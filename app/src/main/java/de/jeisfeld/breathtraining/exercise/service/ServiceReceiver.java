@@ -8,7 +8,11 @@ import android.os.Handler;
 import de.jeisfeld.breathtraining.exercise.combined.CombinedExerciseViewModel;
 import de.jeisfeld.breathtraining.exercise.data.ExerciseData;
 import de.jeisfeld.breathtraining.exercise.data.ExerciseStep;
+import de.jeisfeld.breathtraining.exercise.data.ExerciseTimeline;
+import de.jeisfeld.breathtraining.exercise.data.PackedStep;
 import de.jeisfeld.breathtraining.exercise.data.PlayStatus;
+import de.jeisfeld.breathtraining.exercise.data.RepetitionData;
+import de.jeisfeld.breathtraining.exercise.data.StepType;
 import de.jeisfeld.breathtraining.exercise.single.SingleExerciseViewModel;
 
 /**
@@ -24,13 +28,33 @@ public class ServiceReceiver extends BroadcastReceiver {
 	 */
 	public static final String EXTRA_PLAY_STATUS = "de.jeisfeld.breathtraining.PLAY_STATUS";
 	/**
-	 * Key for the exercise step.
+	 * Key for the exercise step, encoded via PackedStep.
 	 */
 	public static final String EXTRA_EXERCISE_STEP = "de.jeisfeld.breathtraining.EXERCISE_STEP";
+	/**
+	 * Key for the repetition context of the exercise step (total repetitions, part repetition, total part repetitions, part number).
+	 */
+	public static final String EXTRA_REPETITION_CONTEXT = "de.jeisfeld.breathtraining.REPETITION_CONTEXT";
 	/**
 	 * Key for the exercise data within the intent.
 	 */
 	public static final String EXTRA_EXERCISE_DATA = "de.jeisfeld.breathtraining.EXERCISE_DATA";
+	/**
+	 * Key for the start offset of the current step.
+	 */
+	public static final String EXTRA_POSITION = "de.jeisfeld.breathtraining.POSITION";
+	/**
+	 * Key for the total duration of the exercise.
+	 */
+	public static final String EXTRA_TOTAL_DURATION = "de.jeisfeld.breathtraining.TOTAL_DURATION";
+	/**
+	 * The final relax step, encoded via PackedStep.
+	 */
+	private static final long RELAX_STEP = PackedStep.encode(StepType.RELAX, 0, 0, 0);
+	/**
+	 * The repetition context of the final relax step.
+	 */
+	private static final int[] RELAX_CONTEXT = {0, 0, 0, 1};
 	/**
 	 * Handler used to execute code on the UI thread.
 	 */
@@ -47,19 +71,63 @@ public class ServiceReceiver extends BroadcastReceiver {
 	/**
 	 * Create a broadcast intent to send the playStatus and exerciseStep to this receiver.
 	 *
-	 * @param playStatus   The play status.
-	 * @param exerciseStep The exercise step.
-	 * @param exerciseData The exercise data.
+	 * @param playStatus    The play status.
+	 * @param timeline      The timeline of the exercise.
+	 * @param stepIndex     The index of the current step in the timeline.
+	 * @param exerciseData  The exercise data.
+	 * @param position      The start offset of the current step (in ms from exercise start).
+	 * @param totalDuration The total duration of the exercise (in ms).
 	 * @return The intent.
 	 */
-	public static Intent createIntent(final PlayStatus playStatus, final ExerciseStep exerciseStep, final ExerciseData exerciseData) {
+	public static Intent createIntent(final PlayStatus playStatus, final ExerciseTimeline timeline, final int stepIndex,
+									  final ExerciseData exerciseData, final long position, final long totalDuration) {
 		Intent intent = new Intent(RECEIVER_ACTION);
 		intent.putExtra(EXTRA_PLAY_STATUS, playStatus);
-		intent.putExtra(EXTRA_EXERCISE_STEP, exerciseStep);
+		putExerciseStep(intent, timeline, stepIndex);
 		intent.putExtra(EXTRA_EXERCISE_DATA, exerciseData);
+		intent.putExtra(EXTRA_POSITION, position);
+		intent.putExtra(EXTRA_TOTAL_DURATION, totalDuration);
 		return intent;
 	}
 
+	/**
+	 * Put an exercise step into an intent, encoded as packed step and repetition context, so that no step object needs to be serialized.
+	 *
+	 * @param intent    The intent.
+	 * @param timeline  The timeline of the exercise. If null, no step is put.
+	 * @param stepIndex The index of the step in the timeline. If negative, no step is put. If beyond the last step, the final relax step is
+	 *                  put.
+	 */
+	public static void putExerciseStep(final Intent intent, final ExerciseTimeline timeline, final int stepIndex) {
+		if (timeline == null || stepIndex < 0) {
+			return;
+		}
+		if (stepIndex >= timeline.getStepCount()) {
+			intent.putExtra(EXTRA_EXERCISE_STEP, RELAX_STEP);
+			intent.putExtra(EXTRA_REPETITION_CONTEXT, RELAX_CONTEXT);
+			return;
+		}
+		intent.putExtra(EXTRA_EXERCISE_STEP, timeline.getPackedStep(stepIndex));
+		intent.putExtra(EXTRA_REPETITION_CONTEXT, new int[] {timeline.getTotalRepetitions(), timeline.getPartRepetition(stepIndex),
+				timeline.getTotalPartRepetitions(stepIndex), timeline.getPartNumber(stepIndex)});
+	}
+
+	/**
+	 * Get the exercise step from an intent.
+	 *
+	 * @param intent The intent.
+	 * @return The exercise step, or null if the intent contains no step.
+	 */
+	public static ExerciseStep getExerciseStep(final Intent intent) {
+		int[] context = intent.getIntArrayExtra(EXTRA_REPETITION_CONTEXT);
+		if (context == null || !intent.hasExtra(EXTRA_EXERCISE_STEP)) {
+			return null;
+		}
+		long packedStep = intent.getLongExtra(EXTRA_EXERCISE_STEP, RELAX_STEP);
+		return new ExerciseStep(PackedStep.getStepType(packedStep), PackedStep.getDuration(packedStep), PackedStep.getSoundDuration(packedStep),
+				RepetitionData.of(PackedStep.getRepetition(packedStep), context[0], context[1], context[2], context[3])); // MAGIC_NUMBER
+	}
+
 	/**
 	 * Default Constructor.
 	 */
@@ -106,12 +174,18 @@ public class ServiceReceiver extends BroadcastReceiver {
 			});
 		}
 
-		ExerciseStep exerciseStep = (ExerciseStep) intent.getSerializableExtra(EXTRA_EXERCISE_STEP);
+		ExerciseStep exerciseStep = getExerciseStep(intent);
 		if (exerciseStep != null) {
 			mHandler.post(() -> {
 				mSingleExerciseViewModel.updateExerciseStep(exerciseStep);
 				mCombinedExerciseViewModel.updateExerciseStep(exerciseStep);
 			});
 		}
+
+		if (intent.hasExtra(EXTRA_TOTAL_DURATION)) {
+			long position = intent.getLongExtra(EXTRA_POSITION, 0);
+			long totalDuration = intent.getLongExtra(EXTRA_TOTAL_DURATION, 0);
+			mHandler.post(() -> mCombinedExerciseViewModel.updatePosition(position, totalDuration));
+		}
 	}
 }
@@ -26,6 +26,7 @@ import de.jeisfeld.breathtraining.databinding.FragmentSingleExerciseBinding;
 import de.jeisfeld.breathtraining.exercise.data.ExerciseStep;
 import de.jeisfeld.breathtraining.exercise.data.ExerciseType;
 import de.jeisfeld.breathtraining.exercise.data.HoldPosition;
+import de.jeisfeld.breathtraining.exercise.data.PlayStatus;
 import de.jeisfeld.breathtraining.repository.StoredExercisesRegistry;
 import de.jeisfeld.breathtraining.sound.SoundType;
 import de.jeisfeld.breathtraining.util.DialogUtil;
@@ -541,15 +542,26 @@ public class SingleExerciseFragment extends Fragment {
 			mBinding.seekBarCurrentRepetition.setProgress(Math.max(0, exerciseStep.getRepetition().getCurrentRepetition() - 1));
 			mBinding.textViewCurrentRepetition.setText(String.format(Locale.getDefault(), "%d", exerciseStep.getRepetition().getCurrentRepetition()));
 		});
-		mBinding.seekBarCurrentRepetition.setOnSeekBarChangeListener(
-				(OnSeekBarProgressChangedListener) progress -> {
-					ExerciseStep exerciseStep = mSingleExerciseViewModel.getExerciseStep().getValue();
-					if (exerciseStep != null) {
-						mSingleExerciseViewModel.updateExerciseStep(
-								new ExerciseStep(exerciseStep.getStepType(), exerciseStep.getDuration(),
-										exerciseStep.getRepetition().updateRepetition(progress + 1)));
-					}
-				});
+		mBinding.seekBarCurrentRepetition.setOnSeekBarChangeListener(new OnSeekBarProgressChangedListener() {
+			@Override
+			public void onProgressChanged(final int progress) {
+				ExerciseStep exerciseStep = mSingleExerciseViewModel.getExerciseStep().getValue();
+				if (exerciseStep != null) {
+					mSingleExerciseViewModel.updateExerciseStep(
+							new ExerciseStep(exerciseStep.getStepType(), exerciseStep.getDuration(),
+									exerciseStep.getRepetition().updateRepetition(progress + 1)));
+				}
+			}
+
+			@Override
+			public void onStopTrackingTouch(final SeekBar seekBar) {
+				// Seek only once at the end of dragging, as each seek restarts the sound.
+				PlayStatus playStatus = mSingleExerciseViewModel.getPlayStatus().getValue();
+				if (playStatus == PlayStatus.PLAYING || playStatus == PlayStatus.PAUSED) {
+					mSingleExerciseViewModel.seek(getContext(), seekBar.getProgress() + 1);
+				}
+			}
+		});
 	}
 
 	/**
@@ -20,6 +20,7 @@ import de.jeisfeld.breathtraining.exercise.data.StepType;
 import de.jeisfeld.breathtraining.exercise.service.ExerciseService;
 import de.jeisfeld.breathtraining.exercise.service.ExerciseService.ServiceCommand;
 import de.jeisfeld.breathtraining.repository.StoredExercisesRegistry;
+import de.jeisfeld.breathtraining.sound.SessionRenderer;
 import de.jeisfeld.breathtraining.sound.SoundType;
 import de.jeisfeld.breathtraining.util.PreferenceUtil;
 
@@ -558,6 +559,15 @@ public class SingleExerciseViewModel extends ViewModel {
 		ExerciseService.triggerExerciseService(context, serviceCommand, getExerciseData());
 	}
 
+	/**
+	 * Export the exercise as audio file in the background.
+	 *
+	 * @param context The context.
+	 */
+	public void exportAudio(final Context context) {
+		SessionRenderer.triggerExport(context, getExerciseData());
+	}
+
 	/**
 	 * Stop playing.
 	 *
@@ -587,6 +597,16 @@ public class SingleExerciseViewModel extends ViewModel {
 		ExerciseService.triggerExerciseService(context, ServiceCommand.SKIP, getExerciseData());
 	}
 
+	/**
+	 * Seek to the start of a repetition in the running exercise.
+	 *
+	 * @param context    The context.
+	 * @param repetition The repetition (starting with 1).
+	 */
+	protected void seek(final Context context, final int repetition) {
+		ExerciseService.triggerSeek(context, getExerciseData(), 1, repetition, 0);
+	}
+
 	/**
 	 * Convert seekbar value to value in ms for duration.
 	 *
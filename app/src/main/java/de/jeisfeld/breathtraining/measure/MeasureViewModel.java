@@ -14,6 +14,8 @@ import androidx.lifecycle.ViewModelProvider;
 import androidx.navigation.NavController;
 import androidx.navigation.Navigation;
 import de.jeisfeld.breathtraining.R;
+import de.jeisfeld.breathtraining.clock.AndroidClock;
+import de.jeisfeld.breathtraining.clock.Clock;
 import de.jeisfeld.breathtraining.exercise.data.StepType;
 import de.jeisfeld.breathtraining.exercise.single.SingleExerciseViewModel;
 import de.jeisfeld.breathtraining.sound.MediaTrigger;
@@ -56,6 +58,10 @@ public class MeasureViewModel extends ViewModel {
 	 * The list of breath measurement timestamps.
 	 */
 	private final List<Long> mMeasurementTimes = new ArrayList<>();
+	/**
+	 * The clock used for measuring breath durations.
+	 */
+	private final Clock mClock = AndroidClock.getInstance();
 
 	/**
 	 * The measured average duration.
@@ -133,7 +139,7 @@ public class MeasureViewModel extends ViewModel {
 		mBreatheInDurations.clear();
 		mBreatheOutDurations.clear();
 		mMeasurementTimes.clear();
-		mMeasurementTimes.add(System.currentTimeMillis());
+		mMeasurementTimes.add(mClock.now());
 		mText1.setValue(context.getString(R.string.message_measure));
 
 		SoundType soundType = mSoundType.getValue();
@@ -226,7 +232,7 @@ public class MeasureViewModel extends ViewModel {
 	 */
 	private void doChangeBreathCalculations() {
 		mIsBreathingOut.setValue(Boolean.FALSE.equals(mIsBreathingOut.getValue()));
-		mMeasurementTimes.add(System.currentTimeMillis());
+		mMeasurementTimes.add(mClock.now());
 		if (mMeasurementTimes.size() >= 2) {
 			long lastDuration = mMeasurementTimes.get(mMeasurementTimes.size() - 1) - mMeasurementTimes.get(mMeasurementTimes.size() - 2);
 			if (Boolean.FALSE.equals(mIsBreathingOut.getValue())) {
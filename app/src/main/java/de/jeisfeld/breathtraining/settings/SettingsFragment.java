@@ -3,6 +3,7 @@ package de.jeisfeld.breathtraining.settings;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.Intent;
+import android.media.AudioDeviceInfo;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.PowerManager;
@@ -26,6 +27,8 @@ import androidx.preference.Preference;
 import androidx.preference.PreferenceFragmentCompat;
 import de.jeisfeld.breathtraining.Application;
 import de.jeisfeld.breathtraining.R;
+import de.jeisfeld.breathtraining.exercise.service.OnsetTelemetry;
+import de.jeisfeld.breathtraining.sound.OutputLatency;
 import de.jeisfeld.breathtraining.util.DialogUtil;
 import de.jeisfeld.breathtraining.util.DialogUtil.ConfirmDialogFragment.ConfirmDialogListener;
 import de.jeisfeld.breathtraining.util.PreferenceUtil;
@@ -46,6 +49,14 @@ public class SettingsFragment extends PreferenceFragmentCompat {
 	 * The filename suffix of the file for export/import preferences.
 	 */
 	private static final String EXPORT_FILENAME_SUFFIX = ".exp";
+	/**
+	 * The filename prefix of the file for export of the exercise timing.
+	 */
+	private static final String TELEMETRY_FILENAME_PREFIX = "BreathTraining-Timing-";
+	/**
+	 * The filename suffix of the file for export of the exercise timing.
+	 */
+	private static final String TELEMETRY_FILENAME_SUFFIX = ".csv";
 
 	private static boolean onPreferenceChange(final Preference preference, final Object newValue) {
 		AppCompatDelegate.setDefaultNightMode(Integer.parseInt((String) newValue));
@@ -57,6 +68,8 @@ public class SettingsFragment extends PreferenceFragmentCompat {
 		setPreferencesFromResource(R.xml.preferences, rootKey);
 		configureExportImportButtons();
 		configureBatteryOptimizationButton();
+		configureOnsetTelemetryButton();
+		configureOutputLatencyButton();
 
 		Preference preferenceNightMode = findPreference(getString(R.string.key_pref_night_mode));
 		if (preferenceNightMode != null) {
@@ -86,6 +99,92 @@ public class SettingsFragment extends PreferenceFragmentCompat {
 		});
 	}
 
+	/**
+	 * Configure the button showing and exporting the timing of the last exercise.
+	 */
+	private void configureOnsetTelemetryButton() {
+		Preference onsetTelemetryPreference = findPreference(getString(R.string.key_pref_dummy_onset_telemetry));
+		assert onsetTelemetryPreference != null;
+		String summary = OnsetTelemetry.readSummary(requireContext());
+		if (summary == null) {
+			onsetTelemetryPreference.setSummary(R.string.pref_summary_dummy_onset_telemetry_missing);
+			onsetTelemetryPreference.setEnabled(false);
+			return;
+		}
+		onsetTelemetryPreference.setSummary(summary);
+		onsetTelemetryPreference.setOnPreferenceClickListener(preference -> {
+			File exportFile = new File(requireContext().getExternalFilesDir(null),
+					TELEMETRY_FILENAME_PREFIX + DateFormat.format(EXPORT_FILENAME_DATEFORMAT, new Date()) + TELEMETRY_FILENAME_SUFFIX);
+			try (FileInputStream fileInputStream = new FileInputStream(OnsetTelemetry.getTelemetryFile(requireContext()));
+					FileOutputStream fileOutputStream = new FileOutputStream(exportFile)) {
+				byte[] buffer = new byte[4096]; // MAGIC_NUMBER
+				int count = fileInputStream.read(buffer);
+				while (count > 0) {
+					fileOutputStream.write(buffer, 0, count);
+					count = fileInputStream.read(buffer);
+				}
+				DialogUtil.displayToast(getContext(), R.string.toast_onset_telemetry_exported, exportFile.getAbsolutePath());
+			}
+			catch (IOException e) {
+				Log.e(Application.TAG, e.toString(), e);
+			}
+			return true;
+		});
+	}
+
+	/**
+	 * Configure the button for calibration of the audio output latency.
+	 */
+	private void configureOutputLatencyButton() {
+		Preference outputLatencyPreference = findPreference(getString(R.string.key_pref_dummy_output_latency));
+		assert outputLatencyPreference != null;
+		updateOutputLatencySummary(outputLatencyPreference);
+		outputLatencyPreference.setOnPreferenceClickListener(preference -> {
+			final Context context = requireContext().getApplicationContext();
+			preference.setEnabled(false);
+			new Thread(() -> {
+				long latency = OutputLatency.calibrate();
+				if (latency >= 0) {
+					DialogUtil.displayToast(context, R.string.toast_output_latency_calibrated, latency);
+				}
+				else {
+					DialogUtil.displayToast(context, R.string.toast_output_latency_failed);
+				}
+				if (getActivity() != null) {
+					getActivity().runOnUiThread(() -> {
+						preference.setEnabled(true);
+						updateOutputLatencySummary(preference);
+					});
+				}
+			}).start();
+			return true;
+		});
+	}
+
+	/**
+	 * Update the summary of the button for calibration of the audio output latency. The output device is determined in the background, as
+	 * this may require playing a probe sound.
+	 *
+	 * @param outputLatencyPreference The button.
+	 */
+	private void updateOutputLatencySummary(final Preference outputLatencyPreference) {
+		Context context = getContext();
+		if (context == null) {
+			return;
+		}
+		final Context applicationContext = context.getApplicationContext();
+		new Thread(() -> {
+			AudioDeviceInfo device = OutputLatency.getCurrentDevice(applicationContext);
+			String routeName = OutputLatency.getRouteName(device);
+			String summary = OutputLatency.isCalibrated(device)
+					? applicationContext.getString(R.string.pref_summary_dummy_output_latency, routeName, OutputLatency.getLatency(device))
+					: applicationContext.getString(R.string.pref_summary_dummy_output_latency_missing, routeName);
+			if (getActivity() != null) {
+				getActivity().runOnUiThread(() -> outputLatencyPreference.setSummary(summary));
+			}
+		}).start();
+	}
+
 	/**
 	 * Configure buttons for export/import preferences.
 	 */
@@ -0,0 +1,146 @@
+package de.jeisfeld.breathtraining.sound;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * An endless procedural ambient sound resembling slow sea waves. Brown noise is low pass filtered and swells in waves of varying length.
+ */
+final class AmbientSource implements PcmSource {
+	/**
+	 * The number of frames per rendered chunk.
+	 */
+	private static final int CHUNK_FRAMES = 256;
+	/**
+	 * The minimum duration of a wave in seconds.
+	 */
+	private static final double MIN_WAVE_DURATION = 7;
+	/**
+	 * The maximum duration of a wave in seconds.
+	 */
+	private static final double MAX_WAVE_DURATION = 12;
+	/**
+	 * The cutoff frequency of the low pass filter in Hz.
+	 */
+	private static final double CUTOFF_FREQUENCY = 500;
+	/**
+	 * The leak factor of the brown noise integration, keeping it centered around zero.
+	 */
+	private static final float BROWN_LEAK = 0.998f;
+	/**
+	 * The gain of the brown noise, so that the wave maximum stays clearly below full scale.
+	 */
+	private static final float BROWN_GAIN = 0.02f;
+	/**
+	 * The loudness between two waves, relative to the wave maximum.
+	 */
+	private static final float WAVE_FLOOR = 0.3f;
+
+	/**
+	 * The sample rate.
+	 */
+	private final int mSampleRate;
+	/**
+	 * The coefficient of the low pass filter.
+	 */
+	private final float mCutoffCoefficient;
+	/**
+	 * The state of the noise generator.
+	 */
+	private int mNoiseState = 0x1F123BB5; // MAGIC_NUMBER
+	/**
+	 * The state of the brown noise.
+	 */
+	private float mBrown = 0;
+	/**
+	 * The state of the low pass filter.
+	 */
+	private float mLow = 0;
+	/**
+	 * The phase of the current wave, from 0 to 1.
+	 */
+	private double mWavePhase = 0;
+	/**
+	 * The phase increment of the current wave per frame.
+	 */
+	private double mWaveIncrement;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param sampleRate The sample rate.
+	 */
+	AmbientSource(final int sampleRate) {
+		mSampleRate = sampleRate;
+		mCutoffCoefficient = (float) (1 - Math.exp(-2 * Math.PI * CUTOFF_FREQUENCY / sampleRate));
+		startWave();
+	}
+
+	@Override
+	public int getSampleRate() {
+		return mSampleRate;
+	}
+
+	@Override
+	public int getChannelCount() {
+		return 1;
+	}
+
+	@Override
+	public int getChunkSize() {
+		return CHUNK_FRAMES * 2;
+	}
+
+	@Override
+	public boolean render(final ByteBuffer target) {
+		ShortBuffer output = target.order(ByteOrder.nativeOrder()).asShortBuffer();
+		float startLevel = getWaveLevel(mWavePhase);
+		mWavePhase += mWaveIncrement * CHUNK_FRAMES;
+		float endLevel = getWaveLevel(mWavePhase);
+		if (mWavePhase >= 1) {
+			mWavePhase -= 1;
+			startWave();
+		}
+		for (int i = 0; i < CHUNK_FRAMES; i++) {
+			mBrown = BROWN_LEAK * mBrown + nextNoise();
+			mLow += mCutoffCoefficient * (BROWN_GAIN * mBrown - mLow);
+			float value = mLow * (startLevel + (endLevel - startLevel) * i / CHUNK_FRAMES);
+			output.put((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value * Short.MAX_VALUE))));
+		}
+		target.position(target.position() + CHUNK_FRAMES * 2);
+		return true;
+	}
+
+	/**
+	 * Start a new wave of random length.
+	 */
+	private void startWave() {
+		double duration = MIN_WAVE_DURATION + (MAX_WAVE_DURATION - MIN_WAVE_DURATION) * (nextNoise() + 1) / 2;
+		mWaveIncrement = 1 / (duration * mSampleRate);
+	}
+
+	/**
+	 * Get the loudness at a phase of the wave. The wave rises slowly and falls back faster.
+	 *
+	 * @param phase The phase from 0 to 1.
+	 * @return The loudness.
+	 */
+	private static float getWaveLevel(final double phase) {
+		double limitedPhase = Math.min(1, phase);
+		double swell = Math.sin(Math.PI * limitedPhase * limitedPhase);
+		return (float) (WAVE_FLOOR + (1 - WAVE_FLOOR) * swell * swell);
+	}
+
+	/**
+	 * Get the next white noise sample (xorshift generator).
+	 *
+	 * @return The sample between -1 and 1.
+	 */
+	private float nextNoise() {
+		mNoiseState ^= mNoiseState << 13; // MAGIC_NUMBER
+		mNoiseState ^= mNoiseState >>> 17; // MAGIC_NUMBER
+		mNoiseState ^= mNoiseState << 5; // MAGIC_NUMBER
+		return mNoiseState * (1f / Integer.MIN_VALUE);
+	}
+}
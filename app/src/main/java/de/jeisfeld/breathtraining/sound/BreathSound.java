@@ -76,19 +76,52 @@ public enum BreathSound {
 	 * The factor up to which sounds are stretched instead of shrinked.
 	 */
 	private static final double STRETCH_FACTOR = 1.4;
+	/**
+	 * The width of the sound duration buckets of the selection tables (in ms). All selection thresholds are multiples of it, so that the
+	 * selection is the same for all durations within a bucket.
+	 */
+	private static final int BUCKET_DURATION = 100;
+	/**
+	 * The number of cached breath sound infos per step type. Must be a power of 2.
+	 */
+	private static final int INFO_CACHE_SIZE = 1024;
+	/**
+	 * The inhale sounds in ascending order of duration.
+	 */
+	private static final BreathSound[] INHALE_SOUNDS = {INHALE_1, INHALE_2, INHALE_4, INHALE_8, INHALE_16, INHALE_32, INHALE_64, INHALE_128};
+	/**
+	 * The exhale sounds in ascending order of duration.
+	 */
+	private static final BreathSound[] EXHALE_SOUNDS = {EXHALE_1, EXHALE_2, EXHALE_4, EXHALE_8, EXHALE_16, EXHALE_32, EXHALE_64, EXHALE_128};
+	/**
+	 * The index of the inhale sound to be used, by sound duration bucket.
+	 */
+	private static final byte[] INHALE_SELECTION = createSelectionTable(INHALE_SOUNDS);
+	/**
+	 * The index of the exhale sound to be used, by sound duration bucket.
+	 */
+	private static final byte[] EXHALE_SELECTION = createSelectionTable(EXHALE_SOUNDS);
+	/**
+	 * The cached inhale sound infos, indexed by the lower bits of the sound duration.
+	 */
+	private static final BreathSoundInfo[] INHALE_INFO_CACHE = new BreathSoundInfo[INFO_CACHE_SIZE];
+	/**
+	 * The cached exhale sound infos, indexed by the lower bits of the sound duration.
+	 */
+	private static final BreathSoundInfo[] EXHALE_INFO_CACHE = new BreathSoundInfo[INFO_CACHE_SIZE];
 
 	/**
 	 * The StepType.
 	 */
-	private StepType mStepType;
+	private final StepType mStepType;
 	/**
 	 * The duration (in ms).
 	 */
-	private long mDuration;
+	private final long mDuration;
 	/**
 	 * The sound resource id.
 	 */
-	private int mResourceId;
+	private final int mResourceId;
 
 	/**
 	 * Constructor.
@@ -109,7 +142,7 @@ public enum BreathSound {
 	 * @param duration The breath duration.
 	 * @return The duration of the pause.
 	 */
-	private static long getPauseDuration(final long duration) {
+	static long getPauseDuration(final long duration) {
 		if (duration <= 1000) { // MAGIC_NUMBER
 			return 0;
 		}
@@ -125,50 +158,69 @@ public enum BreathSound {
 	}
 
 	/**
-	 * Get the breath sounds for a certain stepType in ascending order of duration.
+	 * Create the table of the sound to be used by sound duration bucket. Each sound is used up to a sound duration of its own duration
+	 * multiplied with the stretch factor. Beyond the table, the longest sound is stretched.
 	 *
-	 * @param stepType The stepType.
-	 * @return The breath sounds for this stepType.
+	 * @param breathSounds The breath sounds in ascending order of duration.
+	 * @return The index of the sound to be used, by sound duration bucket.
 	 */
-	private static BreathSound[] getBreathSounds(final StepType stepType) {
-		switch (stepType) {
-		case INHALE:
-			return new BreathSound[] {INHALE_1, INHALE_2, INHALE_4, INHALE_8, INHALE_16, INHALE_32, INHALE_64, INHALE_128};
-		case EXHALE:
-			return new BreathSound[] {EXHALE_1, EXHALE_2, EXHALE_4, EXHALE_8, EXHALE_16, EXHALE_32, EXHALE_64, EXHALE_128};
-		default:
-			return null;
+	private static byte[] createSelectionTable(final BreathSound[] breathSounds) {
+		byte[] selection = new byte[(int) Math.ceil(breathSounds[breathSounds.length - 1].mDuration * STRETCH_FACTOR / BUCKET_DURATION)];
+		int index = 0;
+		for (int bucket = 0; bucket < selection.length; bucket++) {
+			while (index < breathSounds.length - 1 && (long) bucket * BUCKET_DURATION >= breathSounds[index].mDuration * STRETCH_FACTOR) {
+				index++;
+			}
+			selection[bucket] = (byte) index;
 		}
+		return selection;
 	}
 
 	/**
-	 * Get the breath sound info for certain stepType and duration.
+	 * Get the breath sound info for certain stepType and duration. This is an allocation-free table lookup, unless the info for this
+	 * duration is not cached yet.
 	 *
 	 * @param stepType The step type.
 	 * @param duration The duration (in ms).
 	 * @return The breath sound to be used.
 	 */
 	public static BreathSoundInfo getBreathSoundInfo(final StepType stepType, final long duration) {
-		BreathSound[] breathSounds = getBreathSounds(stepType);
-		if (breathSounds == null || breathSounds.length == 0) {
+		final BreathSound[] breathSounds;
+		final byte[] selection;
+		final BreathSoundInfo[] infoCache;
+		switch (stepType) {
+		case INHALE:
+			breathSounds = INHALE_SOUNDS;
+			selection = INHALE_SELECTION;
+			infoCache = INHALE_INFO_CACHE;
+			break;
+		case EXHALE:
+			breathSounds = EXHALE_SOUNDS;
+			selection = EXHALE_SELECTION;
+			infoCache = EXHALE_INFO_CACHE;
+			break;
+		default:
 			return null;
 		}
 		long soundDuration = duration - getPauseDuration(duration);
+		int cacheIndex = (int) (soundDuration & (INFO_CACHE_SIZE - 1));
+		BreathSoundInfo breathSoundInfo = infoCache[cacheIndex];
+		if (breathSoundInfo != null && breathSoundInfo.mSoundDuration == soundDuration) {
+			return breathSoundInfo;
+		}
 
 		if (soundDuration < breathSounds[0].mDuration / 2) {
 			// Max speed increase is doubling.
-			return new BreathSoundInfo(breathSounds[0], 2);
+			breathSoundInfo = new BreathSoundInfo(breathSounds[0], 2, soundDuration);
 		}
-
-		for (BreathSound breathSound : breathSounds) {
-			if (soundDuration < breathSound.mDuration * STRETCH_FACTOR) {
-				return new BreathSoundInfo(breathSound, breathSound.mDuration / (double) soundDuration);
-			}
+		else {
+			long bucket = soundDuration / BUCKET_DURATION;
+			// Beyond the table, stretch longest breathSound
+			BreathSound breathSound = breathSounds[bucket < selection.length ? selection[(int) bucket] : breathSounds.length - 1];
+			breathSoundInfo = new BreathSoundInfo(breathSound, breathSound.mDuration / (double) soundDuration, soundDuration);
 		}
-
-		// Stretch longest breathSound
-		BreathSound breathSound = breathSounds[breathSounds.length - 1];
-		return new BreathSoundInfo(breathSound, breathSound.mDuration / (double) soundDuration);
+		infoCache[cacheIndex] = breathSoundInfo;
+		return breathSoundInfo;
 	}
 
 	/**
@@ -183,16 +235,22 @@ public enum BreathSound {
 		 * The speed.
 		 */
 		private final double mSpeed;
+		/**
+		 * The duration in which the sound should be played (in ms).
+		 */
+		private final long mSoundDuration;
 
 		/**
 		 * Constructor.
 		 *
 		 * @param breathSound The breath sound.
 		 * @param speed The speed.
+		 * @param soundDuration The duration in which the sound should be played (in ms).
 		 */
-		public BreathSoundInfo(final BreathSound breathSound, final double speed) {
+		public BreathSoundInfo(final BreathSound breathSound, final double speed, final long soundDuration) {
 			mBreathSound = breathSound;
 			mSpeed = speed;
+			mSoundDuration = soundDuration;
 		}
 
 		/**
@@ -212,5 +270,14 @@ public enum BreathSound {
 		public float getSpeed() {
 			return (float) mSpeed;
 		}
+
+		/**
+		 * Get the duration in which the sound should be played. This is the breath duration without the pause after the breath.
+		 *
+		 * @return The sound duration (in ms).
+		 */
+		public long getSoundDuration() {
+			return mSoundDuration;
+		}
 	}
 }
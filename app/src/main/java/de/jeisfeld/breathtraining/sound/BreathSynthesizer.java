@@ -0,0 +1,230 @@
+package de.jeisfeld.breathtraining.sound;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.concurrent.TimeUnit;
+
+import de.jeisfeld.breathtraining.exercise.data.StepType;
+
+/**
+ * A procedural synthesizer of breath sounds, as alternative to the recorded breath sounds. White noise is shaped by a band pass filter and
+ * by an envelope following the air flow of the breath, so that the sound can be rendered sample-accurately for any duration.
+ *
+ * <p>The air flow of a breath rises from zero to a maximum and falls back to zero. Inhaling reaches its maximum a bit before the middle,
+ * exhaling (being passive) earlier. The filter opens with the flow, so that the sound gets brighter when the air flows faster.
+ */
+final class BreathSynthesizer implements PcmSource {
+	/**
+	 * The sample rate.
+	 */
+	static final int SAMPLE_RATE = 24000;
+	/**
+	 * The number of frames per rendered chunk. Envelope and filter are updated once per chunk and interpolated within the chunk.
+	 */
+	private static final int CHUNK_FRAMES = 240;
+	/**
+	 * The damping of the band pass filter. Lower values give a narrower band.
+	 */
+	private static final float FILTER_DAMPING = 1.2f;
+	/**
+	 * The frequency of the slow random variation of the loudness in Hz.
+	 */
+	private static final float WOBBLE_FREQUENCY = 3;
+	/**
+	 * The depth of the slow random variation of the loudness.
+	 */
+	private static final float WOBBLE_DEPTH = 0.15f;
+
+	/**
+	 * The shape of the sound.
+	 */
+	private final Shape mShape;
+	/**
+	 * The number of frames to be rendered.
+	 */
+	private final long mFrameCount;
+	/**
+	 * The smoothing coefficient of the loudness variation.
+	 */
+	private final float mWobbleCoefficient;
+	/**
+	 * The number of rendered frames.
+	 */
+	private long mRenderedFrames = 0;
+	/**
+	 * The state of the noise generator.
+	 */
+	private int mNoiseState = 0x2545F491; // MAGIC_NUMBER
+	/**
+	 * The low pass state of the filter.
+	 */
+	private float mLow = 0;
+	/**
+	 * The band pass state of the filter.
+	 */
+	private float mBand = 0;
+	/**
+	 * The state of the loudness variation.
+	 */
+	private float mWobble = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param stepType The step type. Relax is rendered as a slow exhale.
+	 * @param duration The duration of the sound in ms.
+	 */
+	BreathSynthesizer(final StepType stepType, final long duration) {
+		mShape = stepType == StepType.INHALE || stepType == StepType.CONTINUE_INHALE ? Shape.INHALE
+				: stepType == StepType.RELAX ? Shape.RELAX : Shape.EXHALE;
+		mFrameCount = getFrameCount(duration);
+		mWobbleCoefficient = (float) (1 - Math.exp(-2 * Math.PI * WOBBLE_FREQUENCY / SAMPLE_RATE));
+	}
+
+	/**
+	 * Get the number of frames for a duration.
+	 *
+	 * @param duration The duration in ms.
+	 * @return The number of frames.
+	 */
+	static long getFrameCount(final long duration) {
+		return duration * SAMPLE_RATE / TimeUnit.SECONDS.toMillis(1);
+	}
+
+	@Override
+	public int getSampleRate() {
+		return SAMPLE_RATE;
+	}
+
+	@Override
+	public int getChannelCount() {
+		return 1;
+	}
+
+	@Override
+	public int getChunkSize() {
+		return CHUNK_FRAMES * 2;
+	}
+
+	@Override
+	public boolean render(final ByteBuffer target) {
+		if (mRenderedFrames >= mFrameCount) {
+			return false;
+		}
+		int frames = (int) Math.min(CHUNK_FRAMES, mFrameCount - mRenderedFrames);
+		float startFlow = getFlow(mRenderedFrames);
+		float endFlow = getFlow(mRenderedFrames + frames);
+		float coefficient = getFilterCoefficient((startFlow + endFlow) / 2);
+		ShortBuffer output = target.order(ByteOrder.nativeOrder()).asShortBuffer();
+
+		for (int i = 0; i < frames; i++) {
+			float noise = nextNoise();
+			mWobble += mWobbleCoefficient * (nextNoise() - mWobble);
+			// State variable filter.
+			mLow += coefficient * mBand;
+			float high = noise - mLow - FILTER_DAMPING * mBand;
+			mBand += coefficient * high;
+
+			float flow = startFlow + (endFlow - startFlow) * i / frames;
+			float value = (mBand + mShape.mBodyLevel * mLow) * flow * (1 + WOBBLE_DEPTH * mWobble) * mShape.mLevel;
+			output.put((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value * Short.MAX_VALUE))));
+		}
+		target.position(target.position() + frames * 2);
+		mRenderedFrames += frames;
+		return true;
+	}
+
+	/**
+	 * Get the relative air flow at a frame. This is a sine arch, skewed so that its maximum is at the peak position of the shape.
+	 *
+	 * @param frame The frame.
+	 * @return The flow between 0 and 1.
+	 */
+	private float getFlow(final long frame) {
+		if (frame <= 0 || frame >= mFrameCount) {
+			return 0;
+		}
+		return (float) Math.sin(Math.PI * Math.pow(frame / (double) mFrameCount, mShape.mSkew));
+	}
+
+	/**
+	 * Get the filter coefficient for a certain air flow.
+	 *
+	 * @param flow The relative air flow.
+	 * @return The coefficient of the state variable filter.
+	 */
+	private float getFilterCoefficient(final float flow) {
+		double frequency = mShape.mBaseFrequency + flow * mShape.mFrequencySpan;
+		return (float) (2 * Math.sin(Math.PI * frequency / SAMPLE_RATE));
+	}
+
+	/**
+	 * Get the next white noise sample (xorshift generator).
+	 *
+	 * @return The sample between -1 and 1.
+	 */
+	private float nextNoise() {
+		mNoiseState ^= mNoiseState << 13; // MAGIC_NUMBER
+		mNoiseState ^= mNoiseState >>> 17; // MAGIC_NUMBER
+		mNoiseState ^= mNoiseState << 5; // MAGIC_NUMBER
+		return mNoiseState * (1f / Integer.MIN_VALUE);
+	}
+
+	/**
+	 * The shapes of synthesized breath sounds.
+	 */
+	private enum Shape {
+		/**
+		 * Inhale - brighter, with maximum flow a bit before the middle.
+		 */
+		INHALE(0.4, 700, 1100, 0.3f, 0.9f),
+		/**
+		 * Exhale - darker, with maximum flow early.
+		 */
+		EXHALE(0.3, 400, 700, 0.6f, 1f),
+		/**
+		 * Relax - a soft exhale.
+		 */
+		RELAX(0.25, 300, 500, 0.6f, 0.6f);
+
+		/**
+		 * The exponent skewing the flow curve.
+		 */
+		private final double mSkew;
+		/**
+		 * The center frequency of the filter at zero flow in Hz.
+		 */
+		private final double mBaseFrequency;
+		/**
+		 * The increase of the center frequency at maximum flow in Hz.
+		 */
+		private final double mFrequencySpan;
+		/**
+		 * The level of the low pass part added to the band pass.
+		 */
+		private final float mBodyLevel;
+		/**
+		 * The overall level.
+		 */
+		private final float mLevel;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param peakPosition The relative position of the maximum flow.
+		 * @param baseFrequency The center frequency of the filter at zero flow in Hz.
+		 * @param frequencySpan The increase of the center frequency at maximum flow in Hz.
+		 * @param bodyLevel The level of the low pass part added to the band pass.
+		 * @param level The overall level.
+		 */
+		Shape(final double peakPosition, final double baseFrequency, final double frequencySpan, final float bodyLevel, final float level) {
+			// sin(PI * t^skew) has its maximum where t^skew = 1/2.
+			mSkew = Math.log(0.5) / Math.log(peakPosition); // MAGIC_NUMBER
+			mBaseFrequency = baseFrequency;
+			mFrequencySpan = frequencySpan;
+			mBodyLevel = bodyLevel;
+			mLevel = level;
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package de.jeisfeld.breathtraining.sound;
+
+import de.jeisfeld.breathtraining.exercise.data.StepType;
+import de.jeisfeld.breathtraining.sound.BreathSound.BreathSoundInfo;
+
+/**
+ * The resolved sound cue of a step, i.e. what has to be done with the sound output when the step starts. Cues are immutable and shared, so
+ * that resolving the cue of a step does not allocate in the steady state.
+ */
+final class Cue {
+	/**
+	 * The minimum duration of a hold for which the hold sound is played.
+	 */
+	private static final long MIN_HOLD_SOUND_DURATION = 300;
+	/**
+	 * The number of cached cues. Must be a power of 2.
+	 */
+	private static final int CACHE_SIZE = 1024;
+	/**
+	 * The cue without sound.
+	 */
+	private static final Cue NO_SOUND = new Cue(Action.NONE, 0, 1, 0);
+	/**
+	 * The cue pausing the current sound.
+	 */
+	private static final Cue PAUSE_SOUND = new Cue(Action.PAUSE, 0, 1, 0);
+	/**
+	 * The cue continuing the current sound.
+	 */
+	private static final Cue CONTINUE_SOUND = new Cue(Action.CONTINUE, 0, 1, 0);
+	/**
+	 * The cached cues playing or synthesizing a sound, indexed by a hash of resource and duration. As cues are immutable, concurrent
+	 * access may at worst replace an entry.
+	 */
+	private static final Cue[] CACHE = new Cue[CACHE_SIZE];
+
+	/**
+	 * The action.
+	 */
+	private final Action mAction;
+	/**
+	 * The sound resource.
+	 */
+	private final int mResourceId;
+	/**
+	 * The speed factor.
+	 */
+	private final float mSpeed;
+	/**
+	 * The duration in which the sound should be played in ms. 0 if the sound should be played in its natural length.
+	 */
+	private final long mDuration;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param action The action.
+	 * @param resourceId The sound resource.
+	 * @param speed The speed factor.
+	 * @param duration The duration in which the sound should be played in ms. 0 if the sound should be played in its natural length.
+	 */
+	private Cue(final Action action, final int resourceId, final float speed, final long duration) {
+		mAction = action;
+		mResourceId = resourceId;
+		mSpeed = speed;
+		mDuration = duration;
+	}
+
+	/**
+	 * Resolve the cue to be played for a step.
+	 *
+	 * @param soundType The sound type.
+	 * @param stepType The step type.
+	 * @param duration The sound duration in ms.
+	 * @return The cue.
+	 */
+	static Cue resolve(final SoundType soundType, final StepType stepType, final long duration) {
+		if (soundType == SoundType.SYNTHESIZED && (duration > 0 || stepType == StepType.RELAX)) {
+			if (stepType.isHold()) {
+				return PAUSE_SOUND;
+			}
+			else if (stepType.isContinue()) {
+				return CONTINUE_SOUND;
+			}
+			long soundDuration = stepType == StepType.RELAX ? soundType.getRelaxDuration() : duration;
+			return getCue(Action.SYNTHESIZE, 0, 1, soundDuration - BreathSound.getPauseDuration(soundDuration));
+		}
+		else if (soundType == SoundType.BREATH && duration > 0) {
+			if (stepType.isHold()) {
+				return PAUSE_SOUND;
+			}
+			else if (stepType.isContinue()) {
+				return CONTINUE_SOUND;
+			}
+			BreathSoundInfo breathSoundInfo = BreathSound.getBreathSoundInfo(stepType, duration);
+			return breathSoundInfo == null ? NO_SOUND
+					: getCue(Action.PLAY, breathSoundInfo.getSoundResourceId(), breathSoundInfo.getSpeed(), breathSoundInfo.getSoundDuration());
+		}
+		else if (stepType.isHold() && duration < MIN_HOLD_SOUND_DURATION) {
+			// do not play very short hold
+			return NO_SOUND;
+		}
+		int resourceId = soundType.getSoundResource(stepType);
+		return resourceId == 0 ? NO_SOUND : getCue(Action.PLAY, resourceId, 1, 0);
+	}
+
+	/**
+	 * Get a cue from the cache, creating it if it is not cached.
+	 *
+	 * @param action The action.
+	 * @param resourceId The sound resource.
+	 * @param speed The speed factor.
+	 * @param duration The duration in which the sound should be played in ms.
+	 * @return The cue.
+	 */
+	private static Cue getCue(final Action action, final int resourceId, final float speed, final long duration) {
+		int index = (int) ((resourceId * 31L + duration) & (CACHE_SIZE - 1)); // MAGIC_NUMBER
+		Cue cue = CACHE[index];
+		if (cue == null || cue.mAction != action || cue.mResourceId != resourceId || cue.mSpeed != speed || cue.mDuration != duration) {
+			cue = new Cue(action, resourceId, speed, duration);
+			CACHE[index] = cue;
+		}
+		return cue;
+	}
+
+	/**
+	 * Get the action.
+	 *
+	 * @return The action.
+	 */
+	Action getAction() {
+		return mAction;
+	}
+
+	/**
+	 * Get the sound resource.
+	 *
+	 * @return The sound resource.
+	 */
+	int getResourceId() {
+		return mResourceId;
+	}
+
+	/**
+	 * Get the speed factor.
+	 *
+	 * @return The speed factor.
+	 */
+	float getSpeed() {
+		return mSpeed;
+	}
+
+	/**
+	 * Get the duration in which the sound should be played.
+	 *
+	 * @return The duration in ms. 0 if the sound should be played in its natural length.
+	 */
+	long getDuration() {
+		return mDuration;
+	}
+
+	/**
+	 * The action to be done for a cue.
+	 */
+	enum Action {
+		/**
+		 * No sound.
+		 */
+		NONE,
+		/**
+		 * Play a sound resource.
+		 */
+		PLAY,
+		/**
+		 * Synthesize a breath sound.
+		 */
+		SYNTHESIZE,
+		/**
+		 * Pause the current sound.
+		 */
+		PAUSE,
+		/**
+		 * Continue the current sound.
+		 */
+		CONTINUE
+	}
+}
@@ -0,0 +1,131 @@
+package de.jeisfeld.breathtraining.sound;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.SoundPool;
+import android.util.SparseIntArray;
+
+import de.jeisfeld.breathtraining.exercise.data.StepType;
+
+/**
+ * A cache of short sound cues, which are decoded once into a SoundPool. Starting a cached cue is a non-blocking call without file access.
+ */
+final class CueCache {
+	/**
+	 * The step types whose cues are cached.
+	 */
+	private static final StepType[] CACHED_STEP_TYPES = {StepType.INHALE, StepType.EXHALE, StepType.HOLD, StepType.RELAX};
+
+	/**
+	 * The sound pool.
+	 */
+	private final SoundPool mSoundPool;
+	/**
+	 * The sound ids in the sound pool, by sound resource.
+	 */
+	private final SparseIntArray mSoundIds = new SparseIntArray();
+	/**
+	 * The sound ids in the sound pool which have completed loading.
+	 */
+	private final SparseIntArray mLoadedSoundIds = new SparseIntArray();
+	/**
+	 * The stream id of the cue played last. 0 if no cue has been played.
+	 */
+	private int mStreamId = 0;
+
+	/**
+	 * Constructor. Starts loading the cues of the given sound type in the background.
+	 *
+	 * @param context The context.
+	 * @param soundType The sound type.
+	 */
+	CueCache(final Context context, final SoundType soundType) {
+		mSoundPool = new SoundPool.Builder()
+				.setMaxStreams(1)
+				.setAudioAttributes(new AudioAttributes.Builder()
+						.setUsage(AudioAttributes.USAGE_MEDIA)
+						.setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+						.build())
+				.build();
+		mSoundPool.setOnLoadCompleteListener((soundPool, sampleId, status) -> {
+			if (status == 0) {
+				synchronized (mLoadedSoundIds) {
+					mLoadedSoundIds.put(sampleId, 1);
+				}
+			}
+		});
+		for (StepType stepType : CACHED_STEP_TYPES) {
+			int resourceId = soundType.getSoundResource(stepType);
+			if (resourceId != 0 && mSoundIds.indexOfKey(resourceId) < 0) {
+				mSoundIds.put(resourceId, mSoundPool.load(context, resourceId, 1));
+			}
+		}
+	}
+
+	/**
+	 * Check if a cue is loaded and can be played.
+	 *
+	 * @param resourceId The sound resource.
+	 * @return true if the cue is loaded.
+	 */
+	boolean isLoaded(final int resourceId) {
+		int soundId = mSoundIds.get(resourceId);
+		if (soundId == 0) {
+			return false;
+		}
+		synchronized (mLoadedSoundIds) {
+			return mLoadedSoundIds.get(soundId) != 0;
+		}
+	}
+
+	/**
+	 * Play a cue, stopping the cue played before.
+	 *
+	 * @param resourceId The sound resource.
+	 * @return true if the cue has been started. false if it is not loaded.
+	 */
+	boolean play(final int resourceId) {
+		if (!isLoaded(resourceId)) {
+			return false;
+		}
+		stop();
+		mStreamId = mSoundPool.play(mSoundIds.get(resourceId), 1, 1, 1, 0, 1);
+		return mStreamId != 0;
+	}
+
+	/**
+	 * Pause the cue played last.
+	 */
+	void pause() {
+		if (mStreamId != 0) {
+			mSoundPool.pause(mStreamId);
+		}
+	}
+
+	/**
+	 * Resume the cue played last. Nothing happens if it has already finished.
+	 */
+	void resume() {
+		if (mStreamId != 0) {
+			mSoundPool.resume(mStreamId);
+		}
+	}
+
+	/**
+	 * Stop the cue played last.
+	 */
+	void stop() {
+		if (mStreamId != 0) {
+			mSoundPool.stop(mStreamId);
+			mStreamId = 0;
+		}
+	}
+
+	/**
+	 * Release the cache.
+	 */
+	void release() {
+		mSoundPool.release();
+		mStreamId = 0;
+	}
+}
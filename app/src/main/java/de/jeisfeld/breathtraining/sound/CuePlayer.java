@@ -0,0 +1,687 @@
+package de.jeisfeld.breathtraining.sound;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaPlayer;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import de.jeisfeld.breathtraining.Application;
+import de.jeisfeld.breathtraining.R;
+import de.jeisfeld.breathtraining.exercise.data.ExerciseTimeline;
+import de.jeisfeld.breathtraining.exercise.data.StepType;
+import de.jeisfeld.breathtraining.sound.Cue.Action;
+import de.jeisfeld.breathtraining.util.PreferenceUtil;
+
+/**
+ * A player for the sound cues of an exercise, which prepares the cue of the next step in the background while the current step is running.
+ * So at the step boundary only the start of the already prepared player remains. Two media players are used alternately, and a cue still
+ * playing at the step boundary is faded out while the next one starts.
+ *
+ * <p>All methods must be called on the same thread. This should be a dedicated audio thread with a looper, which is then also used for the
+ * player callbacks and the fade-out.
+ */
+public class CuePlayer {
+	/**
+	 * The number of bytes of a megabyte.
+	 */
+	private static final long MEGABYTE = 1024 * 1024;
+	/**
+	 * The duration of the fade-out of a cue replaced by the next cue in ms.
+	 */
+	private static final long FADE_DURATION = 40;
+	/**
+	 * The number of volume steps of the fade-out.
+	 */
+	private static final int FADE_STEPS = 4;
+	/**
+	 * The minimum memory budget for decoded sounds in MB if there is a background sound. Then all cues are played via the mixer, so they
+	 * must be decoded.
+	 */
+	private static final int MIN_MIXER_BUDGET = 16;
+
+	/**
+	 * The context.
+	 */
+	private final Context mContext;
+	/**
+	 * The handler for the fade-out. null if there is no looper, so that cues are stopped without fade-out.
+	 */
+	private final Handler mHandler;
+	/**
+	 * The task doing one fade-out step.
+	 */
+	private final Runnable mFadeTask = this::doFadeStep;
+	/**
+	 * The player of the current cue.
+	 */
+	private MediaPlayer mCurrentPlayer = new MediaPlayer();
+	/**
+	 * The player in which the next cue is prepared.
+	 */
+	private MediaPlayer mNextPlayer = new MediaPlayer();
+	/**
+	 * Flag indicating if the current player is prepared.
+	 */
+	private boolean mIsCurrentPrepared = false;
+	/**
+	 * Flag indicating if the current cue has been playing when it was paused.
+	 */
+	private boolean mIsPausedWhilePlaying = false;
+	/**
+	 * The sound resource prepared in the next player. 0 if nothing is prepared.
+	 */
+	private int mNextResourceId = 0;
+	/**
+	 * Flag indicating if the preparation of the next player has completed.
+	 */
+	private volatile boolean mIsNextPrepared = false;
+	/**
+	 * Flag indicating if the next player should be started as soon as it is prepared, as its cue is already due.
+	 */
+	private boolean mIsStartPending = false;
+	/**
+	 * The speed of the cue to be started once the next player is prepared.
+	 */
+	private float mPendingSpeed = 1;
+	/**
+	 * The abort check of the cue to be started once the next player is prepared. May be null.
+	 */
+	private BooleanSupplier mPendingAbortCheck = null;
+	/**
+	 * The start listener of the cue to be started once the next player is prepared. May be null.
+	 */
+	private Runnable mPendingStartListener = null;
+	/**
+	 * The cue to be started via the mixer once its sound is decoded. null if there is none.
+	 */
+	private Cue mPendingPcmCue = null;
+	/**
+	 * The player being faded out. null if there is no fade-out.
+	 */
+	private MediaPlayer mFadingPlayer = null;
+	/**
+	 * The number of fade-out steps done.
+	 */
+	private int mFadeStep = 0;
+	/**
+	 * The sound resource to be prepared in the next player once its fade-out is finished or its pending start is done. 0 if there is none.
+	 */
+	private int mPendingResourceId = 0;
+	/**
+	 * The cache of short cues. null if the cues are played via media player only.
+	 */
+	private CueCache mCueCache = null;
+	/**
+	 * The cache of decoded breath sounds, which are time-stretched to the exact breath duration. null if breath sounds are played via media
+	 * player only.
+	 */
+	private PcmCache mPcmCache = null;
+	/**
+	 * The player of decoded and synthesized sounds. This is a mixer if there is a background sound. null if not required.
+	 */
+	private PcmPlayer mPcmPlayer = null;
+	/**
+	 * Flag indicating if the current cue is played by the player of decoded sounds.
+	 */
+	private boolean mIsPcmCurrent = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param context The context.
+	 */
+	public CuePlayer(final Context context) {
+		mContext = context;
+		Looper looper = Looper.myLooper();
+		mHandler = looper == null ? null : new Handler(looper);
+		mCurrentPlayer.setOnPreparedListener(this::onPrepared);
+		mNextPlayer.setOnPreparedListener(this::onPrepared);
+	}
+
+	/**
+	 * Preload the cues of a sound type into a low-latency cache, if they are short enough for this. Long breath sounds are instead decoded
+	 * into a cache of decoded sounds, if configured. If a background sound is configured, the mixer is started, and the cues are always
+	 * decoded, as they are then played only via the mixer. All sounds used by the timeline are requested for decoding up front, so that
+	 * already their first occurrence can be played from the cache.
+	 *
+	 * @param soundType The sound type.
+	 * @param timeline  The compiled timeline of the exercise.
+	 */
+	public void preload(final SoundType soundType, final ExerciseTimeline timeline) {
+		int ambientVolume = PreferenceUtil.getSharedPreferenceIntString(R.string.key_pref_ambient_volume, R.string.pref_default_ambient_volume);
+		if (mPcmPlayer == null && ambientVolume > 0) {
+			mPcmPlayer = new PcmMixer(ambientVolume / 100f); // MAGIC_NUMBER
+		}
+		int budget = PreferenceUtil.getSharedPreferenceIntString(R.string.key_pref_pcm_cache_size, R.string.pref_default_pcm_cache_size);
+		if (isMixing()) {
+			budget = Math.max(budget, MIN_MIXER_BUDGET);
+		}
+		if (soundType == SoundType.WORDS && isMixing()) {
+			// Play the words via the mixer, so that there is only one output stream.
+			if (mPcmCache == null) {
+				mPcmCache = createPcmCache(budget);
+			}
+		}
+		else if (soundType == SoundType.WORDS && mCueCache == null) {
+			mCueCache = new CueCache(mContext, soundType);
+		}
+		else if (soundType == SoundType.SYNTHESIZED && mPcmPlayer == null) {
+			mPcmPlayer = new PcmTrackPlayer();
+		}
+		else if (soundType == SoundType.BREATH && mPcmCache == null) {
+			if (budget > 0) {
+				mPcmCache = createPcmCache(budget);
+				if (mPcmPlayer == null) {
+					mPcmPlayer = new PcmTrackPlayer();
+				}
+			}
+		}
+		if (mPcmCache != null) {
+			requestTimelineSounds(soundType, timeline);
+		}
+	}
+
+	/**
+	 * Create the cache of decoded sounds.
+	 *
+	 * @param budget The memory budget in MB.
+	 * @return The cache.
+	 */
+	private PcmCache createPcmCache(final int budget) {
+		PcmCache pcmCache = new PcmCache(mContext, budget * MEGABYTE);
+		if (mHandler != null) {
+			pcmCache.setDecodedListener(resourceId -> mHandler.post(() -> onDecoded(resourceId)));
+		}
+		return pcmCache;
+	}
+
+	/**
+	 * Check if the cues are played via the mixer, as there is a background sound.
+	 *
+	 * @return true if mixing.
+	 */
+	private boolean isMixing() {
+		return mPcmPlayer instanceof PcmMixer;
+	}
+
+	/**
+	 * Request all sounds used by a timeline for decoding, in the order of their first use.
+	 *
+	 * @param soundType The sound type.
+	 * @param timeline  The compiled timeline of the exercise.
+	 */
+	private void requestTimelineSounds(final SoundType soundType, final ExerciseTimeline timeline) {
+		Set<Integer> requestedResources = new HashSet<>();
+		for (int i = 0; i < timeline.getStepCount(); i++) {
+			requestSound(Cue.resolve(soundType, timeline.getStepType(i), timeline.getSoundDuration(i)), requestedResources);
+		}
+		requestSound(Cue.resolve(soundType, StepType.RELAX, 0), requestedResources);
+	}
+
+	/**
+	 * Request the sound of a cue for decoding, if it has not been requested yet.
+	 *
+	 * @param cue                The cue.
+	 * @param requestedResources The sound resources requested so far.
+	 */
+	private void requestSound(final Cue cue, final Set<Integer> requestedResources) {
+		if (cue.getAction() == Action.PLAY && !isCached(cue.getResourceId()) && requestedResources.add(cue.getResourceId())) {
+			mPcmCache.request(cue.getResourceId());
+		}
+	}
+
+	/**
+	 * Prepare the cue of the next step.
+	 *
+	 * @param soundType The sound type.
+	 * @param stepType The step type of the next step.
+	 * @param duration The sound duration of the next step in ms.
+	 */
+	public void prepareNext(final SoundType soundType, final StepType stepType, final long duration) {
+		Cue cue = Cue.resolve(soundType, stepType, duration);
+		if (cue.getAction() != Action.PLAY || cue.getResourceId() == mNextResourceId || isCached(cue.getResourceId())) {
+			return;
+		}
+		if (mPcmCache != null) {
+			if (mPcmCache.get(cue.getResourceId()) != null) {
+				return;
+			}
+			mPcmCache.request(cue.getResourceId());
+			if (isMixing()) {
+				// Only the mixer may output while the background sound is playing, so the cue is started once it is decoded.
+				return;
+			}
+			// Decode for later repetitions, but for now prepare the media player.
+		}
+		if (mIsStartPending) {
+			// The player is still preparing the current cue - prepare it after its start.
+			mPendingResourceId = cue.getResourceId();
+			return;
+		}
+		if (mNextPlayer == mFadingPlayer) {
+			// The player is still fading out the last cue - prepare it afterwards.
+			mPendingResourceId = cue.getResourceId();
+			mNextResourceId = cue.getResourceId();
+			mIsNextPrepared = false;
+			return;
+		}
+		mNextResourceId = load(mNextPlayer, cue.getResourceId()) ? cue.getResourceId() : 0;
+	}
+
+	/**
+	 * Start the cue of a step. If the cue has been prepared, this only starts the prepared player. Otherwise the player is started as soon as
+	 * its preparation is completed, unless it is superseded before.
+	 *
+	 * @param soundType The sound type.
+	 * @param stepType The step type.
+	 * @param duration The sound duration in ms.
+	 * @param abortCheck A check if the cue start should be aborted, as the step has been superseded. May be null.
+	 * @param startListener A listener called when a sound has actually been started. Not called if no sound is started. May be null.
+	 */
+	public void play(final SoundType soundType, final StepType stepType, final long duration, final BooleanSupplier abortCheck,
+			final Runnable startListener) {
+		Cue cue = Cue.resolve(soundType, stepType, duration);
+		cancelPendingStart();
+		switch (cue.getAction()) {
+		case PAUSE:
+			pause();
+			break;
+		case CONTINUE:
+			if (mIsPcmCurrent) {
+				mPcmPlayer.resume();
+				notifyStarted(startListener);
+			}
+			else if (mIsCurrentPrepared) {
+				mCurrentPlayer.start();
+				notifyStarted(startListener);
+			}
+			break;
+		case PLAY:
+			if (isCached(cue.getResourceId())) {
+				stopCurrent();
+				if (mCueCache.play(cue.getResourceId())) {
+					notifyStarted(startListener);
+					break;
+				}
+				// The sound pool did not start a stream - fall back to the other players.
+			}
+			PcmSound pcmSound = mPcmCache == null ? null : mPcmCache.get(cue.getResourceId());
+			if (pcmSound != null) {
+				stopCurrent();
+				mPcmPlayer.play(pcmSound, cue.getDuration());
+				mIsPcmCurrent = true;
+				notifyStarted(startListener);
+				break;
+			}
+			if (isMixing()) {
+				// Only the mixer may output while the background sound is playing - start the cue once it is decoded.
+				stopCurrent();
+				if (mHandler != null && !mPcmCache.isRejected(cue.getResourceId())) {
+					mPendingPcmCue = cue;
+					mPendingAbortCheck = abortCheck;
+					mPendingStartListener = startListener;
+					mPcmCache.request(cue.getResourceId());
+				}
+				break;
+			}
+			if (mNextResourceId != cue.getResourceId() || !mIsNextPrepared) {
+				// The background preparation has not completed in time - start the player once it is prepared.
+				finishFade();
+				if (mNextResourceId != cue.getResourceId()) {
+					mNextResourceId = load(mNextPlayer, cue.getResourceId()) ? cue.getResourceId() : 0;
+					if (mNextResourceId == 0) {
+						return;
+					}
+				}
+				if (!mIsNextPrepared) {
+					mIsStartPending = true;
+					mPendingSpeed = cue.getSpeed();
+					mPendingAbortCheck = abortCheck;
+					mPendingStartListener = startListener;
+					return;
+				}
+			}
+			startNext(cue.getSpeed(), startListener);
+			break;
+		case SYNTHESIZE:
+			if (mPcmPlayer == null) {
+				mPcmPlayer = new PcmTrackPlayer();
+			}
+			stopCurrent();
+			mPcmPlayer.play(new BreathSynthesizer(stepType, cue.getDuration()), BreathSynthesizer.getFrameCount(cue.getDuration()));
+			mIsPcmCurrent = true;
+			notifyStarted(startListener);
+			break;
+		case NONE:
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Check if the output latency of a cue is compensated by starting it ahead of its step. This is the case only for cues played by the
+	 * player of decoded and synthesized sounds, as the latency is calibrated with an audio track, see {@link OutputLatency}.
+	 *
+	 * @param soundType The sound type.
+	 * @param stepType The step type.
+	 * @param duration The sound duration in ms.
+	 * @return true if the cue may be started ahead of its step.
+	 */
+	public boolean isLatencyCompensated(final SoundType soundType, final StepType stepType, final long duration) {
+		Cue cue = Cue.resolve(soundType, stepType, duration);
+		switch (cue.getAction()) {
+		case PLAY:
+			return !isCached(cue.getResourceId()) && mPcmCache != null && mPcmCache.get(cue.getResourceId()) != null;
+		case SYNTHESIZE:
+			return true;
+		case PAUSE:
+		case CONTINUE:
+			return mIsPcmCurrent;
+		case NONE:
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * Handle the completed preparation of a player. If the cue is already due, the player is started now, unless it has been superseded
+	 * meanwhile.
+	 *
+	 * @param player The player.
+	 */
+	private void onPrepared(final MediaPlayer player) {
+		if (player != mNextPlayer) {
+			return;
+		}
+		mIsNextPrepared = true;
+		if (!mIsStartPending) {
+			return;
+		}
+		BooleanSupplier abortCheck = mPendingAbortCheck;
+		Runnable startListener = mPendingStartListener;
+		mIsStartPending = false;
+		mPendingAbortCheck = null;
+		mPendingStartListener = null;
+		if (abortCheck == null || !abortCheck.getAsBoolean()) {
+			startNext(mPendingSpeed, startListener);
+		}
+		if (mNextPlayer != mFadingPlayer) {
+			loadPendingResource();
+		}
+	}
+
+	/**
+	 * Handle the completed decoding of a sound. If the cue is waiting for it, it is started now via the mixer, unless it has been superseded
+	 * meanwhile.
+	 *
+	 * @param resourceId The sound resource.
+	 */
+	private void onDecoded(final int resourceId) {
+		if (mPendingPcmCue == null || mPendingPcmCue.getResourceId() != resourceId || mPcmCache == null) {
+			return;
+		}
+		Cue cue = mPendingPcmCue;
+		BooleanSupplier abortCheck = mPendingAbortCheck;
+		Runnable startListener = mPendingStartListener;
+		mPendingPcmCue = null;
+		mPendingAbortCheck = null;
+		mPendingStartListener = null;
+		PcmSound pcmSound = mPcmCache.get(resourceId);
+		if (pcmSound != null && (abortCheck == null || !abortCheck.getAsBoolean())) {
+			mPcmPlayer.play(pcmSound, cue.getDuration());
+			mIsPcmCurrent = true;
+			notifyStarted(startListener);
+		}
+	}
+
+	/**
+	 * Cancel the start of a player waiting for its preparation. Its preparation continues, so that it can still be used for the next cue.
+	 * A cue waiting for its decoding is dropped.
+	 */
+	private void cancelPendingStart() {
+		if (mPendingPcmCue != null) {
+			mPendingPcmCue = null;
+			mPendingAbortCheck = null;
+			mPendingStartListener = null;
+		}
+		if (!mIsStartPending) {
+			return;
+		}
+		mIsStartPending = false;
+		mPendingAbortCheck = null;
+		mPendingStartListener = null;
+		loadPendingResource();
+	}
+
+	/**
+	 * Start the prepared next player as the current one, handing over from the current cue.
+	 *
+	 * @param speed The speed of the cue.
+	 * @param startListener A listener called when the player has been started. May be null.
+	 */
+	private void startNext(final float speed, final Runnable startListener) {
+		handOverCurrent();
+		MediaPlayer player = mCurrentPlayer;
+		mCurrentPlayer = mNextPlayer;
+		mNextPlayer = player;
+		mIsCurrentPrepared = true;
+		mNextResourceId = 0;
+		mIsNextPrepared = false;
+		mCurrentPlayer.setPlaybackParams(mCurrentPlayer.getPlaybackParams().setSpeed(speed));
+		mCurrentPlayer.start();
+		notifyStarted(startListener);
+	}
+
+	/**
+	 * Notify a listener about the start of a sound.
+	 *
+	 * @param startListener The listener. May be null.
+	 */
+	private static void notifyStarted(final Runnable startListener) {
+		if (startListener != null) {
+			startListener.run();
+		}
+	}
+
+	/**
+	 * Pause the current cue.
+	 */
+	public void pause() {
+		cancelPendingStart();
+		finishFade();
+		if (mIsCurrentPrepared && mCurrentPlayer.isPlaying()) {
+			mCurrentPlayer.pause();
+		}
+		if (mPcmPlayer != null) {
+			mPcmPlayer.pause();
+		}
+	}
+
+	/**
+	 * Pause the current cue, so that it can be resumed later at the same position.
+	 */
+	public void pauseForResume() {
+		mIsPausedWhilePlaying = mIsPcmCurrent ? mPcmPlayer.isPlaying() : mIsCurrentPrepared && mCurrentPlayer.isPlaying();
+		pause();
+		if (mCueCache != null) {
+			mCueCache.pause();
+		}
+		if (mPcmPlayer != null) {
+			mPcmPlayer.pauseOutput();
+		}
+	}
+
+	/**
+	 * Resume the current cue at the position where it has been paused by pauseForResume(). Nothing happens if it was not playing.
+	 */
+	public void resume() {
+		if (mPcmPlayer != null) {
+			mPcmPlayer.resumeOutput();
+		}
+		if (mIsPausedWhilePlaying && mIsPcmCurrent) {
+			mPcmPlayer.resume();
+		}
+		else if (mIsPausedWhilePlaying && mIsCurrentPrepared) {
+			mCurrentPlayer.start();
+		}
+		mIsPausedWhilePlaying = false;
+		if (mCueCache != null) {
+			mCueCache.resume();
+		}
+	}
+
+	/**
+	 * Release the players.
+	 */
+	public void release() {
+		if (mHandler != null) {
+			mHandler.removeCallbacks(mFadeTask);
+		}
+		mFadingPlayer = null;
+		mPendingResourceId = 0;
+		mIsStartPending = false;
+		mPendingPcmCue = null;
+		mPendingAbortCheck = null;
+		mPendingStartListener = null;
+		mCurrentPlayer.release();
+		mNextPlayer.release();
+		mIsCurrentPrepared = false;
+		mNextResourceId = 0;
+		if (mCueCache != null) {
+			mCueCache.release();
+			mCueCache = null;
+		}
+		if (mPcmPlayer != null) {
+			mPcmPlayer.release();
+			mPcmPlayer = null;
+		}
+		if (mPcmCache != null) {
+			mPcmCache.release();
+			mPcmCache = null;
+		}
+		mIsPcmCurrent = false;
+	}
+
+	/**
+	 * Check if a sound resource is available in the cue cache.
+	 *
+	 * @param resourceId The sound resource.
+	 * @return true if it can be played from the cue cache.
+	 */
+	private boolean isCached(final int resourceId) {
+		return mCueCache != null && mCueCache.isLoaded(resourceId);
+	}
+
+	/**
+	 * Stop the current cue.
+	 */
+	private void stopCurrent() {
+		finishFade();
+		if (mIsCurrentPrepared && mCurrentPlayer.isPlaying()) {
+			mCurrentPlayer.stop();
+		}
+		mIsCurrentPrepared = false;
+		if (mCueCache != null) {
+			mCueCache.stop();
+		}
+		if (mPcmPlayer != null) {
+			mPcmPlayer.stop();
+		}
+		mIsPcmCurrent = false;
+	}
+
+	/**
+	 * Hand over from the current cue to the next one. A media player cue still playing is faded out, other cues are stopped.
+	 */
+	private void handOverCurrent() {
+		if (mHandler == null || !mIsCurrentPrepared || !mCurrentPlayer.isPlaying()) {
+			stopCurrent();
+			return;
+		}
+		finishFade();
+		if (mCueCache != null) {
+			mCueCache.stop();
+		}
+		mFadingPlayer = mCurrentPlayer;
+		mFadeStep = 0;
+		mIsCurrentPrepared = false;
+		mHandler.postDelayed(mFadeTask, FADE_DURATION / FADE_STEPS);
+	}
+
+	/**
+	 * Do one step of the fade-out.
+	 */
+	private void doFadeStep() {
+		if (mFadingPlayer == null) {
+			return;
+		}
+		mFadeStep++;
+		if (mFadeStep >= FADE_STEPS) {
+			finishFade();
+		}
+		else {
+			float volume = 1 - mFadeStep / (float) FADE_STEPS;
+			mFadingPlayer.setVolume(volume, volume);
+			mHandler.postDelayed(mFadeTask, FADE_DURATION / FADE_STEPS);
+		}
+	}
+
+	/**
+	 * Finish a running fade-out immediately, and prepare the cue which has been waiting for it.
+	 */
+	private void finishFade() {
+		if (mFadingPlayer == null) {
+			return;
+		}
+		mHandler.removeCallbacks(mFadeTask);
+		if (mFadingPlayer.isPlaying()) {
+			mFadingPlayer.stop();
+		}
+		mFadingPlayer = null;
+		loadPendingResource();
+	}
+
+	/**
+	 * Prepare the sound resource which has been waiting for the next player, if any.
+	 */
+	private void loadPendingResource() {
+		if (mPendingResourceId != 0) {
+			mNextResourceId = load(mNextPlayer, mPendingResourceId) ? mPendingResourceId : 0;
+			mPendingResourceId = 0;
+		}
+	}
+
+	/**
+	 * Load a sound resource into a player and prepare it in the background.
+	 *
+	 * @param player The player.
+	 * @param resourceId The sound resource.
+	 * @return true if successful.
+	 */
+	private boolean load(final MediaPlayer player, final int resourceId) {
+		player.reset();
+		player.setVolume(1, 1);
+		mIsNextPrepared = false;
+		try {
+			AssetFileDescriptor afd = mContext.getResources().openRawResourceFd(resourceId);
+			if (afd == null) {
+				return false;
+			}
+			player.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+			afd.close();
+			player.prepareAsync();
+			return true;
+		}
+		catch (IOException | IllegalArgumentException | IllegalStateException | SecurityException ex) {
+			Log.e(Application.TAG, "Failed to open sound resource", ex);
+			return false;
+		}
+	}
+}
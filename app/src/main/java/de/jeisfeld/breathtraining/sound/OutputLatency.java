@@ -0,0 +1,241 @@
+package de.jeisfeld.breathtraining.sound;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioDeviceInfo;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTimestamp;
+import android.media.AudioTrack;
+import android.os.Build;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.jeisfeld.breathtraining.R;
+import de.jeisfeld.breathtraining.util.PreferenceUtil;
+
+/**
+ * Calibration of the audio output latency per output route. The latency is the time from starting a sound until it is audible, and sound
+ * cues are started earlier by this time. Routes are identified by the device to which media audio is actually routed.
+ *
+ * <p>The latency is measured with an audio track, so it applies to the decoded and synthesized sounds, which are played via audio tracks.
+ * Media player and sound pool add their own latency, which cannot be measured this way, so cues played by them are not started ahead.
+ */
+public final class OutputLatency {
+	/**
+	 * The sample rate used for calibration.
+	 */
+	private static final int SAMPLE_RATE = 48000;
+	/**
+	 * The number of latency samples taken in a calibration.
+	 */
+	private static final int SAMPLE_COUNT = 9;
+	/**
+	 * The interval between latency samples in ms.
+	 */
+	private static final long SAMPLE_INTERVAL = 50;
+	/**
+	 * The maximum time to wait for the first timestamp of the output in ms.
+	 */
+	private static final long STARTUP_TIMEOUT = 2000;
+	/**
+	 * The maximum time to wait for the routing of the probe track in ms.
+	 */
+	private static final long ROUTING_TIMEOUT = 200;
+	/**
+	 * The interval in which the routing of the probe track is checked in ms.
+	 */
+	private static final long ROUTING_POLL_INTERVAL = 5;
+	/**
+	 * The audio attributes of the cues, which determine the output route.
+	 */
+	private static final AudioAttributes MEDIA_ATTRIBUTES = new AudioAttributes.Builder()
+			.setUsage(AudioAttributes.USAGE_MEDIA)
+			.setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+			.build();
+
+	/**
+	 * Hide default constructor.
+	 */
+	private OutputLatency() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Get the device to which media audio is currently routed. Below Android 13, this is determined by briefly playing silence through a
+	 * probe track, so it may block for some ms and must not be called on the main thread.
+	 *
+	 * @param context The context.
+	 * @return The output device, or null if it cannot be determined.
+	 */
+	public static AudioDeviceInfo getCurrentDevice(final Context context) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+			AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+			List<AudioDeviceInfo> devices = audioManager.getAudioDevicesForAttributes(MEDIA_ATTRIBUTES);
+			return devices.isEmpty() ? null : devices.get(0);
+		}
+		int bufferSize = getBufferSize();
+		AudioTrack track = createTrack(bufferSize);
+		try {
+			track.play();
+			short[] silence = new short[bufferSize / 2];
+			long endTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ROUTING_TIMEOUT);
+			AudioDeviceInfo device = track.getRoutedDevice();
+			while (device == null && System.nanoTime() < endTime) {
+				track.write(silence, 0, silence.length, AudioTrack.WRITE_NON_BLOCKING);
+				Thread.sleep(ROUTING_POLL_INTERVAL);
+				device = track.getRoutedDevice();
+			}
+			return device;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		finally {
+			track.stop();
+			track.release();
+		}
+	}
+
+	/**
+	 * Get the key identifying an output route.
+	 *
+	 * @param device The output device.
+	 * @return The key.
+	 */
+	private static String getRouteKey(final AudioDeviceInfo device) {
+		return device == null ? "default" : device.getType() + ":" + device.getProductName();
+	}
+
+	/**
+	 * Get the display name of an output route.
+	 *
+	 * @param device The output device.
+	 * @return The name of the output device.
+	 */
+	public static String getRouteName(final AudioDeviceInfo device) {
+		return device == null ? "" : device.getProductName().toString();
+	}
+
+	/**
+	 * Get the calibrated latency of the current output route. This may block for some ms, see {@link #getCurrentDevice(Context)}.
+	 *
+	 * @param context The context.
+	 * @return The latency in ms. 0 if the route has not been calibrated.
+	 */
+	public static long getCurrentLatency(final Context context) {
+		return getLatency(getCurrentDevice(context));
+	}
+
+	/**
+	 * Get the calibrated latency of an output route.
+	 *
+	 * @param device The output device.
+	 * @return The latency in ms. 0 if the route has not been calibrated.
+	 */
+	public static long getLatency(final AudioDeviceInfo device) {
+		return PreferenceUtil.getIndexedSharedPreferenceLong(R.string.key_output_latency, getRouteKey(device), 0);
+	}
+
+	/**
+	 * Check if an output route has been calibrated.
+	 *
+	 * @param device The output device.
+	 * @return true if calibrated.
+	 */
+	public static boolean isCalibrated(final AudioDeviceInfo device) {
+		return PreferenceUtil.hasIndexedSharedPreference(R.string.key_output_latency, getRouteKey(device));
+	}
+
+	/**
+	 * Measure the latency of the current output route and store it for the device to which the measurement has actually been routed. This
+	 * plays silence for about half a second and blocks meanwhile, so it must not be called on the main thread.
+	 *
+	 * @return The latency in ms, or -1 if it could not be measured.
+	 */
+	public static long calibrate() {
+		int bufferSize = getBufferSize();
+		AudioTrack track = createTrack(bufferSize);
+		try {
+			long latency = measure(track, bufferSize);
+			// Still playing, so that the routing is known.
+			AudioDeviceInfo device = track.getRoutedDevice();
+			if (latency >= 0) {
+				PreferenceUtil.setIndexedSharedPreferenceLong(R.string.key_output_latency, getRouteKey(device), latency);
+			}
+			return latency;
+		}
+		finally {
+			track.stop();
+			track.release();
+		}
+	}
+
+	/**
+	 * Get the buffer size of the tracks used for calibration.
+	 *
+	 * @return The buffer size in bytes.
+	 */
+	private static int getBufferSize() {
+		return AudioTrack.getMinBufferSize(SAMPLE_RATE, AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_16BIT);
+	}
+
+	/**
+	 * Create a track for calibration, with the attributes of the cues.
+	 *
+	 * @param bufferSize The buffer size in bytes.
+	 * @return The track.
+	 */
+	private static AudioTrack createTrack(final int bufferSize) {
+		return new AudioTrack.Builder()
+				.setAudioAttributes(MEDIA_ATTRIBUTES)
+				.setAudioFormat(new AudioFormat.Builder()
+						.setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+						.setSampleRate(SAMPLE_RATE)
+						.setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+						.build())
+				.setBufferSizeInBytes(bufferSize)
+				.setTransferMode(AudioTrack.MODE_STREAM)
+				.build();
+	}
+
+	/**
+	 * Measure the output latency. Silence is played, and the presentation timestamps reported by the audio track are compared with the
+	 * time when the frames would be presented without latency. The track is left playing.
+	 *
+	 * @param track The track used for the measurement.
+	 * @param bufferSize The buffer size of the track in bytes.
+	 * @return The latency in ms (median of several samples), or -1 if it could not be measured.
+	 */
+	private static long measure(final AudioTrack track, final int bufferSize) {
+		short[] silence = new short[bufferSize / 2];
+		AudioTimestamp timestamp = new AudioTimestamp();
+		long[] latencies = new long[SAMPLE_COUNT];
+		int sampleCount = 0;
+		track.play();
+		long startTime = System.nanoTime();
+		long nextSampleTime = 0;
+		while (sampleCount < SAMPLE_COUNT) {
+			// Writing blocks while the buffer is full, so that the output keeps running at its own pace.
+			track.write(silence, 0, silence.length);
+			long now = System.nanoTime();
+			if (now < nextSampleTime) {
+				continue;
+			}
+			if (track.getTimestamp(timestamp) && timestamp.framePosition > 0) {
+				// Without latency, a frame would be presented at the start time plus its position in the stream.
+				long writeTime = startTime + timestamp.framePosition * TimeUnit.SECONDS.toNanos(1) / SAMPLE_RATE;
+				latencies[sampleCount++] = timestamp.nanoTime - writeTime;
+				nextSampleTime = now + TimeUnit.MILLISECONDS.toNanos(SAMPLE_INTERVAL);
+			}
+			else if (now - startTime > TimeUnit.MILLISECONDS.toNanos(STARTUP_TIMEOUT)) {
+				return -1;
+			}
+		}
+		Arrays.sort(latencies);
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(latencies[SAMPLE_COUNT / 2]));
+	}
+}
@@ -0,0 +1,167 @@
+package de.jeisfeld.breathtraining.sound;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+
+import de.jeisfeld.breathtraining.Application;
+
+/**
+ * A cache of decoded sounds with a memory budget. Sounds are decoded in the background on request. If the budget is exceeded, the least
+ * recently used sounds are evicted.
+ */
+final class PcmCache {
+	/**
+	 * The context.
+	 */
+	private final Context mContext;
+	/**
+	 * The memory budget in bytes.
+	 */
+	private final long mBudget;
+	/**
+	 * The cached sounds by sound resource, in access order.
+	 */
+	private final LinkedHashMap<Integer, PcmSound> mSounds = new LinkedHashMap<>(16, 0.75f, true); // MAGIC_NUMBER
+	/**
+	 * The sound resources currently requested for decoding.
+	 */
+	private final Set<Integer> mPendingResources = new HashSet<>();
+	/**
+	 * The sound resources which exceed the budget or cannot be decoded. They are not requested again during the lifetime of the cache.
+	 */
+	private final Set<Integer> mRejectedResources = new HashSet<>();
+	/**
+	 * The executor decoding the sounds.
+	 */
+	private final ExecutorService mDecoder = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+		Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+		runnable.run();
+	}, "PcmDecoder"));
+	/**
+	 * The memory used by the cached sounds in bytes.
+	 */
+	private long mMemorySize = 0;
+	/**
+	 * The listener called on the decoder thread when the decoding of a sound is finished, successfully or not. May be null.
+	 */
+	private volatile IntConsumer mDecodedListener = null;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param context The context.
+	 * @param budget The memory budget in bytes.
+	 */
+	PcmCache(final Context context, final long budget) {
+		mContext = context;
+		mBudget = budget;
+	}
+
+	/**
+	 * Get a decoded sound from the cache.
+	 *
+	 * @param resourceId The sound resource.
+	 * @return The decoded sound, or null if it is not cached.
+	 */
+	synchronized PcmSound get(final int resourceId) {
+		return mSounds.get(resourceId);
+	}
+
+	/**
+	 * Check if a sound has been rejected, as it exceeds the budget or cannot be decoded.
+	 *
+	 * @param resourceId The sound resource.
+	 * @return true if rejected.
+	 */
+	synchronized boolean isRejected(final int resourceId) {
+		return mRejectedResources.contains(resourceId);
+	}
+
+	/**
+	 * Set the listener called on the decoder thread when the decoding of a sound is finished, successfully or not.
+	 *
+	 * @param decodedListener The listener, receiving the sound resource. May be null.
+	 */
+	void setDecodedListener(final IntConsumer decodedListener) {
+		mDecodedListener = decodedListener;
+	}
+
+	/**
+	 * Request a sound to be decoded in the background, if it is not cached yet and has not been rejected before.
+	 *
+	 * @param resourceId The sound resource.
+	 */
+	synchronized void request(final int resourceId) {
+		if (mSounds.containsKey(resourceId) || mRejectedResources.contains(resourceId) || !mPendingResources.add(resourceId)) {
+			return;
+		}
+		mDecoder.execute(() -> {
+			try {
+				put(resourceId, PcmDecoder.decode(mContext, resourceId));
+			}
+			catch (IOException e) {
+				Log.w(Application.TAG, "Failed to decode sound", e);
+				synchronized (this) {
+					mRejectedResources.add(resourceId);
+				}
+			}
+			finally {
+				synchronized (this) {
+					mPendingResources.remove(resourceId);
+				}
+				IntConsumer decodedListener = mDecodedListener;
+				if (decodedListener != null) {
+					decodedListener.accept(resourceId);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Put a decoded sound into the cache, evicting the least recently used sounds if the budget is exceeded.
+	 *
+	 * @param resourceId The sound resource.
+	 * @param sound The decoded sound.
+	 */
+	private synchronized void put(final int resourceId, final PcmSound sound) {
+		if (mDecoder.isShutdown()) {
+			return;
+		}
+		if (sound.getMemorySize() > mBudget) {
+			mRejectedResources.add(resourceId);
+			return;
+		}
+		mSounds.put(resourceId, sound);
+		mMemorySize += sound.getMemorySize();
+		Iterator<Entry<Integer, PcmSound>> iterator = mSounds.entrySet().iterator();
+		while (mMemorySize > mBudget && iterator.hasNext()) {
+			Entry<Integer, PcmSound> entry = iterator.next();
+			if (entry.getKey() != resourceId) {
+				mMemorySize -= entry.getValue().getMemorySize();
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Release the cache.
+	 */
+	synchronized void release() {
+		mDecodedListener = null;
+		mDecoder.shutdownNow();
+		mSounds.clear();
+		mRejectedResources.clear();
+		mMemorySize = 0;
+	}
+}
@@ -0,0 +1,150 @@
+package de.jeisfeld.breathtraining.sound;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaCodec;
+import android.media.MediaCodec.BufferInfo;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoder of sound resources to 16 bit PCM.
+ */
+final class PcmDecoder {
+	/**
+	 * The timeout for waiting for codec buffers in us.
+	 */
+	private static final long TIMEOUT_US = 10000;
+	/**
+	 * The number of bytes per sample.
+	 */
+	private static final int BYTES_PER_SAMPLE = 2;
+
+	/**
+	 * Hide default constructor.
+	 */
+	private PcmDecoder() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Decode a sound resource.
+	 *
+	 * @param context The context.
+	 * @param resourceId The sound resource.
+	 * @return The decoded sound.
+	 * @throws IOException if the resource cannot be decoded.
+	 */
+	static PcmSound decode(final Context context, final int resourceId) throws IOException {
+		MediaExtractor extractor = new MediaExtractor();
+		MediaCodec codec = null;
+		try {
+			try (AssetFileDescriptor afd = context.getResources().openRawResourceFd(resourceId)) {
+				if (afd == null) {
+					throw new IOException("Cannot open sound resource " + resourceId);
+				}
+				extractor.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+			}
+			MediaFormat format = selectAudioTrack(extractor);
+			int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+			int channelCount = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+			long durationUs = format.containsKey(MediaFormat.KEY_DURATION) ? format.getLong(MediaFormat.KEY_DURATION) : 0;
+			ByteBuffer pcm = ByteBuffer.allocateDirect(
+					(int) (durationUs * sampleRate / TimeUnit.SECONDS.toMicros(1)) * channelCount * BYTES_PER_SAMPLE + 1)
+					.order(ByteOrder.nativeOrder());
+
+			codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+			codec.configure(format, null, null, 0);
+			codec.start();
+			BufferInfo info = new BufferInfo();
+			boolean isInputDone = false;
+			boolean isOutputDone = false;
+			while (!isOutputDone) {
+				if (!isInputDone) {
+					int inputIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+					if (inputIndex >= 0) {
+						int size = extractor.readSampleData(codec.getInputBuffer(inputIndex), 0);
+						if (size < 0) {
+							codec.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+							isInputDone = true;
+						}
+						else {
+							codec.queueInputBuffer(inputIndex, 0, size, extractor.getSampleTime(), 0);
+							extractor.advance();
+						}
+					}
+				}
+
+				int outputIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+				if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+					MediaFormat outputFormat = codec.getOutputFormat();
+					sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+					channelCount = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+				}
+				else if (outputIndex >= 0) {
+					if (info.size > 0) {
+						ByteBuffer output = codec.getOutputBuffer(outputIndex);
+						output.position(info.offset).limit(info.offset + info.size);
+						pcm = ensureRemaining(pcm, info.size);
+						pcm.put(output);
+					}
+					codec.releaseOutputBuffer(outputIndex, false);
+					isOutputDone = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+				}
+			}
+			pcm.flip();
+			return new PcmSound(pcm, sampleRate, channelCount);
+		}
+		catch (IllegalStateException | IllegalArgumentException e) {
+			throw new IOException("Failed to decode sound resource " + resourceId, e);
+		}
+		finally {
+			if (codec != null) {
+				codec.release();
+			}
+			extractor.release();
+		}
+	}
+
+	/**
+	 * Select the first audio track of the extractor.
+	 *
+	 * @param extractor The extractor.
+	 * @return The format of the selected track.
+	 * @throws IOException if there is no audio track.
+	 */
+	private static MediaFormat selectAudioTrack(final MediaExtractor extractor) throws IOException {
+		for (int i = 0; i < extractor.getTrackCount(); i++) {
+			MediaFormat format = extractor.getTrackFormat(i);
+			String mime = format.getString(MediaFormat.KEY_MIME);
+			if (mime != null && mime.startsWith("audio/")) {
+				extractor.selectTrack(i);
+				return format;
+			}
+		}
+		throw new IOException("No audio track found");
+	}
+
+	/**
+	 * Ensure that a buffer has enough remaining space, replacing it by a larger copy if required.
+	 *
+	 * @param buffer The buffer.
+	 * @param required The required remaining space.
+	 * @return The buffer with enough remaining space.
+	 */
+	private static ByteBuffer ensureRemaining(final ByteBuffer buffer, final int required) {
+		if (buffer.remaining() >= required) {
+			return buffer;
+		}
+		ByteBuffer newBuffer = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 3 / 2, buffer.position() + required)) // MAGIC_NUMBER
+				.order(ByteOrder.nativeOrder());
+		buffer.flip();
+		newBuffer.put(buffer);
+		return newBuffer;
+	}
+}
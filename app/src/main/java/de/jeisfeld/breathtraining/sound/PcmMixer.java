@@ -0,0 +1,209 @@
+package de.jeisfeld.breathtraining.sound;
+
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Build;
+import android.os.Process;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A software mixer playing a looping ambient sound with the cues overlaid, via a single low latency AudioTrack. One thread mixes blocks of
+ * fixed size and writes them to the track, so that there is only one output stream and no further decoder for the background. The cues
+ * are rendered ahead by a separate thread, so that the mixer thread only sums samples.
+ */
+final class PcmMixer implements PcmPlayer {
+	/**
+	 * The maximum time to wait for the mixer thread on release in ms.
+	 */
+	private static final long MIXER_JOIN_TIMEOUT = 100;
+	/**
+	 * The number of frames of a cue rendered at once by the render thread.
+	 */
+	private static final int RENDER_FRAMES = 1024;
+
+	/**
+	 * The sample rate. This is the native output rate, so that the output needs no further resampling.
+	 */
+	private final int mSampleRate;
+	/**
+	 * The audio track.
+	 */
+	private final AudioTrack mTrack;
+	/**
+	 * The number of frames mixed at once.
+	 */
+	private final int mBlockFrames;
+	/**
+	 * The ambient sound.
+	 */
+	private final PcmVoice mAmbient;
+	/**
+	 * The volume of the ambient sound.
+	 */
+	private final float mAmbientVolume;
+	/**
+	 * The mixer thread.
+	 */
+	private final Thread mMixer;
+	/**
+	 * The thread rendering the current cue ahead.
+	 */
+	private final Thread mRenderer;
+	/**
+	 * The current cue. Set by the player, and cleared by the mixer thread when it is finished.
+	 */
+	private final AtomicReference<PrerenderedVoice> mCue = new AtomicReference<>();
+	/**
+	 * Flag indicating if the current cue is paused.
+	 */
+	private volatile boolean mIsCuePaused = false;
+	/**
+	 * Flag indicating if the mixer is released.
+	 */
+	private volatile boolean mIsReleased = false;
+
+	/**
+	 * Constructor. Starts the output with the ambient sound.
+	 *
+	 * @param ambientVolume The volume of the ambient sound, from 0 to 1.
+	 */
+	PcmMixer(final float ambientVolume) {
+		mSampleRate = AudioTrack.getNativeOutputSampleRate(AudioManager.STREAM_MUSIC);
+		int bufferSize = AudioTrack.getMinBufferSize(mSampleRate, AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_16BIT);
+		// Two blocks fill the buffer, so that one can be mixed while the other is played.
+		mBlockFrames = bufferSize / 2 / 2;
+		AudioTrack.Builder builder = new AudioTrack.Builder()
+				.setAudioAttributes(new AudioAttributes.Builder()
+						.setUsage(AudioAttributes.USAGE_MEDIA)
+						.setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+						.build())
+				.setAudioFormat(new AudioFormat.Builder()
+						.setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+						.setSampleRate(mSampleRate)
+						.setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+						.build())
+				.setBufferSizeInBytes(mBlockFrames * 2 * 2)
+				.setTransferMode(AudioTrack.MODE_STREAM);
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+			builder.setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY);
+		}
+		mTrack = builder.build();
+		mAmbient = new PcmVoice(new AmbientSource(mSampleRate), mSampleRate);
+		mAmbientVolume = ambientVolume;
+		mMixer = new Thread(this::mix, "PcmMixer");
+		mRenderer = new Thread(this::renderAhead, "PcmRenderer");
+		mTrack.play();
+		mRenderer.start();
+		mMixer.start();
+	}
+
+	@Override
+	public void play(final PcmSource source, final long frameCount) {
+		// Render the start of the cue on the calling thread, so that the mixer does not have to wait for the render thread.
+		mCue.set(new PrerenderedVoice(source, mSampleRate, 2 * mBlockFrames));
+		mIsCuePaused = false;
+		LockSupport.unpark(mRenderer);
+	}
+
+	@Override
+	public boolean isPlaying() {
+		return mCue.get() != null && !mIsCuePaused && mTrack.getPlayState() == AudioTrack.PLAYSTATE_PLAYING;
+	}
+
+	@Override
+	public void pause() {
+		mIsCuePaused = true;
+	}
+
+	@Override
+	public void resume() {
+		mIsCuePaused = false;
+	}
+
+	@Override
+	public void stop() {
+		mCue.set(null);
+	}
+
+	@Override
+	public void pauseOutput() {
+		if (mTrack.getPlayState() == AudioTrack.PLAYSTATE_PLAYING) {
+			mTrack.pause();
+		}
+	}
+
+	@Override
+	public void resumeOutput() {
+		if (mTrack.getPlayState() == AudioTrack.PLAYSTATE_PAUSED) {
+			mTrack.play();
+		}
+	}
+
+	@Override
+	public void release() {
+		mIsReleased = true;
+		mTrack.pause();
+		// Flush to release the mixer thread if blocked on a full buffer.
+		mTrack.flush();
+		LockSupport.unpark(mRenderer);
+		try {
+			mMixer.join(MIXER_JOIN_TIMEOUT);
+			mRenderer.join(MIXER_JOIN_TIMEOUT);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		mTrack.release();
+	}
+
+	/**
+	 * Mix and write blocks until the mixer is released.
+	 */
+	private void mix() {
+		Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+		float[] mixBlock = new float[mBlockFrames];
+		short[] block = new short[mBlockFrames];
+		while (!mIsReleased) {
+			for (int i = 0; i < mBlockFrames; i++) {
+				mixBlock[i] = mAmbientVolume * mAmbient.next();
+			}
+			PrerenderedVoice cue = mCue.get();
+			if (cue != null && !mIsCuePaused) {
+				cue.mixInto(mixBlock, mBlockFrames);
+				if (cue.isFinished()) {
+					mCue.compareAndSet(cue, null);
+				}
+				LockSupport.unpark(mRenderer);
+			}
+			for (int i = 0; i < mBlockFrames; i++) {
+				block[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(mixBlock[i] * Short.MAX_VALUE)));
+			}
+			int offset = 0;
+			while (offset < mBlockFrames && !mIsReleased) {
+				int written = mTrack.write(block, offset, mBlockFrames - offset);
+				if (written < 0) {
+					return;
+				}
+				offset += written;
+			}
+		}
+	}
+
+	/**
+	 * Render the current cue ahead until the mixer is released. The thread sleeps while the buffer of the cue is full, and is woken up by
+	 * the mixer thread after reading.
+	 */
+	private void renderAhead() {
+		Process.setThreadPriority(Process.THREAD_PRIORITY_AUDIO);
+		while (!mIsReleased) {
+			PrerenderedVoice cue = mCue.get();
+			if (cue == null || !cue.render(RENDER_FRAMES)) {
+				LockSupport.park(this);
+			}
+		}
+	}
+}
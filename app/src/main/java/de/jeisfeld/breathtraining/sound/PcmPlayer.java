@@ -0,0 +1,66 @@
+package de.jeisfeld.breathtraining.sound;
+
+/**
+ * A player of PCM sources, used for cues which are rendered by the app itself.
+ */
+interface PcmPlayer {
+	/**
+	 * Play a source, stopping the sound played before.
+	 *
+	 * @param source The source.
+	 * @param frameCount The number of frames rendered by the source.
+	 */
+	void play(PcmSource source, long frameCount);
+
+	/**
+	 * Play a decoded sound, stopping the sound played before. The sound is time-stretched to the requested duration.
+	 *
+	 * @param sound The sound.
+	 * @param duration The duration in which the sound should be played in ms. 0 to play the sound in its natural length.
+	 */
+	default void play(final PcmSound sound, final long duration) {
+		long frameCount = duration > 0 ? TimeStretcher.getFrameCount(sound, duration) : sound.getFrameCount();
+		play(new TimeStretcher(sound, frameCount), frameCount);
+	}
+
+	/**
+	 * Check if the current sound is still playing.
+	 *
+	 * @return true if playing.
+	 */
+	boolean isPlaying();
+
+	/**
+	 * Pause the current sound.
+	 */
+	void pause();
+
+	/**
+	 * Continue the current sound.
+	 */
+	void resume();
+
+	/**
+	 * Stop the current sound.
+	 */
+	void stop();
+
+	/**
+	 * Pause the whole output, including sound which is independent of the cues. By default there is no such sound.
+	 */
+	default void pauseOutput() {
+		// nothing to do
+	}
+
+	/**
+	 * Resume the whole output after pauseOutput().
+	 */
+	default void resumeOutput() {
+		// nothing to do
+	}
+
+	/**
+	 * Release the player.
+	 */
+	void release();
+}
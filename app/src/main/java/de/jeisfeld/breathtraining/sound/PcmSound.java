@@ -0,0 +1,87 @@
+package de.jeisfeld.breathtraining.sound;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A sound decoded to 16 bit PCM, held in a direct buffer.
+ */
+final class PcmSound {
+	/**
+	 * The number of bytes per sample.
+	 */
+	private static final int BYTES_PER_SAMPLE = 2;
+
+	/**
+	 * The PCM data, from position 0 to the limit.
+	 */
+	private final ByteBuffer mData;
+	/**
+	 * The sample rate.
+	 */
+	private final int mSampleRate;
+	/**
+	 * The number of channels.
+	 */
+	private final int mChannelCount;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param data The PCM data, from position 0 to the limit.
+	 * @param sampleRate The sample rate.
+	 * @param channelCount The number of channels.
+	 */
+	PcmSound(final ByteBuffer data, final int sampleRate, final int channelCount) {
+		mData = data;
+		mSampleRate = sampleRate;
+		mChannelCount = channelCount;
+	}
+
+	/**
+	 * Get the PCM data. Each call returns a separate view with position 0, so that several readers do not interfere.
+	 *
+	 * @return The PCM data.
+	 */
+	ByteBuffer getData() {
+		ByteBuffer data = mData.duplicate().order(ByteOrder.nativeOrder());
+		data.position(0);
+		return data;
+	}
+
+	/**
+	 * Get the sample rate.
+	 *
+	 * @return The sample rate.
+	 */
+	int getSampleRate() {
+		return mSampleRate;
+	}
+
+	/**
+	 * Get the number of channels.
+	 *
+	 * @return The number of channels.
+	 */
+	int getChannelCount() {
+		return mChannelCount;
+	}
+
+	/**
+	 * Get the number of frames.
+	 *
+	 * @return The number of frames.
+	 */
+	int getFrameCount() {
+		return mData.limit() / (BYTES_PER_SAMPLE * mChannelCount);
+	}
+
+	/**
+	 * Get the memory used by this sound.
+	 *
+	 * @return The memory in bytes.
+	 */
+	long getMemorySize() {
+		return mData.capacity();
+	}
+}
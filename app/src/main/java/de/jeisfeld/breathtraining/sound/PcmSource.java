@@ -0,0 +1,37 @@
+package de.jeisfeld.breathtraining.sound;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A source of 16 bit PCM audio which is rendered incrementally in chunks, so that it can be streamed.
+ */
+interface PcmSource {
+	/**
+	 * Get the sample rate.
+	 *
+	 * @return The sample rate.
+	 */
+	int getSampleRate();
+
+	/**
+	 * Get the number of channels.
+	 *
+	 * @return The number of channels.
+	 */
+	int getChannelCount();
+
+	/**
+	 * Get the maximum number of bytes rendered by one call of render().
+	 *
+	 * @return The chunk size in bytes.
+	 */
+	int getChunkSize();
+
+	/**
+	 * Render the next chunk as 16 bit PCM in native byte order.
+	 *
+	 * @param target The buffer to which the chunk is written. Must have at least getChunkSize() bytes remaining.
+	 * @return false if the source has been completely rendered.
+	 */
+	boolean render(ByteBuffer target);
+}
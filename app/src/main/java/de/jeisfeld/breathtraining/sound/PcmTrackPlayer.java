@@ -0,0 +1,250 @@
+package de.jeisfeld.breathtraining.sound;
+
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
+import android.os.Process;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A player of PCM sources via a streaming AudioTrack, such as decoded sounds time-stretched to the requested duration or synthesized
+ * sounds. One long-lived feeder thread renders the current source and writes it to the track, so that starting a sound does not block and
+ * does not create a thread.
+ *
+ * <p>Only the feeder thread writes to the track and releases tracks. The other methods must be called on the same thread, and they control
+ * the track only under the lock, so that they do not interfere with the feeder switching to the next source.
+ */
+final class PcmTrackPlayer implements PcmPlayer {
+	/**
+	 * The lock guarding the hand-over to the feeder thread and the control of the track.
+	 */
+	private final Object mLock = new Object();
+	/**
+	 * The tracks which are no longer used, to be released by the feeder thread. Guarded by the lock.
+	 */
+	private final List<AudioTrack> mRetiredTracks = new ArrayList<>();
+	/**
+	 * The audio track. Recreated if the format of the played sound changes. Guarded by the lock.
+	 */
+	private AudioTrack mTrack = null;
+	/**
+	 * The source currently played. null if stopped.
+	 */
+	private PcmSource mSource = null;
+	/**
+	 * The source still to be picked up by the feeder thread. Guarded by the lock.
+	 */
+	private PcmSource mPendingSource = null;
+	/**
+	 * The feeder thread. Started on the first sound.
+	 */
+	private Thread mFeeder = null;
+	/**
+	 * The number of frames of the current source.
+	 */
+	private long mFrameCount = 0;
+	/**
+	 * Flag indicating if the current sound is paused. Guarded by the lock.
+	 */
+	private boolean mIsPaused = false;
+	/**
+	 * Flag indicating if the player is released. Guarded by the lock.
+	 */
+	private boolean mIsReleased = false;
+	/**
+	 * The generation of the current sound. It is incremented whenever a sound is stopped, so that the feeder thread stops feeding it.
+	 */
+	private volatile int mGeneration = 0;
+
+	@Override
+	public void play(final PcmSource source, final long frameCount) {
+		synchronized (mLock) {
+			stopTrack();
+			if (mTrack != null && (mTrack.getSampleRate() != source.getSampleRate() || mTrack.getChannelCount() != source.getChannelCount())) {
+				mRetiredTracks.add(mTrack);
+				mTrack = null;
+			}
+			if (mTrack == null) {
+				mTrack = createTrack(source);
+			}
+			mSource = source;
+			mFrameCount = frameCount;
+			mIsPaused = false;
+			mPendingSource = source;
+			mLock.notifyAll();
+		}
+		if (mFeeder == null) {
+			mFeeder = new Thread(this::feed, "PcmFeeder");
+			mFeeder.start();
+		}
+	}
+
+	@Override
+	public boolean isPlaying() {
+		// The head position is reset when the feeder thread starts a sound.
+		return mTrack != null && mSource != null && !mIsPaused && mTrack.getPlaybackHeadPosition() < mFrameCount;
+	}
+
+	@Override
+	public void pause() {
+		synchronized (mLock) {
+			if (isPlaying()) {
+				mIsPaused = true;
+				mTrack.pause();
+			}
+		}
+	}
+
+	@Override
+	public void resume() {
+		synchronized (mLock) {
+			if (mTrack != null && mSource != null && mIsPaused) {
+				mIsPaused = false;
+				mTrack.play();
+			}
+		}
+	}
+
+	@Override
+	public void stop() {
+		synchronized (mLock) {
+			stopTrack();
+		}
+	}
+
+	@Override
+	public void release() {
+		synchronized (mLock) {
+			stopTrack();
+			mIsReleased = true;
+			if (mTrack != null) {
+				mRetiredTracks.add(mTrack);
+				mTrack = null;
+			}
+			if (mFeeder == null) {
+				releaseRetiredTracks();
+			}
+			else {
+				mLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Stop the current sound. A feeder blocked on a full buffer is released by the flush. Data it may write afterwards is flushed by the
+	 * feeder itself before the next sound. Must be called under the lock.
+	 */
+	private void stopTrack() {
+		mGeneration++;
+		mPendingSource = null;
+		mSource = null;
+		mIsPaused = false;
+		if (mTrack != null) {
+			mTrack.pause();
+			mTrack.flush();
+		}
+	}
+
+	/**
+	 * Release the retired tracks. Must be called under the lock, from the feeder thread if it is running.
+	 */
+	private void releaseRetiredTracks() {
+		for (AudioTrack track : mRetiredTracks) {
+			track.release();
+		}
+		mRetiredTracks.clear();
+	}
+
+	/**
+	 * Feed the handed over sources to the track until the player is released.
+	 */
+	private void feed() {
+		Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+		ByteBuffer chunk = null;
+		while (true) {
+			PcmSource source;
+			AudioTrack track;
+			int generation;
+			synchronized (mLock) {
+				releaseRetiredTracks();
+				while (mPendingSource == null && !mIsReleased) {
+					try {
+						mLock.wait();
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+					releaseRetiredTracks();
+				}
+				if (mIsReleased) {
+					return;
+				}
+				source = mPendingSource;
+				mPendingSource = null;
+				track = mTrack;
+				generation = mGeneration;
+				// Discard what may have been written for the previous sound after it was stopped.
+				track.pause();
+				track.flush();
+				if (!mIsPaused) {
+					track.play();
+				}
+			}
+			if (chunk == null || chunk.capacity() < source.getChunkSize()) {
+				chunk = ByteBuffer.allocateDirect(source.getChunkSize());
+			}
+			feedSource(source, track, generation, chunk);
+		}
+	}
+
+	/**
+	 * Feed a source to the track until it is completely rendered or stopped.
+	 *
+	 * @param source The source.
+	 * @param track The track.
+	 * @param generation The generation of the sound.
+	 * @param chunk The buffer for rendering.
+	 */
+	private void feedSource(final PcmSource source, final AudioTrack track, final int generation, final ByteBuffer chunk) {
+		while (generation == mGeneration) {
+			chunk.clear();
+			if (!source.render(chunk)) {
+				return;
+			}
+			chunk.flip();
+			while (chunk.hasRemaining() && generation == mGeneration) {
+				if (track.write(chunk, chunk.remaining(), AudioTrack.WRITE_BLOCKING) < 0) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create an audio track matching the format of a source.
+	 *
+	 * @param source The source.
+	 * @return The audio track.
+	 */
+	private static AudioTrack createTrack(final PcmSource source) {
+		int channelMask = source.getChannelCount() == 1 ? AudioFormat.CHANNEL_OUT_MONO : AudioFormat.CHANNEL_OUT_STEREO;
+		AudioFormat format = new AudioFormat.Builder()
+				.setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+				.setSampleRate(source.getSampleRate())
+				.setChannelMask(channelMask)
+				.build();
+		return new AudioTrack.Builder()
+				.setAudioAttributes(new AudioAttributes.Builder()
+						.setUsage(AudioAttributes.USAGE_MEDIA)
+						.setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+						.build())
+				.setAudioFormat(format)
+				.setBufferSizeInBytes(AudioTrack.getMinBufferSize(source.getSampleRate(), channelMask, AudioFormat.ENCODING_PCM_16BIT))
+				.setTransferMode(AudioTrack.MODE_STREAM)
+				.build();
+	}
+}
@@ -0,0 +1,106 @@
+package de.jeisfeld.breathtraining.sound;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * A PCM source converted to a mono output with a fixed sample rate, read sample by sample. The source is mixed down to mono and resampled by
+ * linear interpolation.
+ */
+final class PcmVoice {
+	/**
+	 * The source.
+	 */
+	private final PcmSource mSource;
+	/**
+	 * The number of source frames per output frame.
+	 */
+	private final double mStep;
+	/**
+	 * The buffer for the chunks rendered by the source.
+	 */
+	private final ByteBuffer mChunk;
+	/**
+	 * The samples of the current chunk.
+	 */
+	private ShortBuffer mSamples = ShortBuffer.allocate(0);
+	/**
+	 * The source frame before the current position.
+	 */
+	private float mPrevious;
+	/**
+	 * The source frame after the current position.
+	 */
+	private float mNext;
+	/**
+	 * The position between the previous and the next source frame.
+	 */
+	private double mFraction = 0;
+	/**
+	 * Flag indicating if the source is completely rendered.
+	 */
+	private boolean mIsFinished = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param source The source.
+	 * @param sampleRate The output sample rate.
+	 */
+	PcmVoice(final PcmSource source, final int sampleRate) {
+		mSource = source;
+		mStep = source.getSampleRate() / (double) sampleRate;
+		mChunk = ByteBuffer.allocateDirect(source.getChunkSize());
+		mPrevious = readFrame();
+		mNext = readFrame();
+	}
+
+	/**
+	 * Get the next output sample.
+	 *
+	 * @return The sample between -1 and 1.
+	 */
+	float next() {
+		float value = (float) (mPrevious + (mNext - mPrevious) * mFraction);
+		mFraction += mStep;
+		while (mFraction >= 1 && !mIsFinished) {
+			mFraction -= 1;
+			mPrevious = mNext;
+			mNext = readFrame();
+		}
+		return value;
+	}
+
+	/**
+	 * Check if the source is completely rendered.
+	 *
+	 * @return true if finished.
+	 */
+	boolean isFinished() {
+		return mIsFinished;
+	}
+
+	/**
+	 * Read the next source frame, mixed down to mono.
+	 *
+	 * @return The sample between -1 and 1. 0 after the end of the source.
+	 */
+	private float readFrame() {
+		int channelCount = mSource.getChannelCount();
+		while (mSamples.remaining() < channelCount) {
+			mChunk.clear();
+			if (!mSource.render(mChunk)) {
+				mIsFinished = true;
+				return 0;
+			}
+			mChunk.flip();
+			mSamples = mChunk.order(ByteOrder.nativeOrder()).asShortBuffer();
+		}
+		float sum = 0;
+		for (int channel = 0; channel < channelCount; channel++) {
+			sum += mSamples.get();
+		}
+		return sum / (channelCount * -(float) Short.MIN_VALUE);
+	}
+}
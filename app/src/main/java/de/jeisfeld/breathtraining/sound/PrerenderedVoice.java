@@ -0,0 +1,95 @@
+package de.jeisfeld.breathtraining.sound;
+
+/**
+ * A voice which is rendered ahead into a ring buffer, so that the thread reading it only has to copy samples. This keeps the rendering of
+ * the source, e.g. the time stretching, away from a thread which has to meet output deadlines.
+ *
+ * <p>There must be only one thread rendering at a time, and one thread reading.
+ */
+final class PrerenderedVoice {
+	/**
+	 * The size of the ring buffer in frames. Must be a power of 2.
+	 */
+	private static final int BUFFER_FRAMES = 32768;
+
+	/**
+	 * The voice rendering the source.
+	 */
+	private final PcmVoice mVoice;
+	/**
+	 * The ring buffer of rendered samples.
+	 */
+	private final float[] mBuffer = new float[BUFFER_FRAMES];
+	/**
+	 * The number of frames rendered into the buffer.
+	 */
+	private volatile long mWritePosition = 0;
+	/**
+	 * The number of frames read from the buffer.
+	 */
+	private volatile long mReadPosition = 0;
+	/**
+	 * Flag indicating if the source is completely rendered into the buffer.
+	 */
+	private volatile boolean mIsRendered = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param source The source.
+	 * @param sampleRate The output sample rate.
+	 * @param prefillFrames The number of frames rendered immediately, so that the voice can be read right away.
+	 */
+	PrerenderedVoice(final PcmSource source, final int sampleRate, final int prefillFrames) {
+		mVoice = new PcmVoice(source, sampleRate);
+		render(prefillFrames);
+	}
+
+	/**
+	 * Render ahead into the buffer. To be called by the rendering thread.
+	 *
+	 * @param maxFrames The maximum number of frames to be rendered.
+	 * @return false if nothing could be rendered, as the buffer is full or the source is completely rendered.
+	 */
+	boolean render(final int maxFrames) {
+		long writePosition = mWritePosition;
+		long endPosition = Math.min(mReadPosition + BUFFER_FRAMES, writePosition + maxFrames);
+		if (mIsRendered || writePosition >= endPosition) {
+			return false;
+		}
+		while (writePosition < endPosition && !mVoice.isFinished()) {
+			mBuffer[(int) (writePosition & (BUFFER_FRAMES - 1))] = mVoice.next();
+			writePosition++;
+		}
+		mWritePosition = writePosition;
+		mIsRendered = mVoice.isFinished();
+		return true;
+	}
+
+	/**
+	 * Add the next rendered samples to a block. If not enough samples have been rendered yet, only the available ones are added, so that the
+	 * voice is delayed rather than skipped. To be called by the reading thread.
+	 *
+	 * @param block The block to which the samples are added.
+	 * @param frames The number of frames of the block.
+	 * @return The number of frames added.
+	 */
+	int mixInto(final float[] block, final int frames) {
+		long readPosition = mReadPosition;
+		int available = (int) Math.min(frames, mWritePosition - readPosition);
+		for (int i = 0; i < available; i++) {
+			block[i] += mBuffer[(int) ((readPosition + i) & (BUFFER_FRAMES - 1))];
+		}
+		mReadPosition = readPosition + available;
+		return available;
+	}
+
+	/**
+	 * Check if the voice is completely rendered and read.
+	 *
+	 * @return true if finished.
+	 */
+	boolean isFinished() {
+		return mIsRendered && mReadPosition >= mWritePosition;
+	}
+}
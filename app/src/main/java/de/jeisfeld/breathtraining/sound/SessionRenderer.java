@@ -0,0 +1,374 @@
+package de.jeisfeld.breathtraining.sound;
+
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Environment;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+import de.jeisfeld.breathtraining.Application;
+import de.jeisfeld.breathtraining.R;
+import de.jeisfeld.breathtraining.exercise.data.ExerciseData;
+import de.jeisfeld.breathtraining.exercise.data.ExerciseTimeline;
+import de.jeisfeld.breathtraining.exercise.data.StepType;
+import de.jeisfeld.breathtraining.exercise.service.ExerciseService;
+import de.jeisfeld.breathtraining.util.DialogUtil;
+
+/**
+ * Offline render of a complete exercise into a WAV file, so that it can be played as a single media stream without running the exercise
+ * service. The cues of all steps are rendered at their offsets in the timeline, with the same cue logic as during playback, and the output
+ * is written to the file in chunks, so that the memory use does not depend on the exercise length.
+ */
+public final class SessionRenderer {
+	/**
+	 * The sample rate of the rendered file.
+	 */
+	private static final int SAMPLE_RATE = 24000;
+	/**
+	 * The number of frames written to the file at once.
+	 */
+	private static final int CHUNK_FRAMES = 4096;
+	/**
+	 * The size of the WAV header in bytes.
+	 */
+	private static final int HEADER_SIZE = 44;
+	/**
+	 * The maximum size of the audio data in bytes. The sizes in the WAV header are unsigned 32 bit values.
+	 */
+	private static final long MAX_DATA_SIZE = 0xFFFFFFFFL - (HEADER_SIZE - 8); // MAGIC_NUMBER
+	/**
+	 * The id of the progress notification of the export.
+	 */
+	private static final int NOTIFICATION_ID = 2;
+	/**
+	 * The action of the broadcast canceling the export.
+	 */
+	private static final String ACTION_CANCEL = "de.jeisfeld.breathtraining.CANCEL_AUDIO_EXPORT";
+	/**
+	 * The number of progress steps shown in the notification.
+	 */
+	private static final int PROGRESS_STEPS = 100;
+
+	/**
+	 * The context.
+	 */
+	private final Context mContext;
+	/**
+	 * The decoded sounds by sound resource. This is independent of the playback cache and its budget, and keeps all sounds used by the
+	 * exercise, so that each of them is decoded only once.
+	 */
+	private final Map<Integer, PcmSound> mSounds = new HashMap<>();
+	/**
+	 * The output buffer.
+	 */
+	private final ByteBuffer mChunk = ByteBuffer.allocate(CHUNK_FRAMES * 2).order(ByteOrder.LITTLE_ENDIAN);
+	/**
+	 * The file channel of the output.
+	 */
+	private final FileChannel mChannel;
+	/**
+	 * The listener for the progress of the render. May be null.
+	 */
+	private final ProgressListener mProgressListener;
+	/**
+	 * The total number of frames to be rendered.
+	 */
+	private final long mTotalFrames;
+	/**
+	 * The voice currently sounding. null if there is none.
+	 */
+	private PcmVoice mVoice = null;
+	/**
+	 * Flag indicating if the current voice is paused.
+	 */
+	private boolean mIsPaused = false;
+	/**
+	 * The number of frames rendered.
+	 */
+	private long mRenderedFrames = 0;
+	/**
+	 * The progress last reported to the progress listener.
+	 */
+	private int mReportedProgress = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param context The context.
+	 * @param channel The file channel of the output.
+	 * @param progressListener The listener for the progress of the render. May be null.
+	 * @param totalFrames The total number of frames to be rendered.
+	 */
+	private SessionRenderer(final Context context, final FileChannel channel, final ProgressListener progressListener, final long totalFrames) {
+		mContext = context;
+		mChannel = channel;
+		mProgressListener = progressListener;
+		mTotalFrames = totalFrames;
+	}
+
+	/**
+	 * Export an exercise as audio file in the background. The progress is shown in a notification, from which the export can be canceled,
+	 * and the user is informed when done. A partially written file is deleted.
+	 *
+	 * @param context The context.
+	 * @param exerciseData The exercise data.
+	 */
+	public static void triggerExport(final Context context, final ExerciseData exerciseData) {
+		final Context applicationContext = context.getApplicationContext();
+		new Thread(() -> {
+			Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+			String name = exerciseData.getName() == null || exerciseData.getName().trim().isEmpty()
+					? applicationContext.getString(R.string.app_name) : exerciseData.getName().trim();
+			File directory = applicationContext.getExternalFilesDir(Environment.DIRECTORY_MUSIC);
+			File file = new File(directory == null ? applicationContext.getFilesDir() : directory, name.replaceAll("[^\\w\\- ]", "_") + ".wav");
+
+			final AtomicBoolean isCanceled = new AtomicBoolean(false);
+			BroadcastReceiver cancelReceiver = new BroadcastReceiver() {
+				@Override
+				public void onReceive(final Context receiverContext, final Intent intent) {
+					isCanceled.set(true);
+				}
+			};
+			ContextCompat.registerReceiver(applicationContext, cancelReceiver, new IntentFilter(ACTION_CANCEL), ContextCompat.RECEIVER_NOT_EXPORTED);
+			NotificationManager notificationManager = (NotificationManager) applicationContext.getSystemService(Context.NOTIFICATION_SERVICE);
+			NotificationCompat.Builder notificationBuilder = createNotificationBuilder(applicationContext, name);
+			notificationManager.notify(NOTIFICATION_ID, notificationBuilder.build());
+			try {
+				render(applicationContext, exerciseData, file, progress -> {
+					notificationManager.notify(NOTIFICATION_ID, notificationBuilder.setProgress(PROGRESS_STEPS, progress, false).build());
+					return !isCanceled.get();
+				});
+				DialogUtil.displayToast(applicationContext, R.string.toast_audio_exported, file.getAbsolutePath());
+			}
+			catch (CancellationException e) {
+				deleteFile(file);
+				DialogUtil.displayToast(applicationContext, R.string.toast_audio_export_canceled);
+			}
+			catch (IOException | RuntimeException e) {
+				Log.e(Application.TAG, "Failed to export audio", e);
+				deleteFile(file);
+				DialogUtil.displayToast(applicationContext, R.string.toast_audio_export_failed);
+			}
+			finally {
+				notificationManager.cancel(NOTIFICATION_ID);
+				applicationContext.unregisterReceiver(cancelReceiver);
+			}
+		}, "SessionRenderer").start();
+	}
+
+	/**
+	 * Create the builder of the progress notification of the export.
+	 *
+	 * @param context The context.
+	 * @param name The name of the exercise.
+	 * @return The notification builder.
+	 */
+	private static NotificationCompat.Builder createNotificationBuilder(final Context context, final String name) {
+		ExerciseService.createNotificationChannel(context);
+		PendingIntent cancelIntent = PendingIntent.getBroadcast(context, 0,
+				new Intent(ACTION_CANCEL).setPackage(context.getPackageName()), PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+		return new NotificationCompat.Builder(context, ExerciseService.CHANNEL_ID)
+				.setSmallIcon(R.drawable.ic_notification)
+				.setContentTitle(context.getString(R.string.notification_audio_export, name))
+				.setOnlyAlertOnce(true)
+				.setOngoing(true)
+				.setProgress(PROGRESS_STEPS, 0, false)
+				.addAction(0, context.getString(R.string.button_cancel), cancelIntent);
+	}
+
+	/**
+	 * Delete a partially written file.
+	 *
+	 * @param file The file.
+	 */
+	private static void deleteFile(final File file) {
+		if (file.exists() && !file.delete()) {
+			Log.w(Application.TAG, "Failed to delete file " + file.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Render an exercise into a WAV file. This blocks until the file is written, so it must not be called on the main thread.
+	 *
+	 * @param context The context.
+	 * @param exerciseData The exercise data.
+	 * @param file The target file.
+	 * @param progressListener The listener for the progress of the render. May be null.
+	 * @throws IOException if the file cannot be written.
+	 * @throws IllegalArgumentException if the exercise exceeds the limits of the timeline or the size limit of WAV files.
+	 * @throws CancellationException if the render has been canceled by the progress listener.
+	 */
+	public static void render(final Context context, final ExerciseData exerciseData, final File file, final ProgressListener progressListener)
+			throws IOException {
+		ExerciseTimeline timeline = ExerciseTimeline.compile(exerciseData);
+		SoundType soundType = exerciseData.getSoundType();
+		long totalFrames = getFrameCount(timeline.getTotalDuration() + soundType.getRelaxDuration());
+		if (totalFrames * 2 > MAX_DATA_SIZE) {
+			throw new IllegalArgumentException("Exercise exceeds the size limit of WAV files");
+		}
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			randomAccessFile.setLength(0);
+			FileChannel channel = randomAccessFile.getChannel();
+			channel.write(createHeader(0));
+			SessionRenderer renderer = new SessionRenderer(context, channel, progressListener, totalFrames);
+			for (int i = 0; i < timeline.getStepCount(); i++) {
+				renderer.startCue(Cue.resolve(soundType, timeline.getStepType(i), timeline.getSoundDuration(i)), timeline.getStepType(i));
+				renderer.renderUntil(getFrameCount(timeline.getStartOffset(i + 1)));
+			}
+			renderer.startCue(Cue.resolve(soundType, StepType.RELAX, 0), StepType.RELAX);
+			renderer.renderUntil(totalFrames);
+			renderer.flush();
+			channel.position(0);
+			channel.write(createHeader(renderer.mRenderedFrames * 2));
+		}
+	}
+
+	/**
+	 * Get the number of output frames for a duration.
+	 *
+	 * @param duration The duration in ms.
+	 * @return The number of frames.
+	 */
+	private static long getFrameCount(final long duration) {
+		return duration * SAMPLE_RATE / TimeUnit.SECONDS.toMillis(1);
+	}
+
+	/**
+	 * Apply the cue of a step to the output, in the same way as the cue player does during playback.
+	 *
+	 * @param cue The cue.
+	 * @param stepType The step type.
+	 * @throws IOException if a sound cannot be decoded.
+	 */
+	private void startCue(final Cue cue, final StepType stepType) throws IOException {
+		switch (cue.getAction()) {
+		case PAUSE:
+			mIsPaused = true;
+			break;
+		case CONTINUE:
+			mIsPaused = false;
+			break;
+		case PLAY:
+			PcmSound sound = getSound(cue.getResourceId());
+			long frameCount = cue.getDuration() > 0 ? TimeStretcher.getFrameCount(sound, cue.getDuration()) : sound.getFrameCount();
+			mVoice = new PcmVoice(new TimeStretcher(sound, frameCount), SAMPLE_RATE);
+			mIsPaused = false;
+			break;
+		case SYNTHESIZE:
+			mVoice = new PcmVoice(new BreathSynthesizer(stepType, cue.getDuration()), SAMPLE_RATE);
+			mIsPaused = false;
+			break;
+		case NONE:
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Get a decoded sound, decoding it if it has not been used before.
+	 *
+	 * @param resourceId The sound resource.
+	 * @return The decoded sound.
+	 * @throws IOException if the resource cannot be decoded.
+	 */
+	private PcmSound getSound(final int resourceId) throws IOException {
+		PcmSound sound = mSounds.get(resourceId);
+		if (sound == null) {
+			sound = PcmDecoder.decode(mContext, resourceId);
+			mSounds.put(resourceId, sound);
+		}
+		return sound;
+	}
+
+	/**
+	 * Render the output up to a certain frame.
+	 *
+	 * @param endFrame The frame up to which the output is rendered.
+	 * @throws IOException if the file cannot be written.
+	 */
+	private void renderUntil(final long endFrame) throws IOException {
+		while (mRenderedFrames < endFrame) {
+			float value = 0;
+			if (mVoice != null && !mIsPaused) {
+				value = mVoice.next();
+				if (mVoice.isFinished()) {
+					mVoice = null;
+				}
+			}
+			mChunk.putShort((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value * Short.MAX_VALUE))));
+			mRenderedFrames++;
+			if (!mChunk.hasRemaining()) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Write the buffered output to the file, and report the progress.
+	 *
+	 * @throws IOException if the file cannot be written.
+	 * @throws CancellationException if the render has been canceled by the progress listener.
+	 */
+	private void flush() throws IOException {
+		mChunk.flip();
+		while (mChunk.hasRemaining()) {
+			mChannel.write(mChunk);
+		}
+		mChunk.clear();
+		int progress = (int) (mRenderedFrames * PROGRESS_STEPS / Math.max(1, mTotalFrames));
+		if (mProgressListener != null && progress != mReportedProgress) {
+			mReportedProgress = progress;
+			if (!mProgressListener.onProgress(progress)) {
+				throw new CancellationException("Render canceled");
+			}
+		}
+	}
+
+	/**
+	 * Create the header of a mono 16 bit PCM WAV file. The sizes are stored as unsigned 32 bit values, so the data size must not exceed
+	 * MAX_DATA_SIZE.
+	 *
+	 * @param dataSize The size of the audio data in bytes.
+	 * @return The header.
+	 */
+	private static ByteBuffer createHeader(final long dataSize) {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(new byte[] {'R', 'I', 'F', 'F'}).putInt((int) (HEADER_SIZE - 8 + dataSize)).put(new byte[] {'W', 'A', 'V', 'E'}); // MAGIC_NUMBER
+		header.put(new byte[] {'f', 'm', 't', ' '}).putInt(16).putShort((short) 1).putShort((short) 1); // MAGIC_NUMBER
+		header.putInt(SAMPLE_RATE).putInt(SAMPLE_RATE * 2).putShort((short) 2).putShort((short) 16); // MAGIC_NUMBER
+		header.put(new byte[] {'d', 'a', 't', 'a'}).putInt((int) dataSize);
+		header.flip();
+		return header;
+	}
+
+	/**
+	 * A listener for the progress of a render.
+	 */
+	public interface ProgressListener {
+		/**
+		 * Callback on progress of the render.
+		 *
+		 * @param progress The progress in percent.
+		 * @return false if the render should be canceled.
+		 */
+		boolean onProgress(int progress);
+	}
+}
@@ -2,26 +2,52 @@ package de.jeisfeld.breathtraining.sound;
 
 import android.content.Context;
 import android.content.res.AssetFileDescriptor;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import java.io.IOException;
 
 import de.jeisfeld.breathtraining.Application;
+import de.jeisfeld.breathtraining.clock.AndroidClock;
+import de.jeisfeld.breathtraining.clock.Clock;
 import de.jeisfeld.breathtraining.exercise.data.StepType;
 import de.jeisfeld.breathtraining.sound.BreathSound.BreathSoundInfo;
 
 /**
- * A singleton media player used by the app.
+ * A singleton media player used by the app. Sounds are prepared asynchronously and started by a handler, so that the calling thread is never
+ * blocked by decoder setup.
  */
 public class SoundPlayer extends android.media.MediaPlayer {
 	/**
 	 * The media player instance.
 	 */
 	private static SoundPlayer mInstance = null;
+	/**
+	 * The clock used for delays.
+	 */
+	private final Clock mClock = AndroidClock.getInstance();
+	/**
+	 * The handler starting prepared sounds at their start time.
+	 */
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	/**
+	 * The task starting the prepared sound.
+	 */
+	private final Runnable mStartTask = this::start;
 	/**
 	 * The triggerer of the media play.
 	 */
 	private MediaTrigger mTrigger;
+	/**
+	 * Flag indicating if the current sound is prepared.
+	 */
+	private boolean mIsPrepared = false;
+	/**
+	 * The generation of the start request. It is incremented by play, pause and stop, so that a sound prepared afterwards is not started.
+	 * Guarded by this.
+	 */
+	private int mGeneration = 0;
 
 	/**
 	 * Get the media player singleton.
@@ -56,12 +82,7 @@ public class SoundPlayer extends android.media.MediaPlayer {
 	 * @param stepType The step type.
 	 */
 	public void play(final Context context, final MediaTrigger trigger, final SoundType soundType, final StepType stepType) {
-		try {
-			play(context, trigger, soundType, stepType, 0, 0);
-		}
-		catch (InterruptedException e) {
-			// ignore.
-		}
+		play(context, trigger, soundType, stepType, 0, 0);
 	}
 
 	/**
@@ -75,7 +96,7 @@ public class SoundPlayer extends android.media.MediaPlayer {
 	 * @param duration The sound duration in ms.
 	 */
 	public void play(final Context context, final MediaTrigger trigger, final SoundType soundType, final StepType stepType,
-			final long delay, final long duration) throws InterruptedException {
+			final long delay, final long duration) {
 		if (soundType == SoundType.BREATH && duration > 0) {
 			playBreath(context, trigger, stepType, delay, duration);
 		}
@@ -97,12 +118,12 @@ public class SoundPlayer extends android.media.MediaPlayer {
 	 * @param delay A delay in ms.
 	 * @param speed A speed factor.
 	 */
-	private synchronized void play(final Context context, final MediaTrigger trigger, final int resourceId, final long delay, final float speed)
-			throws InterruptedException {
-		final long startTimeStamp = System.currentTimeMillis();
+	private synchronized void play(final Context context, final MediaTrigger trigger, final int resourceId, final long delay, final float speed) {
+		final long startTime = mClock.now() + delay;
 		mTrigger = trigger;
 		stop();
 		reset();
+		mIsPrepared = false;
 		if (context == null || resourceId == 0) {
 			return;
 		}
@@ -114,18 +135,21 @@ public class SoundPlayer extends android.media.MediaPlayer {
 			}
 			setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
 			afd.close();
-			prepare();
+			final int generation = mGeneration;
+			setOnPreparedListener(player -> {
+				synchronized (this) {
+					mIsPrepared = true;
+					setPlaybackParams(getPlaybackParams().setSpeed(speed));
+					if (generation == mGeneration) {
+						mHandler.postAtTime(mStartTask, startTime);
+					}
+				}
+			});
+			prepareAsync();
 		}
-		catch (IOException | IllegalArgumentException | SecurityException ex) {
+		catch (IOException | IllegalArgumentException | IllegalStateException | SecurityException ex) {
 			Log.e(Application.TAG, "Failed to open sound resource", ex);
-			return;
 		}
-		long passedTime = System.currentTimeMillis() - startTimeStamp;
-		if (passedTime < delay) {
-			Thread.sleep(delay - passedTime);
-		}
-		setPlaybackParams(getPlaybackParams().setSpeed(speed));
-		start();
 	}
 
 	/**
@@ -137,13 +161,16 @@ public class SoundPlayer extends android.media.MediaPlayer {
 	 * @param delay A delay in ms.
 	 * @param duration The sound duration in ms.
 	 */
-	private void playBreath(final Context context, final MediaTrigger trigger, final StepType stepType, final long delay, final long duration)
-			throws InterruptedException {
+	private void playBreath(final Context context, final MediaTrigger trigger, final StepType stepType, final long delay, final long duration) {
 		if (stepType.isHold()) {
 			pause();
 		}
 		else if (stepType.isContinue()) {
-			start();
+			synchronized (this) {
+				if (mIsPrepared) {
+					start();
+				}
+			}
 		}
 		else {
 			BreathSoundInfo breathSoundInfo = BreathSound.getBreathSoundInfo(stepType, duration);
@@ -158,6 +185,10 @@ public class SoundPlayer extends android.media.MediaPlayer {
 	 */
 	@Override
 	public void pause() {
+		synchronized (this) {
+			mGeneration++;
+			mHandler.removeCallbacks(mStartTask);
+		}
 		if (isPlaying()) {
 			super.pause();
 		}
@@ -168,6 +199,10 @@ public class SoundPlayer extends android.media.MediaPlayer {
 	 */
 	@Override
 	public void stop() {
+		synchronized (this) {
+			mGeneration++;
+			mHandler.removeCallbacks(mStartTask);
+		}
 		if (isPlaying()) {
 			super.stop();
 		}
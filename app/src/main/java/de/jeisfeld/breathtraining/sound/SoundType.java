@@ -18,7 +18,11 @@ public enum SoundType {
 	/**
 	 * Breath.
 	 */
-	BREATH(R.raw.br_inhale, R.raw.br_exhale, R.raw.br_hold, R.raw.br_relax, 6000);
+	BREATH(R.raw.br_inhale, R.raw.br_exhale, R.raw.br_hold, R.raw.br_relax, 6000),
+	/**
+	 * Synthesized breath. Only sounds without given duration use the recorded breath sounds.
+	 */
+	SYNTHESIZED(R.raw.br_inhale, R.raw.br_exhale, R.raw.br_hold, R.raw.br_relax, 6000);
 
 	/**
 	 * The sound resource for inhale.
@@ -0,0 +1,219 @@
+package de.jeisfeld.breathtraining.sound;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time stretching of a decoded sound to an exact target length without changing the pitch, using WSOLA (waveform similarity based overlap
+ * add). The output is rendered incrementally in chunks of one synthesis hop, so that it can be streamed.
+ *
+ * <p>Each output hop is the overlap-add of Hann windowed input frames. The input frame is taken around its nominal position (scaled by the
+ * stretch ratio), shifted within a search range to the position which is most similar to the natural continuation of the previous frame.
+ * Similarity is measured by normalized cross-correlation, so that it does not depend on the loudness of the candidate.
+ */
+final class TimeStretcher implements PcmSource {
+	/**
+	 * The duration of the analysis window in ms.
+	 */
+	private static final int WINDOW_DURATION = 30;
+	/**
+	 * The step width used when comparing waveforms, trading accuracy for speed.
+	 */
+	private static final int CORRELATION_STRIDE = 2;
+
+	/**
+	 * The source samples, interleaved by channel.
+	 */
+	private final ShortBuffer mSource;
+	/**
+	 * The sample rate.
+	 */
+	private final int mSampleRate;
+	/**
+	 * The number of channels.
+	 */
+	private final int mChannelCount;
+	/**
+	 * The number of source frames.
+	 */
+	private final int mSourceFrames;
+	/**
+	 * The number of target frames.
+	 */
+	private final long mTargetFrames;
+	/**
+	 * The synthesis hop in frames, which is half the window length.
+	 */
+	private final int mHop;
+	/**
+	 * The maximum shift of input frames from their nominal position in frames.
+	 */
+	private final int mSearchRange;
+	/**
+	 * The analysis hop in frames, i.e. the distance of nominal input positions.
+	 */
+	private final double mAnalysisHop;
+	/**
+	 * The Hann window.
+	 */
+	private final float[] mWindow;
+	/**
+	 * The second half of the last windowed frame, still to be added to the next output hop.
+	 */
+	private final float[] mOverlap;
+	/**
+	 * The mono reference waveform of the natural continuation of the last frame.
+	 */
+	private final float[] mReference;
+	/**
+	 * The number of rendered hops.
+	 */
+	private long mHopCount = 0;
+	/**
+	 * The input position of the last frame. Negative before the first frame.
+	 */
+	private int mLastOffset = -1;
+	/**
+	 * The number of rendered frames.
+	 */
+	private long mRenderedFrames = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param sound The sound to be stretched.
+	 * @param targetFrames The number of frames of the stretched sound.
+	 */
+	TimeStretcher(final PcmSound sound, final long targetFrames) {
+		mSource = sound.getData().order(ByteOrder.nativeOrder()).asShortBuffer();
+		mSampleRate = sound.getSampleRate();
+		mChannelCount = sound.getChannelCount();
+		mSourceFrames = sound.getFrameCount();
+		mTargetFrames = targetFrames;
+		mHop = Math.max(1, (int) (sound.getSampleRate() * WINDOW_DURATION / TimeUnit.SECONDS.toMillis(1) / 2));
+		mSearchRange = mHop / 2;
+		mAnalysisHop = targetFrames <= 0 ? 0 : mHop * (double) mSourceFrames / targetFrames;
+
+		mWindow = new float[2 * mHop];
+		for (int i = 0; i < mWindow.length; i++) {
+			// Periodic Hann window, so that windows overlapping by half add up to 1.
+			mWindow[i] = (float) (0.5 - 0.5 * Math.cos(Math.PI * i / mHop)); // MAGIC_NUMBER
+		}
+		mOverlap = new float[mHop * mChannelCount];
+		mReference = new float[(mHop + CORRELATION_STRIDE - 1) / CORRELATION_STRIDE];
+	}
+
+	/**
+	 * Get the number of frames for a duration of a sound.
+	 *
+	 * @param sound The sound.
+	 * @param duration The duration in ms.
+	 * @return The number of frames.
+	 */
+	static long getFrameCount(final PcmSound sound, final long duration) {
+		return duration * sound.getSampleRate() / TimeUnit.SECONDS.toMillis(1);
+	}
+
+	@Override
+	public int getSampleRate() {
+		return mSampleRate;
+	}
+
+	@Override
+	public int getChannelCount() {
+		return mChannelCount;
+	}
+
+	@Override
+	public int getChunkSize() {
+		return mHop * mChannelCount * 2;
+	}
+
+	@Override
+	public boolean render(final ByteBuffer target) {
+		if (mRenderedFrames >= mTargetFrames) {
+			return false;
+		}
+		int offset = findOffset();
+		int frames = (int) Math.min(mHop, mTargetFrames - mRenderedFrames);
+		ShortBuffer output = target.order(ByteOrder.nativeOrder()).asShortBuffer();
+		for (int i = 0; i < mHop; i++) {
+			for (int channel = 0; channel < mChannelCount; channel++) {
+				int index = i * mChannelCount + channel;
+				float value = mOverlap[index] + mWindow[i] * getSample(offset + i, channel);
+				mOverlap[index] = mWindow[mHop + i] * getSample(offset + mHop + i, channel);
+				if (i < frames) {
+					output.put((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value))));
+				}
+			}
+		}
+		target.position(target.position() + frames * mChannelCount * 2);
+		mLastOffset = offset;
+		mHopCount++;
+		mRenderedFrames += frames;
+		return true;
+	}
+
+	/**
+	 * Find the input position of the next frame.
+	 *
+	 * @return The input position.
+	 */
+	private int findOffset() {
+		int nominal = (int) Math.round(mHopCount * mAnalysisHop);
+		if (mLastOffset < 0) {
+			return nominal;
+		}
+		int natural = mLastOffset + mHop;
+		for (int i = 0; i < mReference.length; i++) {
+			mReference[i] = getMonoSample(natural + i * CORRELATION_STRIDE);
+		}
+		int minOffset = Math.max(0, nominal - mSearchRange);
+		int maxOffset = Math.max(minOffset, Math.min(nominal + mSearchRange, mSourceFrames - 2 * mHop));
+		int bestOffset = nominal;
+		double bestSimilarity = Double.NEGATIVE_INFINITY;
+		for (int offset = minOffset; offset <= maxOffset; offset++) {
+			double correlation = 0;
+			double energy = 0;
+			for (int i = 0; i < mReference.length; i++) {
+				float sample = getMonoSample(offset + i * CORRELATION_STRIDE);
+				correlation += mReference[i] * sample;
+				energy += sample * sample;
+			}
+			// Normalize by the candidate energy, so that the best matching waveform wins rather than the loudest one.
+			double similarity = energy > 0 ? correlation / Math.sqrt(energy) : 0;
+			if (similarity > bestSimilarity) {
+				bestSimilarity = similarity;
+				bestOffset = offset;
+			}
+		}
+		return bestOffset;
+	}
+
+	/**
+	 * Get a source sample. Outside the source, this is 0.
+	 *
+	 * @param frame The frame.
+	 * @param channel The channel.
+	 * @return The sample.
+	 */
+	private float getSample(final int frame, final int channel) {
+		return frame < 0 || frame >= mSourceFrames ? 0 : mSource.get(frame * mChannelCount + channel);
+	}
+
+	/**
+	 * Get the mono mixdown of a source frame. Outside the source, this is 0.
+	 *
+	 * @param frame The frame.
+	 * @return The sum of the samples of all channels.
+	 */
+	private float getMonoSample(final int frame) {
+		float sum = 0;
+		for (int channel = 0; channel < mChannelCount; channel++) {
+			sum += getSample(frame, channel);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,277 @@
+package de.jeisfeld.breathtraining.exercise.service;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import de.jeisfeld.breathtraining.clock.VirtualScheduler;
+import de.jeisfeld.breathtraining.exercise.data.CombinedExerciseData;
+import de.jeisfeld.breathtraining.exercise.data.ExerciseData;
+import de.jeisfeld.breathtraining.exercise.data.ExerciseTimeline;
+import de.jeisfeld.breathtraining.exercise.data.HoldPosition;
+import de.jeisfeld.breathtraining.exercise.data.PlayStatus;
+import de.jeisfeld.breathtraining.exercise.data.SingleExerciseData;
+import de.jeisfeld.breathtraining.exercise.data.StandardExerciseData;
+import de.jeisfeld.breathtraining.exercise.data.StepType;
+import de.jeisfeld.breathtraining.sound.SoundType;
+
+/**
+ * Headless simulator running exercises through the real step generation and playback engine on a plain JVM, in virtual time.
+ *
+ * <p>Usage: ExerciseSimulator [-steps] [-speedup factor] file...
+ *
+ * <p>Each file is a properties file defining one exercise. It contains the keys "name" and "soundType" (NONE, WORDS, BREATH, SYNTHESIZED) and
+ * for each part n (starting with 1) the keys "exercise.n.repetitions", "exercise.n.breathStartDuration", "exercise.n.breathEndDuration",
+ * "exercise.n.inOutRelation", "exercise.n.holdBreathIn", "exercise.n.holdInStartDuration", "exercise.n.holdInEndDuration",
+ * "exercise.n.holdInPosition", "exercise.n.holdBreathOut", "exercise.n.holdOutStartDuration", "exercise.n.holdOutEndDuration",
+ * "exercise.n.holdOutPosition" and "exercise.n.holdVariation". Durations are in ms. An exercise with more than one part is simulated as
+ * combined exercise.
+ */
+public final class ExerciseSimulator implements ExerciseEngine.EngineCallback {
+	/**
+	 * The prefix of the keys of exercise parts.
+	 */
+	private static final String PART_PREFIX = "exercise.";
+
+	/**
+	 * The output stream.
+	 */
+	private final PrintStream mOut;
+	/**
+	 * Flag indicating if all steps should be printed.
+	 */
+	private final boolean mPrintSteps;
+	/**
+	 * The speed-up factor of virtual time compared to real time.
+	 */
+	private final double mSpeedUp;
+	/**
+	 * The scheduler of the running simulation.
+	 */
+	private VirtualScheduler mScheduler = null;
+	/**
+	 * The engine of the running simulation.
+	 */
+	private ExerciseEngine mEngine = null;
+	/**
+	 * The latch signalling the end of the running simulation.
+	 */
+	private CountDownLatch mEndLatch = null;
+	/**
+	 * The number of steps of the running simulation.
+	 */
+	private int mStepCount = 0;
+	/**
+	 * The virtual time when the last step of the running simulation started.
+	 */
+	private long mLastStepTime = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out        The output stream.
+	 * @param printSteps Flag indicating if all steps should be printed.
+	 * @param speedUp    The speed-up factor of virtual time compared to real time.
+	 */
+	private ExerciseSimulator(final PrintStream out, final boolean printSteps, final double speedUp) {
+		mOut = out;
+		mPrintSteps = printSteps;
+		mSpeedUp = speedUp;
+	}
+
+	/**
+	 * Main method.
+	 *
+	 * @param args The command line arguments.
+	 */
+	public static void main(final String[] args) {
+		boolean printSteps = false;
+		double speedUp = Double.POSITIVE_INFINITY;
+		List<File> files = new ArrayList<>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if ("-steps".equals(args[i])) {
+					printSteps = true;
+				}
+				else if ("-speedup".equals(args[i])) {
+					speedUp = Double.parseDouble(args[++i]);
+				}
+				else {
+					files.add(new File(args[i]));
+				}
+			}
+		}
+		catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+			files.clear();
+		}
+		if (files.isEmpty()) {
+			System.err.println("Usage: ExerciseSimulator [-steps] [-speedup factor] file...");
+			System.exit(1);
+		}
+
+		ExerciseSimulator simulator = new ExerciseSimulator(System.out, printSteps, speedUp);
+		boolean isSuccess = true;
+		for (File file : files) {
+			try {
+				simulator.simulate(file.getName(), readExercise(file));
+			}
+			catch (IOException | IllegalArgumentException e) {
+				System.err.println("Failed to simulate " + file + ": " + e);
+				isSuccess = false;
+			}
+			catch (InterruptedException e) {
+				return;
+			}
+		}
+		System.exit(isSuccess ? 0 : 1);
+	}
+
+	/**
+	 * Read an exercise from a properties file.
+	 *
+	 * @param file The file.
+	 * @return The exercise data.
+	 * @throws IOException if the file cannot be read.
+	 */
+	private static ExerciseData readExercise(final File file) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = new FileReader(file)) {
+			properties.load(reader);
+		}
+		String name = properties.getProperty("name", file.getName());
+		SoundType soundType = SoundType.valueOf(properties.getProperty("soundType", SoundType.WORDS.name()));
+
+		List<SingleExerciseData> parts = new ArrayList<>();
+		int partNumber = 1;
+		while (properties.containsKey(PART_PREFIX + partNumber + ".repetitions")) {
+			String prefix = PART_PREFIX + partNumber + ".";
+			long breathStartDuration = Long.parseLong(properties.getProperty(prefix + "breathStartDuration"));
+			long holdInStartDuration = Long.parseLong(properties.getProperty(prefix + "holdInStartDuration", "0"));
+			long holdOutStartDuration = Long.parseLong(properties.getProperty(prefix + "holdOutStartDuration", "0"));
+			parts.add(new StandardExerciseData(name,
+					Integer.parseInt(properties.getProperty(prefix + "repetitions")),
+					breathStartDuration,
+					Long.parseLong(properties.getProperty(prefix + "breathEndDuration", Long.toString(breathStartDuration))),
+					Double.parseDouble(properties.getProperty(prefix + "inOutRelation", "0.5")),
+					Boolean.parseBoolean(properties.getProperty(prefix + "holdBreathIn", "false")),
+					holdInStartDuration,
+					Long.parseLong(properties.getProperty(prefix + "holdInEndDuration", Long.toString(holdInStartDuration))),
+					HoldPosition.valueOf(properties.getProperty(prefix + "holdInPosition", HoldPosition.ONLY_END.name())),
+					Boolean.parseBoolean(properties.getProperty(prefix + "holdBreathOut", "false")),
+					holdOutStartDuration,
+					Long.parseLong(properties.getProperty(prefix + "holdOutEndDuration", Long.toString(holdOutStartDuration))),
+					HoldPosition.valueOf(properties.getProperty(prefix + "holdOutPosition", HoldPosition.ONLY_END.name())),
+					Double.parseDouble(properties.getProperty(prefix + "holdVariation", "0")),
+					soundType, PlayStatus.STOPPED, 0));
+			partNumber++;
+		}
+		if (parts.isEmpty()) {
+			throw new IllegalArgumentException("No exercise defined");
+		}
+		return parts.size() == 1 ? parts.get(0) : CombinedExerciseData.fromSingleExerciseData(name, parts, soundType);
+	}
+
+	/**
+	 * Simulate an exercise.
+	 *
+	 * @param label        The label of the exercise in the output.
+	 * @param exerciseData The exercise data.
+	 * @throws InterruptedException if interrupted while waiting for the end of the simulation.
+	 */
+	private void simulate(final String label, final ExerciseData exerciseData) throws InterruptedException {
+		long compileStart = System.nanoTime();
+		ExerciseTimeline timeline = ExerciseTimeline.compile(exerciseData);
+		long compileTime = System.nanoTime() - compileStart;
+		mOut.println(String.format(Locale.ENGLISH, "%s: \"%s\", %d repetitions, %d steps, duration %dms, compiled in %.3fms",
+				label, exerciseData.getName(), timeline.getTotalRepetitions(), timeline.getStepCount(), timeline.getTotalDuration(),
+				compileTime / (double) TimeUnit.MILLISECONDS.toNanos(1)));
+
+		mScheduler = new VirtualScheduler("ExerciseSimulator", 0, mSpeedUp);
+		mEndLatch = new CountDownLatch(1);
+		mStepCount = 0;
+		mEngine = new ExerciseEngine(mScheduler, this);
+		long runStart = System.nanoTime();
+		mEngine.start(exerciseData, 1);
+		mEndLatch.await();
+		long runTime = System.nanoTime() - runStart;
+		mOut.println(String.format(Locale.ENGLISH, "  played %d steps, last step at %dms, ended at %dms virtual time, run in %.3fms",
+				mStepCount, mLastStepTime, mScheduler.now(), runTime / (double) TimeUnit.MILLISECONDS.toNanos(1)));
+		mEngine.quit();
+	}
+
+	@Override
+	public void onExerciseStarted(final ExerciseData exerciseData, final ExerciseTimeline timeline) {
+		// nothing to do
+	}
+
+	@Override
+	public void playSound(final SoundType soundType, final StepType stepType, final long soundDuration, final long startTime,
+			final long stepTime, final int cueId) {
+		// no sound in simulation, so it is regarded as started at its start time
+		mEngine.reportAudioStart(cueId, startTime, Math.max(mScheduler.now(), startTime));
+	}
+
+	@Override
+	public void prepareSound(final SoundType soundType, final StepType stepType, final long soundDuration) {
+		// no sound in simulation
+	}
+
+	@Override
+	public long getAudioLatency() {
+		return 0;
+	}
+
+	@Override
+	public void pauseSound() {
+		// no sound in simulation
+	}
+
+	@Override
+	public void resumeSound() {
+		// no sound in simulation
+	}
+
+	@Override
+	public void onStepStarted(final PlayStatus playStatus, final ExerciseTimeline timeline, final int stepIndex,
+							  final ExerciseData exerciseData) {
+		if (playStatus != PlayStatus.PLAYING || stepIndex >= timeline.getStepCount()) {
+			return;
+		}
+		mStepCount++;
+		mLastStepTime = mScheduler.now();
+		if (mPrintSteps) {
+			mOut.println(String.format(Locale.ENGLISH, "  %10d %-16s %7dms repetition %d/%d part %d", mLastStepTime,
+					timeline.getStepType(stepIndex), timeline.getDuration(stepIndex), timeline.getRepetition(stepIndex),
+					timeline.getTotalRepetitions(), timeline.getPartNumber(stepIndex)));
+		}
+	}
+
+	@Override
+	public void onSessionTelemetry(final OnsetTelemetry telemetry) {
+		for (String line : telemetry.getSummary()) {
+			mOut.println("  " + line);
+		}
+	}
+
+	@Override
+	public void onExerciseEnded(final ExerciseData exerciseData, final int startId) {
+		mEndLatch.countDown();
+	}
+
+	@Override
+	public void log(final int priority, final String message) {
+		if (priority >= Log.WARN) {
+			mOut.println("  " + message);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package de.jeisfeld.breathtraining.clock;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the virtual time scheduler.
+ */
+public class VirtualSchedulerTest {
+	/**
+	 * The maximum time to wait for the scheduler thread in seconds.
+	 */
+	private static final long TIMEOUT = 5;
+
+	/**
+	 * The scheduler under test.
+	 */
+	private VirtualScheduler mScheduler;
+
+	/**
+	 * Quit the scheduler after each test.
+	 */
+	@After
+	public void tearDown() {
+		if (mScheduler != null) {
+			mScheduler.quit();
+		}
+	}
+
+	/**
+	 * Tasks run in the order of their time, and tasks with the same time in the order of scheduling. With infinite speed-up, virtual time
+	 * jumps to the time of each task. The tasks are posted from the scheduler thread, as otherwise the first one could already run before
+	 * the others are posted.
+	 *
+	 * @throws InterruptedException if interrupted.
+	 */
+	@Test
+	public void testOrderAndVirtualTime() throws InterruptedException {
+		mScheduler = new VirtualScheduler("test", 1000, Double.POSITIVE_INFINITY);
+		List<String> events = new ArrayList<>();
+		CountDownLatch latch = new CountDownLatch(1);
+		mScheduler.post(() -> {
+			mScheduler.postAt(() -> events.add("c@" + mScheduler.now()), 5000);
+			mScheduler.postAt(() -> events.add("a@" + mScheduler.now()), 2000);
+			mScheduler.postAt(() -> events.add("b1@" + mScheduler.now()), 3000);
+			mScheduler.postAt(() -> events.add("b2@" + mScheduler.now()), 3000);
+			mScheduler.postAt(latch::countDown, 6000);
+		});
+		assertTrue(latch.await(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("a@2000", "b1@3000", "b2@3000", "c@5000"), events);
+		assertEquals(6000, mScheduler.now());
+	}
+
+	/**
+	 * Tasks posted by a task for an earlier time do not move virtual time backwards.
+	 *
+	 * @throws InterruptedException if interrupted.
+	 */
+	@Test
+	public void testPastTaskRunsAtCurrentTime() throws InterruptedException {
+		mScheduler = new VirtualScheduler("test", 0, Double.POSITIVE_INFINITY);
+		long[] time = new long[1];
+		CountDownLatch latch = new CountDownLatch(1);
+		mScheduler.postAt(() -> mScheduler.postAt(() -> {
+			time[0] = mScheduler.now();
+			latch.countDown();
+		}, 100), 500);
+		assertTrue(latch.await(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals(500, time[0]);
+	}
+
+	/**
+	 * Removed tasks do not run.
+	 *
+	 * @throws InterruptedException if interrupted.
+	 */
+	@Test
+	public void testRemove() throws InterruptedException {
+		mScheduler = new VirtualScheduler("test", 0, Double.POSITIVE_INFINITY);
+		List<String> events = new ArrayList<>();
+		CountDownLatch latch = new CountDownLatch(1);
+		Runnable removedTask = () -> events.add("removed");
+		mScheduler.post(() -> {
+			mScheduler.postAt(() -> {
+				events.add("first");
+				mScheduler.remove(removedTask);
+			}, 100);
+			mScheduler.postAt(removedTask, 200);
+			mScheduler.postAt(removedTask, 300);
+			mScheduler.postAt(latch::countDown, 400);
+		});
+		assertTrue(latch.await(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("first"), events);
+	}
+
+	/**
+	 * Sleeping on the scheduler thread lets virtual time pass without waiting in real time.
+	 *
+	 * @throws InterruptedException if interrupted.
+	 */
+	@Test
+	public void testSleepOnSchedulerThread() throws InterruptedException {
+		mScheduler = new VirtualScheduler("test", 0, Double.POSITIVE_INFINITY);
+		long[] time = new long[1];
+		CountDownLatch latch = new CountDownLatch(1);
+		mScheduler.post(() -> {
+			try {
+				mScheduler.sleep(60000);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			time[0] = mScheduler.now();
+			latch.countDown();
+		});
+		assertTrue(latch.await(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals(60000, time[0]);
+	}
+
+	/**
+	 * With finite speed-up, virtual time passes faster than real time by the speed-up factor.
+	 *
+	 * @throws InterruptedException if interrupted.
+	 */
+	@Test
+	public void testFiniteSpeedUp() throws InterruptedException {
+		mScheduler = new VirtualScheduler("test", 0, 100);
+		long realStart = System.nanoTime();
+		mScheduler.sleep(5000);
+		long realDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - realStart);
+		assertTrue("Virtual time " + mScheduler.now(), mScheduler.now() >= 5000);
+		assertTrue("Real duration " + realDuration, realDuration >= 40 && realDuration < 2000);
+	}
+
+	/**
+	 * A speed-up which is not positive is rejected.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSpeedUp() {
+		mScheduler = new VirtualScheduler("test", 0, 0);
+	}
+}
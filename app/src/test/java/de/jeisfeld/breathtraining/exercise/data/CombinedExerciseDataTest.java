@@ -0,0 +1,137 @@
+package de.jeisfeld.breathtraining.exercise.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.jeisfeld.breathtraining.sound.SoundType;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the repetition index of combined exercises.
+ */
+public class CombinedExerciseDataTest {
+	/**
+	 * The total repetitions and the parts of the repetitions follow the parts, including parts without repetitions.
+	 */
+	@Test
+	public void testRepetitions() {
+		CombinedExerciseData exerciseData = createCombinedExercise(2, 0, 3, 1);
+		assertEquals(6, exerciseData.getRepetitions());
+		assertParts(exerciseData, 2, 0, 3, 1);
+	}
+
+	/**
+	 * The repetition index is updated when parts are added, replaced, moved and removed via the list view.
+	 */
+	@Test
+	public void testChanges() {
+		CombinedExerciseData exerciseData = createCombinedExercise(2, 3);
+		assertEquals(5, exerciseData.getRepetitions());
+		List<SingleExerciseData> parts = exerciseData.getSingleExerciseData();
+
+		parts.add(createExercise(4));
+		assertEquals(9, exerciseData.getRepetitions());
+		assertParts(exerciseData, 2, 3, 4);
+
+		parts.add(0, createExercise(1));
+		assertParts(exerciseData, 1, 2, 3, 4);
+
+		parts.set(2, createExercise(5));
+		assertEquals(12, exerciseData.getRepetitions());
+		assertParts(exerciseData, 1, 2, 5, 4);
+
+		Collections.swap(parts, 1, 3);
+		assertParts(exerciseData, 1, 4, 5, 2);
+
+		parts.remove(1);
+		assertEquals(8, exerciseData.getRepetitions());
+		assertParts(exerciseData, 1, 5, 2);
+	}
+
+	/**
+	 * The repetition index is updated when a part is removed by its id.
+	 */
+	@Test
+	public void testRemoveById() {
+		CombinedExerciseData exerciseData = createCombinedExercise(2, 3, 4);
+		List<SingleExerciseData> parts = exerciseData.getSingleExerciseData();
+		for (int i = 0; i < parts.size(); i++) {
+			parts.get(i).setId(i + 1);
+		}
+		exerciseData.getRepetitions();
+		exerciseData.removeSingleExerciseOfId(2);
+		assertEquals(6, exerciseData.getRepetitions());
+		assertParts(exerciseData, 2, 4);
+		exerciseData.removeSingleExerciseOfId(1);
+		assertParts(exerciseData, 4);
+	}
+
+	/**
+	 * The step count of a range of repetitions is the sum over the parts covered by the range.
+	 */
+	@Test
+	public void testCountSteps() {
+		CombinedExerciseData exerciseData = createCombinedExercise(2, 0, 3, 1);
+		// Each repetition has 2 steps.
+		assertEquals(12, exerciseData.countSteps(1, 7));
+		assertEquals(6, exerciseData.countSteps(2, 5));
+		assertEquals(2, exerciseData.countSteps(6, 7));
+		assertEquals(0, exerciseData.countSteps(7, 9));
+	}
+
+	/**
+	 * Create a standard exercise without holds, having 2 steps per repetition.
+	 *
+	 * @param repetitions The number of repetitions.
+	 * @return The exercise.
+	 */
+	private static SingleExerciseData createExercise(final int repetitions) {
+		return ExerciseTimelineTest.createExercise(repetitions, 4000, false, HoldPosition.ONLY_END);
+	}
+
+	/**
+	 * Create a combined exercise.
+	 *
+	 * @param repetitions The number of repetitions of the parts.
+	 * @return The combined exercise.
+	 */
+	private static CombinedExerciseData createCombinedExercise(final int... repetitions) {
+		List<SingleExerciseData> parts = new ArrayList<>();
+		for (int partRepetitions : repetitions) {
+			parts.add(createExercise(partRepetitions));
+		}
+		return CombinedExerciseData.fromSingleExerciseData("Test", parts, SoundType.BREATH);
+	}
+
+	/**
+	 * Assert that the repetitions of a combined exercise belong to parts with the given numbers of repetitions.
+	 *
+	 * @param exerciseData The combined exercise.
+	 * @param repetitions  The expected number of repetitions of the parts.
+	 */
+	private static void assertParts(final CombinedExerciseData exerciseData, final int... repetitions) {
+		assertEquals(Arrays.stream(repetitions).sum(), exerciseData.getRepetitions());
+		StepBuffer steps = new StepBuffer();
+		int repetition = 1;
+		for (int part = 0; part < repetitions.length; part++) {
+			for (int partRepetition = 1; partRepetition <= repetitions[part]; partRepetition++) {
+				steps.clear();
+				exerciseData.addStepsForRepetition(repetition, steps);
+				RepetitionData repetitionData = steps.getRepetition(0);
+				assertEquals(repetition, repetitionData.getCurrentRepetition());
+				assertEquals(part + 1, repetitionData.getCurrentPartNumber());
+				assertEquals(partRepetition, repetitionData.getCurrentPartRepetition());
+				assertEquals(repetitions[part], repetitionData.getTotalPartRepetitions());
+				repetition++;
+			}
+		}
+		steps.clear();
+		exerciseData.addStepsForRepetition(repetition, steps);
+		assertEquals(0, steps.size());
+	}
+}
@@ -0,0 +1,136 @@
+package de.jeisfeld.breathtraining.exercise.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import de.jeisfeld.breathtraining.sound.SoundType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the compiled timeline of an exercise.
+ */
+public class ExerciseTimelineTest {
+	/**
+	 * A plain exercise is compiled into inhale and exhale steps with consecutive start offsets.
+	 */
+	@Test
+	public void testSingleExercise() {
+		ExerciseTimeline timeline = ExerciseTimeline.compile(createExercise(3, 4000, false, HoldPosition.ONLY_END));
+		assertEquals(3, timeline.getTotalRepetitions());
+		assertEquals(6, timeline.getStepCount());
+		assertEquals(12000, timeline.getTotalDuration());
+		for (int i = 0; i < timeline.getStepCount(); i++) {
+			assertEquals(i % 2 == 0 ? StepType.INHALE : StepType.EXHALE, timeline.getStepType(i));
+			assertEquals(2000, timeline.getDuration(i));
+			assertEquals(2000L * i, timeline.getStartOffset(i));
+			assertEquals(i / 2 + 1, timeline.getRepetition(i));
+			assertEquals(1, timeline.getPartNumber(i));
+			assertEquals(i / 2 + 1, timeline.getPartRepetition(i));
+			assertEquals(3, timeline.getTotalPartRepetitions(i));
+		}
+	}
+
+	/**
+	 * The packed steps hold the same values as the single accessors.
+	 */
+	@Test
+	public void testPackedStep() {
+		ExerciseTimeline timeline = ExerciseTimeline.compile(createExercise(2, 6000, true, HoldPosition.ONE_INTERMITTENT));
+		for (int i = 0; i < timeline.getStepCount(); i++) {
+			long packedStep = timeline.getPackedStep(i);
+			assertEquals(timeline.getStepType(i), PackedStep.getStepType(packedStep));
+			assertEquals(timeline.getDuration(i), PackedStep.getDuration(packedStep));
+			assertEquals(timeline.getSoundDuration(i), PackedStep.getSoundDuration(packedStep));
+			assertEquals(timeline.getRepetition(i), PackedStep.getRepetition(packedStep));
+		}
+	}
+
+	/**
+	 * The steps of a combined exercise carry their part number and the repetition within their part.
+	 */
+	@Test
+	public void testCombinedExercise() {
+		ExerciseTimeline timeline = ExerciseTimeline.compile(CombinedExerciseData.fromSingleExerciseData("Test",
+				Arrays.asList(createExercise(2, 4000, false, HoldPosition.ONLY_END), createExercise(3, 8000, false, HoldPosition.ONLY_END)),
+				SoundType.BREATH));
+		assertEquals(5, timeline.getTotalRepetitions());
+		assertEquals(10, timeline.getStepCount());
+		assertEquals(2 * 4000 + 3 * 8000, timeline.getTotalDuration());
+		assertEquals(2, timeline.getPartNumber(4));
+		assertEquals(1, timeline.getPartRepetition(4));
+		assertEquals(3, timeline.getTotalPartRepetitions(4));
+		assertEquals(3, timeline.getRepetition(4));
+
+		assertEquals(4, timeline.getStepIndex(2, 1, 0));
+		assertEquals(9, timeline.getStepIndex(2, 3, 1));
+		assertEquals(timeline.getStepCount(), timeline.getStepIndex(2, 3, 2));
+		assertEquals(timeline.getStepCount(), timeline.getStepIndex(3, 1, 0));
+		assertEquals(timeline.getStepCount(), timeline.getStepIndex(1, 1, -1));
+
+		assertEquals(0, timeline.getFirstStepOfRepetition(1));
+		assertEquals(6, timeline.getFirstStepOfRepetition(4));
+		assertEquals(timeline.getStepCount(), timeline.getFirstStepOfRepetition(6));
+	}
+
+	/**
+	 * The step running at an offset is found, including the step boundaries and offsets after the end.
+	 */
+	@Test
+	public void testStepIndexAt() {
+		ExerciseTimeline timeline = ExerciseTimeline.compile(createExercise(2, 6000, true, HoldPosition.TWO_INTERMITTENT));
+		for (int i = 0; i < timeline.getStepCount(); i++) {
+			assertEquals(i, timeline.getStepIndexAt(timeline.getStartOffset(i)));
+			assertEquals(i, timeline.getStepIndexAt(timeline.getStartOffset(i + 1) - 1));
+		}
+		assertEquals(timeline.getStepCount(), timeline.getStepIndexAt(timeline.getTotalDuration()));
+		assertEquals(timeline.getStepCount(), timeline.getStepIndexAt(Long.MAX_VALUE));
+	}
+
+	/**
+	 * The offsets of a timeline with variable holds add up to its total duration.
+	 */
+	@Test
+	public void testVariableHolds() {
+		ExerciseTimeline timeline = ExerciseTimeline.compile(createExercise(5, 20000, true, HoldPosition.VARIABLE));
+		long offset = 0;
+		for (int i = 0; i < timeline.getStepCount(); i++) {
+			assertEquals(offset, timeline.getStartOffset(i));
+			assertTrue(i == 0 || timeline.getRepetition(i) >= timeline.getRepetition(i - 1));
+			offset += timeline.getDuration(i);
+		}
+		assertEquals(offset, timeline.getTotalDuration());
+	}
+
+	/**
+	 * An exercise with more repetitions than can be encoded is rejected.
+	 */
+	@Test
+	public void testTooManyRepetitions() {
+		try {
+			ExerciseTimeline.compile(createExercise(PackedStep.MAX_REPETITION + 1, 4000, false, HoldPosition.ONLY_END));
+			fail("Expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Create a standard exercise with constant breath duration, equal inhale and exhale, and optional hold after inhale.
+	 *
+	 * @param repetitions    The number of repetitions.
+	 * @param breathDuration The duration of a breath.
+	 * @param holdBreathIn   Flag indicating if breath is held after inhale.
+	 * @param holdPosition   The hold position.
+	 * @return The exercise.
+	 */
+	static StandardExerciseData createExercise(final int repetitions, final long breathDuration, final boolean holdBreathIn,
+											   final HoldPosition holdPosition) {
+		return new StandardExerciseData("Test", repetitions, breathDuration, breathDuration, 0.5, holdBreathIn, 10000L, 10000L, holdPosition,
+				false, 0L, 0L, HoldPosition.ONLY_END, 0.2, SoundType.BREATH, PlayStatus.STOPPED, 0);
+	}
+}
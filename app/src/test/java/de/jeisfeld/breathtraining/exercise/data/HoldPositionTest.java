@@ -0,0 +1,102 @@
+package de.jeisfeld.breathtraining.exercise.data;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the splitting of breaths into holds.
+ */
+public class HoldPositionTest {
+	/**
+	 * The fixed hold positions create the announced number of steps, ending with a hold.
+	 */
+	@Test
+	public void testStepCount() {
+		for (HoldPosition holdPosition : new HoldPosition[] {HoldPosition.ONLY_END, HoldPosition.ONE_INTERMITTENT, HoldPosition.TWO_INTERMITTENT}) {
+			StepBuffer steps = new StepBuffer();
+			holdPosition.applyHold(StepType.INHALE, 6000, RepetitionData.of(1, 1), 3000, 0, new SplittableRandom(1), steps);
+			assertEquals(holdPosition.getStepCount(), steps.size());
+			assertEquals(StepType.INHALE, steps.getStepType(0));
+			assertEquals(StepType.HOLD, steps.getStepType(steps.size() - 1));
+		}
+		assertEquals(-1, HoldPosition.VARIABLE.getStepCount());
+	}
+
+	/**
+	 * Variable holds alternate breath and hold parts of at least 1 second, and the breath parts add up to the breath duration.
+	 */
+	@Test
+	public void testVariableHolds() {
+		for (long seed = 0; seed < 100; seed++) {
+			StepBuffer steps = new StepBuffer();
+			HoldPosition.VARIABLE.applyHold(StepType.EXHALE, 20000, RepetitionData.of(1, 1), 15000, 0.2, new SplittableRandom(seed), steps);
+			assertEquals(0, steps.size() % 2);
+			long breathDuration = 0;
+			for (int i = 0; i < steps.size(); i++) {
+				assertEquals(i % 2 == 0 ? (i == 0 ? StepType.EXHALE : StepType.CONTINUE_EXHALE) : StepType.HOLD, steps.getStepType(i));
+				assertTrue(steps.getDuration(i) >= 1000);
+				if (i % 2 == 0) {
+					breathDuration += steps.getDuration(i);
+					assertEquals(20000, steps.getSoundDuration(i));
+				}
+			}
+			// Each part is rounded separately.
+			assertTrue(Math.abs(breathDuration - 20000) <= steps.size() / 2);
+		}
+	}
+
+	/**
+	 * The same random source gives the same variable holds.
+	 */
+	@Test
+	public void testSameRandomSource() {
+		for (long seed = 0; seed < 100; seed++) {
+			StepBuffer steps1 = new StepBuffer();
+			StepBuffer steps2 = new StepBuffer();
+			HoldPosition.VARIABLE.applyHold(StepType.INHALE, 20000, RepetitionData.of(1, 1), 15000, 0.2, new SplittableRandom(seed), steps1);
+			HoldPosition.VARIABLE.applyHold(StepType.INHALE, 20000, RepetitionData.of(1, 1), 15000, 0.2, new SplittableRandom(seed), steps2);
+			assertEquals(steps1.size(), steps2.size());
+			for (int i = 0; i < steps1.size(); i++) {
+				assertEquals(steps1.getStepType(i), steps2.getStepType(i));
+				assertEquals(steps1.getDuration(i), steps2.getDuration(i));
+			}
+		}
+	}
+
+	/**
+	 * The seed of the exercise determines its timeline with variable holds, so that a run can be regenerated identically, and different
+	 * seeds give different timelines.
+	 */
+	@Test
+	public void testSeededTimeline() {
+		StandardExerciseData exerciseData1 = ExerciseTimelineTest.createExercise(10, 20000, true, HoldPosition.VARIABLE);
+		StandardExerciseData exerciseData2 = ExerciseTimelineTest.createExercise(10, 20000, true, HoldPosition.VARIABLE);
+		exerciseData1.setSeed(42);
+		exerciseData2.setSeed(42);
+		ExerciseTimeline timeline = ExerciseTimeline.compile(exerciseData1);
+		assertEquals(toString(timeline), toString(ExerciseTimeline.compile(exerciseData1)));
+		assertEquals(toString(timeline), toString(ExerciseTimeline.compile(exerciseData2)));
+
+		exerciseData2.setSeed(43);
+		assertNotEquals(toString(timeline), toString(ExerciseTimeline.compile(exerciseData2)));
+	}
+
+	/**
+	 * Convert the steps of a timeline into a string for comparison.
+	 *
+	 * @param timeline The timeline.
+	 * @return The string.
+	 */
+	private static String toString(final ExerciseTimeline timeline) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < timeline.getStepCount(); i++) {
+			result.append(Long.toHexString(timeline.getPackedStep(i))).append(' ');
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,79 @@
+package de.jeisfeld.breathtraining.exercise.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the encoding of exercise steps into long values.
+ */
+public class PackedStepTest {
+	/**
+	 * All step types and values up to the maximum survive encoding and decoding.
+	 */
+	@Test
+	public void testRoundTrip() {
+		for (StepType stepType : StepType.values()) {
+			for (long duration : new long[] {0, 1, 4000, PackedStep.MAX_DURATION}) {
+				for (int repetition : new int[] {0, 1, 1000, PackedStep.MAX_REPETITION}) {
+					long packedStep = PackedStep.encode(stepType, duration, PackedStep.MAX_DURATION - duration, repetition);
+					assertEquals(stepType, PackedStep.getStepType(packedStep));
+					assertEquals(duration, PackedStep.getDuration(packedStep));
+					assertEquals(PackedStep.MAX_DURATION - duration, PackedStep.getSoundDuration(packedStep));
+					assertEquals(repetition, PackedStep.getRepetition(packedStep));
+				}
+			}
+		}
+	}
+
+	/**
+	 * The limits cover about 70 minutes per step and more than 100000 repetitions.
+	 */
+	@Test
+	public void testLimits() {
+		assertEquals(4194303, PackedStep.MAX_DURATION);
+		assertEquals(131071, PackedStep.MAX_REPETITION);
+	}
+
+	/**
+	 * Values above their maximum are rejected rather than silently truncated.
+	 */
+	@Test
+	public void testValuesAboveMaximum() {
+		assertRejected(StepType.INHALE, PackedStep.MAX_DURATION + 1, 0, 1);
+		assertRejected(StepType.INHALE, 0, PackedStep.MAX_DURATION + 1, 1);
+		assertRejected(StepType.INHALE, 0, 0, PackedStep.MAX_REPETITION + 1);
+		assertRejected(StepType.INHALE, Long.MAX_VALUE, 0, 1);
+	}
+
+	/**
+	 * Negative values are encoded as 0 and do not corrupt the other fields.
+	 */
+	@Test
+	public void testNegativeValues() {
+		long packedStep = PackedStep.encode(StepType.HOLD, -1, -5, -1);
+		assertEquals(StepType.HOLD, PackedStep.getStepType(packedStep));
+		assertEquals(0, PackedStep.getDuration(packedStep));
+		assertEquals(0, PackedStep.getSoundDuration(packedStep));
+		assertEquals(0, PackedStep.getRepetition(packedStep));
+	}
+
+	/**
+	 * Assert that encoding a step is rejected.
+	 *
+	 * @param stepType      The step type.
+	 * @param duration      The duration.
+	 * @param soundDuration The sound duration.
+	 * @param repetition    The repetition number.
+	 */
+	private static void assertRejected(final StepType stepType, final long duration, final long soundDuration, final int repetition) {
+		try {
+			PackedStep.encode(stepType, duration, soundDuration, repetition);
+			fail("Expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
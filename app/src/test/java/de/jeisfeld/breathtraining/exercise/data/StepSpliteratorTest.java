@@ -0,0 +1,209 @@
+package de.jeisfeld.breathtraining.exercise.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import de.jeisfeld.breathtraining.sound.SoundType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the lazy spliterator over the steps of an exercise.
+ */
+public class StepSpliteratorTest {
+	/**
+	 * The exercises under test: fixed holds, variable holds, and a combination of both.
+	 *
+	 * @return The exercises.
+	 */
+	private static List<ExerciseData> createExercises() {
+		StandardExerciseData fixed = ExerciseTimelineTest.createExercise(7, 6000, true, HoldPosition.TWO_INTERMITTENT);
+		StandardExerciseData variable = ExerciseTimelineTest.createExercise(9, 20000, true, HoldPosition.VARIABLE);
+		return Arrays.asList(fixed, variable, CombinedExerciseData.fromSingleExerciseData("Test",
+				Arrays.asList(ExerciseTimelineTest.createExercise(3, 4000, false, HoldPosition.ONLY_END),
+						ExerciseTimelineTest.createExercise(5, 20000, true, HoldPosition.VARIABLE)), SoundType.BREATH));
+	}
+
+	/**
+	 * The steps of the timeline are the steps of the spliterator.
+	 */
+	@Test
+	public void testTimeline() {
+		for (ExerciseData exerciseData : createExercises()) {
+			List<String> steps = sequential(exerciseData);
+			ExerciseTimeline timeline = ExerciseTimeline.compile(exerciseData);
+			assertEquals(steps.size(), timeline.getStepCount());
+			for (int i = 0; i < steps.size(); i++) {
+				assertEquals(steps.get(i), toString(timeline.getStepType(i), timeline.getDuration(i), timeline.getSoundDuration(i),
+						timeline.getRepetition(i), timeline.getPartNumber(i), timeline.getPartRepetition(i)));
+			}
+		}
+	}
+
+	/**
+	 * Splitting recursively and concatenating the parts gives the sequential order.
+	 */
+	@Test
+	public void testSplit() {
+		for (ExerciseData exerciseData : createExercises()) {
+			List<String> steps = new ArrayList<>();
+			collectSplit(exerciseData.stepSpliterator(), steps);
+			assertEquals(sequential(exerciseData), steps);
+
+			// Split after some steps have been consumed, so that the prefix takes over the generated steps.
+			StepSpliterator spliterator = exerciseData.stepSpliterator();
+			steps.clear();
+			spliterator.tryAdvance(step -> steps.add(toString(step)));
+			Spliterator<ExerciseStep> prefix = spliterator.trySplit();
+			prefix.forEachRemaining(step -> steps.add(toString(step)));
+			spliterator.forEachRemaining(step -> steps.add(toString(step)));
+			assertEquals(sequential(exerciseData), steps);
+		}
+	}
+
+	/**
+	 * A parallel stream gives the sequential order.
+	 */
+	@Test
+	public void testParallelStream() {
+		for (ExerciseData exerciseData : createExercises()) {
+			assertEquals(sequential(exerciseData), exerciseData.steps(true).map(StepSpliteratorTest::toString).collect(Collectors.toList()));
+		}
+	}
+
+	/**
+	 * Skipping steps continues with the same step as sequential iteration, also within a repetition and beyond the end.
+	 */
+	@Test
+	public void testSkip() {
+		for (ExerciseData exerciseData : createExercises()) {
+			List<String> steps = sequential(exerciseData);
+			for (int count : new int[] {0, 1, 5, 12, steps.size() - 1, steps.size(), steps.size() + 3}) {
+				StepSpliterator spliterator = exerciseData.stepSpliterator();
+				assertEquals(Math.min(count, steps.size()), spliterator.skip(count));
+				List<String> remaining = new ArrayList<>();
+				spliterator.forEachRemaining(step -> remaining.add(toString(step)));
+				assertEquals("skip " + count, steps.subList(Math.min(count, steps.size()), steps.size()), remaining);
+			}
+
+			// Skip in several calls, starting within a repetition.
+			StepSpliterator spliterator = exerciseData.stepSpliterator();
+			spliterator.tryAdvance(step -> { });
+			assertEquals(3, spliterator.skip(3));
+			assertEquals(10, spliterator.skip(10));
+			List<String> remaining = new ArrayList<>();
+			spliterator.forEachRemaining(step -> remaining.add(toString(step)));
+			assertEquals(steps.subList(14, steps.size()), remaining);
+		}
+	}
+
+	/**
+	 * Without variable holds, the size is exact, also after advancing, skipping and splitting.
+	 */
+	@Test
+	public void testSize() {
+		ExerciseData exerciseData = createExercises().get(0);
+		int stepCount = sequential(exerciseData).size();
+		StepSpliterator spliterator = exerciseData.stepSpliterator();
+		assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+		assertEquals(stepCount, spliterator.getExactSizeIfKnown());
+		spliterator.tryAdvance(step -> { });
+		spliterator.skip(5);
+		assertEquals(stepCount - 6, spliterator.estimateSize());
+		Spliterator<ExerciseStep> prefix = spliterator.trySplit();
+		assertTrue(prefix.hasCharacteristics(Spliterator.SIZED));
+		assertEquals(stepCount - 6, prefix.estimateSize() + spliterator.estimateSize());
+		assertEquals(prefix.estimateSize(), count(prefix));
+		assertEquals(spliterator.estimateSize(), count(spliterator));
+	}
+
+	/**
+	 * With variable holds, the size is unknown, and the estimate does not exceed the actual size.
+	 */
+	@Test
+	public void testUnknownSize() {
+		for (ExerciseData exerciseData : createExercises().subList(1, 3)) {
+			StepSpliterator spliterator = exerciseData.stepSpliterator();
+			assertFalse(spliterator.hasCharacteristics(Spliterator.SIZED));
+			assertEquals(-1, spliterator.getExactSizeIfKnown());
+			assertTrue(spliterator.estimateSize() <= sequential(exerciseData).size());
+			assertEquals(sequential(exerciseData).size(), count(spliterator));
+		}
+	}
+
+	/**
+	 * Get the steps of an exercise by sequential iteration.
+	 *
+	 * @param exerciseData The exercise data.
+	 * @return The steps, as strings.
+	 */
+	private static List<String> sequential(final ExerciseData exerciseData) {
+		List<String> steps = new ArrayList<>();
+		exerciseData.stepSpliterator().forEachRemaining(step -> steps.add(toString(step)));
+		return steps;
+	}
+
+	/**
+	 * Collect the steps of a spliterator, splitting it recursively.
+	 *
+	 * @param spliterator The spliterator.
+	 * @param steps       The list to which the steps are added.
+	 */
+	private static void collectSplit(final Spliterator<ExerciseStep> spliterator, final List<String> steps) {
+		Spliterator<ExerciseStep> prefix = spliterator.trySplit();
+		if (prefix == null) {
+			spliterator.forEachRemaining(step -> steps.add(toString(step)));
+		}
+		else {
+			collectSplit(prefix, steps);
+			collectSplit(spliterator, steps);
+		}
+	}
+
+	/**
+	 * Count the remaining steps of a spliterator.
+	 *
+	 * @param spliterator The spliterator.
+	 * @return The number of steps.
+	 */
+	private static long count(final Spliterator<ExerciseStep> spliterator) {
+		long[] count = {0};
+		spliterator.forEachRemaining(step -> count[0]++);
+		return count[0];
+	}
+
+	/**
+	 * Convert a step into a string for comparison.
+	 *
+	 * @param step The step.
+	 * @return The string.
+	 */
+	private static String toString(final ExerciseStep step) {
+		RepetitionData repetition = step.getRepetition();
+		return toString(step.getStepType(), step.getDuration(), step.getSoundDuration(), repetition.getCurrentRepetition(),
+				repetition.getCurrentPartNumber(), repetition.getCurrentPartRepetition());
+	}
+
+	/**
+	 * Convert the values of a step into a string for comparison.
+	 *
+	 * @param stepType       The step type.
+	 * @param duration       The duration.
+	 * @param soundDuration  The sound duration.
+	 * @param repetition     The repetition number.
+	 * @param partNumber     The part number.
+	 * @param partRepetition The repetition number within the part.
+	 * @return The string.
+	 */
+	private static String toString(final StepType stepType, final long duration, final long soundDuration, final int repetition,
+								   final int partNumber, final int partRepetition) {
+		return stepType + " " + duration + "/" + soundDuration + " repetition " + repetition + " part " + partNumber + "/" + partRepetition;
+	}
+}
@@ -0,0 +1,111 @@
+package de.jeisfeld.breathtraining.sound;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the voice rendered ahead for the mixer.
+ */
+public class PrerenderedVoiceTest {
+	/**
+	 * The sample rate of the test sound.
+	 */
+	private static final int SAMPLE_RATE = 24000;
+	/**
+	 * The output sample rate.
+	 */
+	private static final int OUTPUT_RATE = 48000;
+	/**
+	 * The number of frames of the test sound.
+	 */
+	private static final int FRAMES = 50000;
+
+	/**
+	 * Reading in blocks while rendering in chunks of another size yields the same samples as reading the voice directly. An underrun delays
+	 * the samples instead of skipping them.
+	 */
+	@Test
+	public void testSameSamplesAsDirectVoice() {
+		PcmVoice direct = new PcmVoice(createSource(), OUTPUT_RATE);
+		float[] expected = new float[3 * FRAMES];
+		int expectedCount = 0;
+		while (!direct.isFinished()) {
+			expected[expectedCount++] = direct.next();
+		}
+
+		PrerenderedVoice voice = new PrerenderedVoice(createSource(), OUTPUT_RATE, 500);
+		float[] actual = new float[expectedCount];
+		int actualCount = 0;
+		float[] block = new float[700];
+		int iteration = 0;
+		while (!voice.isFinished()) {
+			// Render only for every other block, so that the reader runs into underruns.
+			if (iteration++ % 2 == 0) {
+				voice.render(1024);
+			}
+			Arrays.fill(block, 0);
+			int count = voice.mixInto(block, block.length);
+			System.arraycopy(block, 0, actual, actualCount, count);
+			actualCount += count;
+		}
+		assertEquals(expectedCount, actualCount);
+		assertArrayEquals(Arrays.copyOf(expected, expectedCount), actual, 0);
+	}
+
+	/**
+	 * The samples are added to the block.
+	 */
+	@Test
+	public void testMixIntoAdds() {
+		PrerenderedVoice voice = new PrerenderedVoice(createSource(), OUTPUT_RATE, 10);
+		PcmVoice direct = new PcmVoice(createSource(), OUTPUT_RATE);
+		float[] block = new float[20];
+		Arrays.fill(block, 1);
+		assertEquals(10, voice.mixInto(block, block.length));
+		for (int i = 0; i < 10; i++) {
+			assertEquals(1 + direct.next(), block[i], 0);
+		}
+		for (int i = 10; i < block.length; i++) {
+			assertEquals(1, block[i], 0);
+		}
+	}
+
+	/**
+	 * Rendering stops when the buffer is full, and continues after reading.
+	 */
+	@Test
+	public void testRenderStopsWhenBufferFull() {
+		PrerenderedVoice voice = new PrerenderedVoice(createSource(), OUTPUT_RATE, 0);
+		int renderCount = 0;
+		while (voice.render(4096)) {
+			renderCount++;
+			assertTrue(renderCount < FRAMES);
+		}
+		assertFalse(voice.isFinished());
+		voice.mixInto(new float[100], 100);
+		assertTrue(voice.render(4096));
+	}
+
+	/**
+	 * Create a source with a ramp signal.
+	 *
+	 * @return The source.
+	 */
+	private static PcmSource createSource() {
+		ByteBuffer data = ByteBuffer.allocateDirect(FRAMES * 2).order(ByteOrder.nativeOrder());
+		for (int i = 0; i < FRAMES; i++) {
+			data.putShort((short) (i % 20000 - 10000));
+		}
+		data.flip();
+		PcmSound sound = new PcmSound(data, SAMPLE_RATE, 1);
+		return new TimeStretcher(sound, sound.getFrameCount());
+	}
+}
@@ -0,0 +1,160 @@
+package de.jeisfeld.breathtraining.sound;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the time stretching of decoded sounds.
+ */
+public class TimeStretcherTest {
+	/**
+	 * The sample rate of the test sounds.
+	 */
+	private static final int SAMPLE_RATE = 24000;
+	/**
+	 * The frequency of the test tone.
+	 */
+	private static final double FREQUENCY = 440;
+	/**
+	 * The amplitude of the test tone.
+	 */
+	private static final double AMPLITUDE = 10000;
+
+	/**
+	 * The stretched sound has exactly the target number of frames, for stretching and compression, mono and stereo, and target lengths which
+	 * are not a multiple of the hop.
+	 */
+	@Test
+	public void testExactLength() {
+		for (int channelCount = 1; channelCount <= 2; channelCount++) {
+			PcmSound sound = createTone(SAMPLE_RATE, channelCount);
+			for (long targetFrames : new long[] {1, 359, SAMPLE_RATE / 2 + 17, SAMPLE_RATE, 3 * SAMPLE_RATE + 1}) {
+				short[] output = render(new TimeStretcher(sound, targetFrames));
+				assertEquals("channels " + channelCount + ", target " + targetFrames, targetFrames * channelCount, output.length);
+			}
+		}
+	}
+
+	/**
+	 * A target length of 0 renders nothing.
+	 */
+	@Test
+	public void testEmptyTarget() {
+		TimeStretcher stretcher = new TimeStretcher(createTone(SAMPLE_RATE, 1), 0);
+		assertFalse(stretcher.render(ByteBuffer.allocate(stretcher.getChunkSize())));
+	}
+
+	/**
+	 * The frame count for a duration is based on the sample rate of the sound.
+	 */
+	@Test
+	public void testFrameCount() {
+		assertEquals(36000, TimeStretcher.getFrameCount(createTone(SAMPLE_RATE, 1), 1500));
+	}
+
+	/**
+	 * Stretching keeps the pitch and the loudness of a tone: the number of zero crossings scales with the length, and the RMS stays the same.
+	 */
+	@Test
+	public void testPitchAndLoudnessPreserved() {
+		PcmSound sound = createTone(SAMPLE_RATE, 1);
+		for (double ratio : new double[] {0.6, 1.5, 2.5}) {
+			long targetFrames = Math.round(SAMPLE_RATE * ratio);
+			short[] output = render(new TimeStretcher(sound, targetFrames));
+			// Skip the fade-in of the first window and the end of the source.
+			int from = SAMPLE_RATE / 10;
+			int to = output.length - SAMPLE_RATE / 10;
+			double frequency = countZeroCrossings(output, from, to) / 2.0 * SAMPLE_RATE / (to - from);
+			assertEquals("ratio " + ratio, FREQUENCY, frequency, FREQUENCY * 0.03);
+			assertEquals("ratio " + ratio, AMPLITUDE / Math.sqrt(2), getRms(output, from, to), AMPLITUDE * 0.15);
+		}
+	}
+
+	/**
+	 * Create a sine tone.
+	 *
+	 * @param frames       The number of frames.
+	 * @param channelCount The number of channels.
+	 * @return The sound.
+	 */
+	private static PcmSound createTone(final int frames, final int channelCount) {
+		ByteBuffer data = ByteBuffer.allocateDirect(frames * channelCount * 2).order(ByteOrder.nativeOrder());
+		for (int i = 0; i < frames; i++) {
+			short sample = (short) Math.round(AMPLITUDE * Math.sin(2 * Math.PI * FREQUENCY * i / SAMPLE_RATE));
+			for (int channel = 0; channel < channelCount; channel++) {
+				data.putShort(sample);
+			}
+		}
+		data.flip();
+		return new PcmSound(data, SAMPLE_RATE, channelCount);
+	}
+
+	/**
+	 * Render a source completely.
+	 *
+	 * @param source The source.
+	 * @return The samples.
+	 */
+	private static short[] render(final PcmSource source) {
+		ByteBuffer output = ByteBuffer.allocate(0).order(ByteOrder.nativeOrder());
+		ByteBuffer chunk = ByteBuffer.allocate(source.getChunkSize()).order(ByteOrder.nativeOrder());
+		while (true) {
+			chunk.clear();
+			if (!source.render(chunk)) {
+				break;
+			}
+			assertTrue(chunk.position() <= source.getChunkSize());
+			chunk.flip();
+			ByteBuffer grown = ByteBuffer.allocate(output.position() + chunk.remaining()).order(ByteOrder.nativeOrder());
+			output.flip();
+			grown.put(output).put(chunk);
+			output = grown;
+		}
+		output.flip();
+		ShortBuffer samples = output.asShortBuffer();
+		short[] result = new short[samples.remaining()];
+		samples.get(result);
+		return result;
+	}
+
+	/**
+	 * Count the zero crossings of a signal.
+	 *
+	 * @param samples The samples.
+	 * @param from    The start index.
+	 * @param to      The end index.
+	 * @return The number of sign changes.
+	 */
+	private static int countZeroCrossings(final short[] samples, final int from, final int to) {
+		int count = 0;
+		for (int i = from + 1; i < to; i++) {
+			if (samples[i - 1] < 0 != samples[i] < 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Get the RMS of a signal.
+	 *
+	 * @param samples The samples.
+	 * @param from    The start index.
+	 * @param to      The end index.
+	 * @return The RMS.
+	 */
+	private static double getRms(final short[] samples, final int from, final int to) {
+		double sum = 0;
+		for (int i = from; i < to; i++) {
+			sum += samples[i] * (double) samples[i];
+		}
+		return Math.sqrt(sum / (to - from));
+	}
+}